@@ -6,11 +6,10 @@ import lombok.*;
 import java.time.Instant;
 
 @Entity
+// Índices definidos en db/migration (V2): consultas por transacción o por orden, en orden cronológico
 @Table(name="audit_events", indexes = {
-        @Index(name="idx_tx", columnList="txId"),
-        @Index(name="idx_service", columnList="service"),
-        @Index(name="idx_event_type", columnList="eventType"),
-        @Index(name="idx_order", columnList="orderId")
+        @Index(name="idx_audit_tx_created", columnList="txId, createdAt"),
+        @Index(name="idx_audit_order_created", columnList="orderId, createdAt")
 })
 @Data @Builder @NoArgsConstructor @AllArgsConstructor
 public class AuditEvent {
@@ -0,0 +1,18 @@
+-- Esquema base de audit: lo que antes generaba ddl-auto: update.
+-- Idempotente: en bases ya creadas por Hibernate (baseline-on-migrate, versión 0) no cambia nada.
+
+CREATE TABLE IF NOT EXISTS audit_events (
+    id           bigint      GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tx_id        varchar(60) NOT NULL,
+    service      varchar(60) NOT NULL,
+    event_type   varchar(80) NOT NULL,
+    order_id     varchar(80),
+    entity_id    varchar(80),
+    created_at   timestamp(6) with time zone NOT NULL,
+    payload_json oid         NOT NULL   -- @Lob String en PostgreSQL
+);
+
+CREATE INDEX IF NOT EXISTS idx_tx ON audit_events (tx_id);
+CREATE INDEX IF NOT EXISTS idx_service ON audit_events (service);
+CREATE INDEX IF NOT EXISTS idx_event_type ON audit_events (event_type);
+CREATE INDEX IF NOT EXISTS idx_order ON audit_events (order_id);
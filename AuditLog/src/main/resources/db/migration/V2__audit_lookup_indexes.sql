@@ -0,0 +1,11 @@
+-- audit_events es de solo escritura (POST /logs) y se consulta para reconstruir una transacción
+-- (tx_id) o la historia de una orden (order_id), en orden cronológico. Índices compuestos con
+-- created_at para esos dos caminos; service y event_type tienen pocos valores distintos, no filtran
+-- nada por sí solos y cada INSERT pagaba su mantenimiento.
+CREATE INDEX IF NOT EXISTS idx_audit_tx_created ON audit_events (tx_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_audit_order_created ON audit_events (order_id, created_at) WHERE order_id IS NOT NULL;
+
+DROP INDEX IF EXISTS idx_tx;
+DROP INDEX IF EXISTS idx_order;
+DROP INDEX IF EXISTS idx_service;
+DROP INDEX IF EXISTS idx_event_type;
@@ -51,8 +51,12 @@ public class CartService {
 
     @Transactional(readOnly = true)
     public List<CartItemDTO> get(Long customerId){
-        return repo.findByCustomerId(customerId).stream()
-                .map(i -> new CartItemDTO(i.getId(), i.getCustomerId(), i.getProductId(), i.getQty(), null)) // opcional: rellenar nombres con un batch si quieres
+        var items = repo.findByCustomerId(customerId);
+        // Nombres en una sola llamada a products (batch), no una por ítem
+        var products = productClient.getAll(items.stream().map(CartItem::getProductId).distinct().toList());
+        return items.stream()
+                .map(i -> new CartItemDTO(i.getId(), i.getCustomerId(), i.getProductId(), i.getQty(),
+                        products.containsKey(i.getProductId()) ? products.get(i.getProductId()).name() : null))
                 .toList();
     }
 
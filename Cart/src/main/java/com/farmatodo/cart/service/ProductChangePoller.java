@@ -0,0 +1,40 @@
+package com.farmatodo.cart.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lee el feed GET /products/changes y saca de la cache los productos modificados.
+ * Cada respuesta trae todo lo pendiente (o resync, que vacía toda la cache): una consulta por poll.
+ * El feed relee una ventana corta en cada consulta, así que un mismo producto puede invalidarse más
+ * de una vez. Si products no responde, la cache sigue acotada por su TTL.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "clients.product.changes.enabled", havingValue = "true", matchIfMissing = true)
+public class ProductChangePoller {
+
+    private final ProductClient products;
+
+    private String epoch;
+    private long cursor;
+
+    @Scheduled(fixedDelayString = "${clients.product.changes.poll-ms:1000}")
+    public synchronized void poll() {
+        try {
+            var res = products.changes(epoch, cursor);
+            if (res == null) return;
+            if (res.resync()) {
+                products.invalidateAll();
+            } else {
+                res.changes().forEach(c -> products.invalidate(c.productId()));
+            }
+            epoch = res.epoch();
+            cursor = res.cursor();
+        } catch (Exception e) {
+            System.out.printf("[cart] product changes poll failed: %s%n", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.farmatodo.cart.service;
+
+import java.util.List;
+
+public record ProductChanges(String epoch, long cursor, boolean resync, List<Change> changes) {
+    public record Change(long seq, Long productId, String type) {}
+}
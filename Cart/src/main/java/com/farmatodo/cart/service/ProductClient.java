@@ -1,38 +1,137 @@
 package com.farmatodo.cart.service;
 
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Component
 public class ProductClient {
     private final WebClient web;
+    private final MeterRegistry meterRegistry;
 
     @Value("${clients.product.base-url}")
     private String baseUrl;
     @Value("${clients.product.api-key}")
     private String apiKey;
+    @Value("${clients.product.cache.max-size:10000}")
+    private long cacheMaxSize;
+    @Value("${clients.product.cache.ttl-seconds:600}")
+    private long cacheTtlSeconds;
+    @Value("${clients.product.cache.refresh-seconds:60}")
+    private long cacheRefreshSeconds;
 
-    public ProductClient(WebClient web){ this.web = web; }
+    // Read-through con expiración por tiempo y tamaño; cargas concurrentes del mismo id se agrupan.
+    // Pasado refresh-seconds se revalida en segundo plano con If-None-Match (304 = sigue vigente, sin body)
+    private LoadingCache<Long, Tagged> cache;
 
+    // etag null si vino del batch (no trae ETag por ítem)
+    private record Tagged(ProductSummary product, String etag) {}
+
+    public ProductClient(WebClient web, MeterRegistry meterRegistry){ this.web = web; this.meterRegistry = meterRegistry; }
+
+    @PostConstruct
+    void initCache(){
+        var builder = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats();
+        if (cacheRefreshSeconds > 0) builder.refreshAfterWrite(Duration.ofSeconds(cacheRefreshSeconds));
+        cache = builder.build(new CacheLoader<Long, Tagged>() {
+            @Override public Tagged load(Long id) { return fetch(id, null); }
+            @Override public Tagged reload(Long id, Tagged old) { return fetch(id, old); }
+            @Override public Map<Long, Tagged> loadAll(Set<? extends Long> ids) {
+                var tagged = new HashMap<Long, Tagged>();
+                fetchAll(ids).forEach((id, p) -> tagged.put(id, new Tagged(p, null)));
+                return tagged;
+            }
+        });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "cart.products");
+    }
+
+    /** Vacío si no existe o si products no responde (los fallos no se cachean). */
     public Optional<ProductSummary> get(Long productId){
         try {
-            var product = web.mutate().baseUrl(baseUrl).build()
+            return Optional.ofNullable(cache.get(productId)).map(Tagged::product);
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Lote por ids (POST /products/batch solo para los que no están en cache). Si products no responde, devuelve vacío. */
+    public Map<Long, ProductSummary> getAll(Collection<Long> productIds){
+        if (productIds.isEmpty()) return Map.of();
+        try {
+            var products = new HashMap<Long, ProductSummary>();
+            cache.getAll(productIds).forEach((id, t) -> products.put(id, t.product()));
+            return products;
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+
+    public void invalidate(Long productId){
+        cache.invalidate(productId);
+    }
+
+    public void invalidateAll(){
+        cache.invalidateAll();
+    }
+
+    /** Cambios de productos posteriores al cursor (feed de products-service para invalidar la cache). */
+    public ProductChanges changes(String epoch, long since){
+        return web.mutate().baseUrl(baseUrl).build()
+                .get().uri(b -> b.path("/api/v1/products/changes")
+                        .queryParamIfPresent("epoch", Optional.ofNullable(epoch))
+                        .queryParam("since", since)
+                        .build())
+                .header("X-API-KEY", apiKey)
+                .retrieve()
+                .bodyToMono(ProductChanges.class)
+                .block();
+    }
+
+    // null = no existe (Caffeine no guarda nulls); 304 sobre la versión previa → se conserva
+    private Tagged fetch(Long productId, Tagged previous){
+        String etag = previous == null ? null : previous.etag();
+        try {
+            var res = web.mutate().baseUrl(baseUrl).build()
                     .get().uri("/api/v1/products/{id}", productId)
                     .header("X-API-KEY", apiKey)
+                    .headers(h -> { if (etag != null) h.setIfNoneMatch(etag); })
                     .retrieve()
-                    .bodyToMono(ProductSummary.class)
+                    .toEntity(ProductSummary.class)
                     .block();
-            return Optional.ofNullable(product);
+            if (res.getStatusCode() == HttpStatus.NOT_MODIFIED) return previous;
+            return new Tagged(res.getBody(), res.getHeaders().getETag());
         } catch (WebClientResponseException.NotFound e) {
-            return Optional.empty();
-        } catch (Exception e) {
-            // Si el servicio de productos está caído, decide si quieres propagar error o tratar como "no existe"
-            return Optional.empty();
+            return null;
         }
     }
+
+    private Map<Long, ProductSummary> fetchAll(Collection<? extends Long> productIds){
+        var found = web.mutate().baseUrl(baseUrl).build()
+                .post().uri("/api/v1/products/batch")
+                .header("X-API-KEY", apiKey)
+                .bodyValue(Map.of("ids", productIds))
+                .retrieve()
+                .bodyToFlux(ProductSummary.class)
+                .collectMap(ProductSummary::id)
+                .block();
+        return found == null ? Map.of() : found;
+    }
 }
@@ -0,0 +1,13 @@
+-- Esquema base de cart: lo que antes generaba ddl-auto: update.
+-- Idempotente: en bases ya creadas por Hibernate (baseline-on-migrate, versión 0) no cambia nada.
+
+CREATE TABLE IF NOT EXISTS cart_items (
+    id          bigint  GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    customer_id bigint  NOT NULL,
+    product_id  bigint  NOT NULL,
+    qty         integer NOT NULL,
+    updated_at  timestamp(6) with time zone NOT NULL,
+    -- También es el índice de findByCustomerId / deleteByCustomerId (customer_id es la primera columna):
+    -- un índice aparte sobre customer_id sería redundante.
+    CONSTRAINT uk_cart_customer_product UNIQUE (customer_id, product_id)
+);
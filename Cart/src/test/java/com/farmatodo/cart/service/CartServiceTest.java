@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import java.lang.reflect.Field;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
@@ -102,11 +103,16 @@ class CartServiceTest {
         var i1 = CartItem.builder().id(1L).customerId(7L).productId(10L).qty(2).updatedAt(Instant.now()).build();
         var i2 = CartItem.builder().id(2L).customerId(7L).productId(11L).qty(1).updatedAt(Instant.now()).build();
         when(repo.findByCustomerId(7L)).thenReturn(List.of(i1, i2));
+        when(productClient.getAll(List.of(10L, 11L))).thenReturn(Map.of(10L, new ProductSummary(10L, "Shampoo")));
 
         var list = service.get(7L);
         assertThat(list).hasSize(2);
         assertThat(list.get(0).productId()).isEqualTo(10L);
+        assertThat(list.get(0).productName()).isEqualTo("Shampoo");
         assertThat(list.get(1).qty()).isEqualTo(1);
+        assertThat(list.get(1).productName()).isNull();
+        verify(productClient, times(1)).getAll(any());
+        verify(productClient, never()).get(any());
     }
 
     @Test
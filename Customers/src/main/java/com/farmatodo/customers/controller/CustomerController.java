@@ -2,13 +2,15 @@ package com.farmatodo.customers.controller;
 
 import com.farmatodo.customers.dto.CreateCustomerRequest;
 import com.farmatodo.customers.dto.CustomerResponse;
+import com.farmatodo.customers.dto.PageResponse;
 import com.farmatodo.customers.service.CustomerService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -24,16 +26,20 @@ public class CustomerController {
 
     /** -------------------------- GET -------------------------- **/
 
-    // Listar todos los clientes
+    // Listar clientes paginado por keyset: cursor = nextCursor de la página anterior (size máx. 100)
     @GetMapping("/customers")
-    public ResponseEntity<List<CustomerResponse>> getAll() {
-        return ResponseEntity.ok(service.getAll());
+    public ResponseEntity<PageResponse<CustomerResponse>> getAll(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size
+    ) {
+        return ResponseEntity.ok(service.getAll(cursor, size));
     }
 
-    // Obtener un cliente por ID
+    // Obtener un cliente por ID (con ETag: If-None-Match vigente → 304 sin body)
     @GetMapping("/customers/{id}")
     public ResponseEntity<CustomerResponse> getById(@PathVariable Long id) {
-        return ResponseEntity.ok(service.getById(id));
+        var v = service.getVersioned(id);
+        return ResponseEntity.ok().eTag(v.etag()).body(v.body());
     }
 
     /** -------------------------- POST -------------------------- **/
@@ -38,6 +38,11 @@ public class Customer {
     @Column(nullable=false)
     private Instant createdAt;
 
+    // Se incrementa en cada update; es el ETag de GET /customers/{id}
+    @Version
+    @Column(nullable=false, columnDefinition="bigint default 0")
+    private Long version;
+
     @PrePersist
     void onCreate() {
     if (createdAt == null) createdAt = Instant.now();
@@ -0,0 +1,6 @@
+package com.farmatodo.customers.dto;
+
+import java.util.List;
+
+/** Página por keyset: nextCursor es opaco y null en la última página. */
+public record PageResponse<T>(List<T> items, String nextCursor) {}
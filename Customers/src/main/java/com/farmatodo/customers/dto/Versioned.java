@@ -0,0 +1,4 @@
+package com.farmatodo.customers.dto;
+
+/** Representación + ETag fuerte (sin comillas; ResponseEntity.eTag las agrega). */
+public record Versioned<T>(T body, String etag) {}
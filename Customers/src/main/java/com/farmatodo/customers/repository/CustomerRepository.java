@@ -1,9 +1,22 @@
 package com.farmatodo.customers.repository;
 
 import com.farmatodo.customers.domain.Customer;
+import com.farmatodo.customers.dto.CustomerResponse;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
     boolean existsByEmail(String email);
     boolean existsByPhone(String phone);
+
+    /** Página por keyset sobre la PK: proyecta directo al DTO, sin cargar entidades. */
+    @Query("""
+            SELECT new com.farmatodo.customers.dto.CustomerResponse(c.id, c.name, c.email, c.phone, c.address, c.createdAt)
+            FROM Customer c WHERE c.id > :afterId ORDER BY c.id
+            """)
+    List<CustomerResponse> findPageAfter(@Param("afterId") long afterId, Limit limit);
 }
@@ -3,8 +3,11 @@ package com.farmatodo.customers.service;
 import com.farmatodo.customers.domain.Customer;
 import com.farmatodo.customers.dto.CreateCustomerRequest;
 import com.farmatodo.customers.dto.CustomerResponse;
+import com.farmatodo.customers.dto.PageResponse;
+import com.farmatodo.customers.dto.Versioned;
 import com.farmatodo.customers.repository.CustomerRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.ErrorResponseException;
@@ -39,8 +42,12 @@ public class CustomerService {
     }
 
     /** -------------------------- READ -------------------------- **/
-    public List<CustomerResponse> getAll() {
-        return repo.findAll().stream().map(this::map).toList();
+    // Keyset por id: se pide un registro extra para saber si hay otra página
+    public PageResponse<CustomerResponse> getAll(String cursor, int size) {
+        List<CustomerResponse> rows = repo.findPageAfter(PageCursor.decode(cursor), Limit.of(size + 1));
+        if (rows.size() <= size) return new PageResponse<>(rows, null);
+        List<CustomerResponse> items = rows.subList(0, size);
+        return new PageResponse<>(List.copyOf(items), PageCursor.encode(items.get(size - 1).id()));
     }
 
     public CustomerResponse getById(Long id) {
@@ -48,6 +55,12 @@ public class CustomerService {
         return map(c);
     }
 
+    // ETag = versión de la fila
+    public Versioned<CustomerResponse> getVersioned(Long id) {
+        Customer c = repo.findById(id).orElseThrow(() -> notFound("Customer not found"));
+        return new Versioned<>(map(c), String.valueOf(c.getVersion()));
+    }
+
     /** -------------------------- UPDATE (PUT) -------------------------- **/
     public CustomerResponse update(Long id, CreateCustomerRequest req) {
         Customer existing = repo.findById(id).orElseThrow(() -> notFound("Customer not found"));
@@ -0,0 +1,39 @@
+package com.farmatodo.customers.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.ErrorResponseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cursor opaco para paginación por keyset: codifica el último id entregado.
+ * El cliente solo lo reenvía; el formato puede cambiar sin romper la API.
+ */
+public final class PageCursor {
+
+    private static final String PREFIX = "id:";
+
+    private PageCursor() {}
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @return último id visto; 0 si no hay cursor (primera página) */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return 0L;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) throw new IllegalArgumentException();
+            long id = Long.parseLong(raw.substring(PREFIX.length()));
+            if (id < 0) throw new IllegalArgumentException();
+            return id;
+        } catch (IllegalArgumentException e) {
+            var ex = new ErrorResponseException(HttpStatus.BAD_REQUEST);
+            ex.setDetail("Invalid cursor");
+            throw ex;
+        }
+    }
+}
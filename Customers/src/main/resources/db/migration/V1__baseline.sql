@@ -0,0 +1,15 @@
+-- Esquema base de customers: lo que antes generaba ddl-auto: update.
+-- Idempotente: en bases ya creadas por Hibernate (baseline-on-migrate, versión 0) no cambia nada.
+
+CREATE TABLE IF NOT EXISTS customers (
+    id         bigint       GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name       varchar(255) NOT NULL,
+    email      varchar(255) NOT NULL,
+    phone      varchar(255) NOT NULL,
+    address    varchar(255) NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    version    bigint       NOT NULL DEFAULT 0,
+    -- Sirven también a existsByEmail / existsByPhone; el listado por keyset usa la PK
+    CONSTRAINT uk_customers_email UNIQUE (email),
+    CONSTRAINT uk_customers_phone UNIQUE (phone)
+);
@@ -2,6 +2,8 @@ package com.farmatodo.customers.controller;
 
 import com.farmatodo.customers.dto.CreateCustomerRequest;
 import com.farmatodo.customers.dto.CustomerResponse;
+import com.farmatodo.customers.dto.PageResponse;
+import com.farmatodo.customers.dto.Versioned;
 import com.farmatodo.customers.service.CustomerService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -38,11 +40,33 @@ class CustomerControllerTest {
     @Test
     void getAll_ok() throws Exception {
         var list = List.of(new CustomerResponse(1L,"A","a@x.com","+1","addr", Instant.now()));
-        Mockito.when(service.getAll()).thenReturn(list);
+        Mockito.when(service.getAll(null, 20)).thenReturn(new PageResponse<>(list, "next"));
 
         mvc.perform(get(BASE).header("X-API-KEY", API_KEY))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].email").value("a@x.com"));
+                .andExpect(jsonPath("$.items[0].email").value("a@x.com"))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void getAll_size_over_cap_400() throws Exception {
+        mvc.perform(get(BASE).param("size", "101").header("X-API-KEY", API_KEY))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getById_etag_and_304() throws Exception {
+        var res = new CustomerResponse(7L,"A","a@x.com","+1","addr", Instant.now());
+        Mockito.when(service.getVersioned(7L)).thenReturn(new Versioned<>(res, "2"));
+
+        mvc.perform(get(BASE + "/7").header("X-API-KEY", API_KEY))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(jsonPath("$.id").value(7));
+
+        mvc.perform(get(BASE + "/7").header("X-API-KEY", API_KEY).header("If-None-Match", "\"2\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
     }
 
     @Test
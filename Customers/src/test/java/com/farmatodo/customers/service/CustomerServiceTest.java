@@ -7,8 +7,10 @@ import com.farmatodo.customers.repository.CustomerRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -54,6 +56,29 @@ class CustomerServiceTest {
         assertTrue(ex.getMessage().contains("409") || ex.toString().contains("CONFLICT"));
     }
 
+    @Test
+    void getAll_keyset_page_with_cursor() {
+        var rows = List.of(
+                new CustomerResponse(3L, "A", "a@x.com", "+1", "ad", Instant.now()),
+                new CustomerResponse(8L, "B", "b@x.com", "+2", "ad", Instant.now()),
+                new CustomerResponse(9L, "C", "c@x.com", "+3", "ad", Instant.now()));
+        when(repo.findPageAfter(0L, Limit.of(3))).thenReturn(rows);
+        when(repo.findPageAfter(8L, Limit.of(3))).thenReturn(rows.subList(2, 3));
+
+        var first = service.getAll(null, 2);
+        var last = service.getAll(first.nextCursor(), 2);
+
+        assertEquals(2, first.items().size());
+        assertEquals(9L, last.items().get(0).id());
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void getAll_invalid_cursor_bad_request() {
+        var ex = assertThrows(Exception.class, () -> service.getAll("%%%", 2));
+        assertTrue(ex.toString().contains("BAD_REQUEST") || ex.getMessage().contains("400"));
+    }
+
     @Test
     void getById_ok() {
         Customer c = Customer.builder().id(9L).name("N").email("e@x.com").phone("+57 1").address("ad").createdAt(Instant.now()).build();
@@ -62,6 +87,13 @@ class CustomerServiceTest {
         assertEquals(9L, res.id());
     }
 
+    @Test
+    void getVersioned_etag_is_row_version() {
+        Customer c = Customer.builder().id(9L).name("N").email("e@x.com").phone("+57 1").address("ad").createdAt(Instant.now()).version(3L).build();
+        when(repo.findById(9L)).thenReturn(Optional.of(c));
+        assertEquals("3", service.getVersioned(9L).etag());
+    }
+
     @Test
     void getById_notFound() {
         when(repo.findById(7L)).thenReturn(Optional.empty());
@@ -2,23 +2,58 @@ package com.farmatodo.orders.controller;
 
 import com.farmatodo.orders.dto.CreateOrderRequest;
 import com.farmatodo.orders.dto.OrderResponse;
+import com.farmatodo.orders.service.IdempotencyService;
+import com.farmatodo.orders.service.IdempotencyService.StoredResponse;
+import com.farmatodo.orders.service.OrderSagaService;
 import com.farmatodo.orders.service.OrderService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.function.LongConsumer;
+
 @RestController
 @RequestMapping("/api/v1")
 @RequiredArgsConstructor
 public class OrderController {
 
     private final OrderService service;
+    private final OrderSagaService sagas;
+    private final IdempotencyService idempotency;
 
+    /**
+     * Síncrono por defecto (201 con la orden ya cobrada). Con {@code Prefer: respond-async} responde 202
+     * con la orden en CREATED y el pipeline sigue en segundo plano; el estado se consulta en Location.
+     * Con {@code Idempotency-Key} un reintento devuelve la respuesta original (Idempotent-Replayed: true).
+     */
     @PostMapping("/orders")
-    public ResponseEntity<OrderResponse> create(@Valid @RequestBody CreateOrderRequest req) {
-        var res = service.createAndPay(req);
-        return ResponseEntity.created(java.net.URI.create("/api/v1/orders/" + res.orderId())).body(res);
+    public ResponseEntity<OrderResponse> create(@Valid @RequestBody CreateOrderRequest req,
+                                                @RequestHeader(value = "Prefer", required = false) String prefer,
+                                                @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        boolean async = prefer != null && prefer.toLowerCase().contains("respond-async");
+        if (idempotencyKey == null) return respond(run(req, async, id -> {}), false);
+
+        // async crea orden y saga en una sola transacción: nunca queda una orden a medias que retomar
+        var out = idempotency.execute(idempotencyKey, idempotency.fingerprint(req, async),
+                bind -> run(req, async, bind),
+                orderId -> new StoredResponse(HttpStatus.CREATED.value(), service.resume(orderId, req)));
+        return respond(out.response(), out.replayed());
+    }
+
+    private StoredResponse run(CreateOrderRequest req, boolean async, LongConsumer bindOrder) {
+        return async
+                ? new StoredResponse(HttpStatus.ACCEPTED.value(), sagas.start(req))
+                : new StoredResponse(HttpStatus.CREATED.value(), service.createAndPay(req, bindOrder));
+    }
+
+    private ResponseEntity<OrderResponse> respond(StoredResponse res, boolean replayed) {
+        var builder = ResponseEntity.status(res.status())
+                .location(java.net.URI.create("/api/v1/orders/" + res.body().orderId()));
+        if (res.status() == HttpStatus.ACCEPTED.value()) builder.header("Preference-Applied", "respond-async");
+        if (replayed) builder.header("Idempotent-Replayed", "true");
+        return builder.body(res.body());
     }
 
     @GetMapping("/orders/{id}")
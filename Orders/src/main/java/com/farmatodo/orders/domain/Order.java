@@ -9,7 +9,12 @@ import java.util.List;
 @Entity @Table(name="orders")
 @Data @Builder @NoArgsConstructor @AllArgsConstructor
 public class Order {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    /** Ids por bloques de orders_seq / order_items_seq (migración V3): Hibernate agrupa los INSERT de orden + ítems. */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable=false)
@@ -22,13 +27,15 @@ public class Order {
     @Column(nullable=false, length=16)
     private OrderStatus status;
 
-    @Column(nullable=false, precision = 18, scale = 2)
+    // null mientras una orden asíncrona no pasa VALIDATE
+    @Column(precision = 18, scale = 2)
     private BigDecimal totalAmount;
 
     @Column(nullable=false)
     private Instant createdAt;
 
-    @OneToMany(mappedBy="order", cascade=CascadeType.ALL, orphanRemoval=true, fetch=FetchType.EAGER)
+    // LAZY: quien necesite los ítems los trae con OrderRepository.findWithItemsById (un solo SELECT)
+    @OneToMany(mappedBy="order", cascade=CascadeType.ALL, orphanRemoval=true)
     private List<OrderItem> items;
 
     @PrePersist void onCreate(){ if (createdAt==null) createdAt = Instant.now(); }
@@ -7,7 +7,9 @@ import java.math.BigDecimal;
 @Entity @Table(name="order_items")
 @Data @Builder @NoArgsConstructor @AllArgsConstructor
 public class OrderItem {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_seq", allocationSize = Order.ID_ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch=FetchType.LAZY) @JoinColumn(name="order_id", nullable=false)
@@ -19,9 +21,10 @@ public class OrderItem {
     @Column(nullable=false)
     private int qty;
 
-    @Column(nullable=false, precision=18, scale=2)
+    // precio y subtotal: null hasta VALIDATE en órdenes asíncronas
+    @Column(precision=18, scale=2)
     private BigDecimal unitPrice;
 
-    @Column(nullable=false, precision=18, scale=2)
+    @Column(precision=18, scale=2)
     private BigDecimal subtotal;
 }
@@ -0,0 +1,56 @@
+package com.farmatodo.orders.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/**
+ * Estado persistente del pipeline asíncrono de una orden (misma PK que orders).
+ * Un worker la toma con un lease (lockedUntil) y guarda cada paso en su propia transacción;
+ * si se cae, otro worker la retoma al vencer el lease.
+ */
+@Entity @Table(name="order_sagas")
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class OrderSaga {
+    @Id
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable=false, length=16)
+    private SagaStep step;
+
+    @Column(length=64)
+    private String txId;
+
+    // Solo token: los datos de tarjeta no se guardan, por eso el modo asíncrono exige tokenCard
+    @Column(nullable=false)
+    private String tokenCard;
+
+    private String customerEmail;
+
+    @Column(length=64)
+    private String reservationId;
+
+    private Integer paymentAttempts;
+
+    @Column(length=16)
+    private String paymentStatus;
+
+    /** Reintentos del paso actual por errores transitorios. */
+    @Column(nullable=false)
+    private int attempts;
+
+    @Column(length=512)
+    private String lastError;
+
+    @Column(nullable=false)
+    private Instant nextRunAt;
+
+    private Instant lockedUntil;
+
+    @Column(nullable=false)
+    private Instant updatedAt;
+
+    @Version
+    private Long version;
+}
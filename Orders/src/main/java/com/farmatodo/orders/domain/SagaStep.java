@@ -0,0 +1,11 @@
+package com.farmatodo.orders.domain;
+
+/**
+ * Paso pendiente de una orden asíncrona. Camino feliz VALIDATE → RESERVE → CHARGE → CONFIRM → DONE;
+ * si el cobro falla con la reserva tomada, RELEASE la devuelve antes de FAILED.
+ */
+public enum SagaStep {
+    VALIDATE, RESERVE, CHARGE, CONFIRM, RELEASE, DONE, FAILED;
+
+    public boolean isTerminal() { return this == DONE || this == FAILED; }
+}
@@ -9,4 +9,8 @@ public class PaymentModels {
 
     // Product
     public record ProductDTO(Long id, String name, long price, int stock) {}
+    public record ReservationDTO(String id, String status) {}
+    public record ProductChangesDTO(String epoch, long cursor, boolean resync, List<Change> changes) {
+        public record Change(long seq, Long productId, String type) {}
+    }
 }
@@ -0,0 +1,92 @@
+package com.farmatodo.orders.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Claves Idempotency-Key de POST /orders. La PK sobre idem_key es el candado entre instancias:
+ * quien inserta la fila (ON CONFLICT DO NOTHING) ejecuta el pedido, el resto espera su respuesta.
+ * Apenas se crea la orden su id queda en la fila: si el pedido falla después, la clave pasa a
+ * INTERRUPTED (no se borra) y el reintento retoma esa orden en vez de crear otra.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyJdbcRepository {
+
+    public static final String IN_PROGRESS = "IN_PROGRESS";
+    public static final String INTERRUPTED = "INTERRUPTED";
+    public static final String COMPLETED = "COMPLETED";
+
+    public record Entry(String requestHash, String status, Integer responseStatus, String responseBody,
+                        Long orderId, Instant updatedAt) {}
+
+    private final JdbcTemplate jdbc;
+
+    /** true si la clave era nueva y quedó tomada por este pedido. */
+    public boolean tryInsert(String key, String requestHash) {
+        return jdbc.update("""
+                INSERT INTO idempotency_keys (idem_key, request_hash, status, created_at, updated_at)
+                VALUES (?, ?, 'IN_PROGRESS', now(), now())
+                ON CONFLICT (idem_key) DO NOTHING
+                """, key, requestHash) == 1;
+    }
+
+    public Optional<Entry> find(String key) {
+        return jdbc.query("""
+                SELECT request_hash, status, response_status, response_body, order_id, updated_at
+                FROM idempotency_keys WHERE idem_key = ?
+                """, rs -> rs.next()
+                ? Optional.of(new Entry(rs.getString(1), rs.getString(2), (Integer) rs.getObject(3),
+                        rs.getString(4), (Long) rs.getObject(5), rs.getTimestamp(6).toInstant()))
+                : Optional.<Entry>empty(), key);
+    }
+
+    /**
+     * Retoma una clave INTERRUPTED o IN_PROGRESS abandonada (la instancia que la tenía cayó) y la deja
+     * IN_PROGRESS; compite por updated_at, así solo un reintento la toma.
+     */
+    public boolean reclaim(String key, String requestHash, String seenStatus, Instant seenUpdatedAt) {
+        return jdbc.update("""
+                UPDATE idempotency_keys SET status = 'IN_PROGRESS', request_hash = ?, updated_at = now()
+                WHERE idem_key = ? AND status = ? AND updated_at = ?
+                """, requestHash, key, seenStatus, Timestamp.from(seenUpdatedAt)) == 1;
+    }
+
+    /** La orden ya existe: desde acá un reintento la retoma en vez de crear otra. */
+    public void bindOrder(String key, long orderId) {
+        jdbc.update("""
+                UPDATE idempotency_keys SET order_id = ?, updated_at = now()
+                WHERE idem_key = ? AND status = 'IN_PROGRESS'
+                """, orderId, key);
+    }
+
+    public void complete(String key, int responseStatus, String responseBody, Long orderId) {
+        jdbc.update("""
+                UPDATE idempotency_keys SET status = 'COMPLETED', response_status = ?, response_body = ?,
+                    order_id = ?, updated_at = now()
+                WHERE idem_key = ?
+                """, responseStatus, responseBody, orderId, key);
+    }
+
+    /** El pedido falló antes de crear la orden: se libera la clave para que el reintento vuelva a ejecutarlo. */
+    public void release(String key) {
+        jdbc.update("DELETE FROM idempotency_keys WHERE idem_key = ? AND status = 'IN_PROGRESS' AND order_id IS NULL", key);
+    }
+
+    /** El pedido falló con la orden ya creada (quizás ya cobrada): la clave sigue atada a esa orden. */
+    public void interrupt(String key) {
+        jdbc.update("""
+                UPDATE idempotency_keys SET status = 'INTERRUPTED', updated_at = now()
+                WHERE idem_key = ? AND status = 'IN_PROGRESS'
+                """, key);
+    }
+
+    public int deleteOlderThan(Instant before) {
+        return jdbc.update("DELETE FROM idempotency_keys WHERE created_at < ?", Timestamp.from(before));
+    }
+}
@@ -1,6 +1,33 @@
 package com.farmatodo.orders.repository;
 
 import com.farmatodo.orders.domain.Order;
+import com.farmatodo.orders.domain.OrderStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface OrderRepository extends JpaRepository<Order, Long> {}
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    /** Orden con sus ítems en un solo SELECT (left join fetch); items es LAZY por defecto. */
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findWithItemsById(Long id);
+
+    /** Cambio de estado condicional (su propia transacción corta): el request y el sweeper nunca se pisan. */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Order o set o.status = :to where o.id = :id and o.status = :from")
+    int transition(@Param("id") Long id, @Param("from") OrderStatus from, @Param("to") OrderStatus to);
+
+    /** Órdenes síncronas que quedaron en CREATED (las asíncronas las avanza su saga). */
+    @Query("select o.id from Order o where o.status = :status and o.createdAt < :before"
+            + " and not exists (select 1 from OrderSaga s where s.orderId = o.id) order by o.createdAt")
+    List<Long> findStuckIds(@Param("status") OrderStatus status, @Param("before") Instant before, Pageable page);
+}
@@ -0,0 +1,36 @@
+package com.farmatodo.orders.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Toma de sagas pendientes para los workers: un solo UPDATE ... RETURNING con SKIP LOCKED,
+ * así varias instancias de orders reparten el trabajo sin bloquearse ni tomar la misma saga.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderSagaJdbcRepository {
+
+    private static final String CLAIM_SQL = """
+            UPDATE order_sagas SET locked_until = now() + make_interval(secs => ?)
+            WHERE order_id IN (
+                SELECT order_id FROM order_sagas
+                WHERE step NOT IN ('DONE', 'FAILED') AND next_run_at <= now()
+                  AND (locked_until IS NULL OR locked_until < now())
+                ORDER BY next_run_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)
+            RETURNING order_id
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    /** Hasta {@code limit} sagas vencidas y sin lease vigente; quedan tomadas por {@code leaseMs}. */
+    public List<Long> claimDue(int limit, long leaseMs) {
+        if (limit <= 0) return List.of();
+        return jdbc.queryForList(CLAIM_SQL, Long.class, leaseMs / 1000.0, limit);
+    }
+}
@@ -0,0 +1,6 @@
+package com.farmatodo.orders.repository;
+
+import com.farmatodo.orders.domain.OrderSaga;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OrderSagaRepository extends JpaRepository<OrderSaga, Long> {}
@@ -0,0 +1,225 @@
+package com.farmatodo.orders.service;
+
+import com.farmatodo.orders.dto.CreateOrderRequest;
+import com.farmatodo.orders.dto.OrderResponse;
+import com.farmatodo.orders.repository.IdempotencyJdbcRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.ErrorResponseException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+
+import static com.farmatodo.orders.repository.IdempotencyJdbcRepository.COMPLETED;
+import static com.farmatodo.orders.repository.IdempotencyJdbcRepository.INTERRUPTED;
+
+/**
+ * Idempotency-Key para POST /orders: un reintento con la misma clave devuelve la respuesta original
+ * (mismo status y body) sin volver a validar, reservar ni cobrar.
+ * <p>
+ * Se busca primero en una cache local, después en la tabla idempotency_keys. Los duplicados
+ * concurrentes en esta instancia esperan al future del pedido en curso; si el pedido corre en otra
+ * instancia (fila IN_PROGRESS) se responde 409 enseguida, sin dejar un hilo esperando.
+ * <p>
+ * Solo se guardan respuestas exitosas. Si el pedido falla antes de crear la orden la clave se libera y
+ * el reintento se ejecuta de nuevo; si falla con la orden ya creada (timeout o 5xx de payments: el
+ * cobro pudo haber pasado) la clave queda INTERRUPTED y atada a esa orden, y el reintento la retoma.
+ */
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyJdbcRepository store;
+    private final ObjectMapper mapper;
+
+    @Value("${orders.idempotency.cache-max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${orders.idempotency.cache-ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    /** Cuánto espera un duplicado en esta instancia a que termine el pedido original antes de responder 409. */
+    @Value("${orders.idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+
+    /** Una clave IN_PROGRESS sin cambios por más que esto se da por abandonada. */
+    @Value("${orders.idempotency.in-progress-timeout-ms:120000}")
+    private long inProgressTimeoutMs;
+
+    @Value("${orders.idempotency.retention-hours:24}")
+    private long retentionHours;
+
+    /** Respuesta a guardar/reenviar: status HTTP (201 o 202) y body. */
+    public record StoredResponse(int status, OrderResponse body) {}
+
+    public record Outcome(StoredResponse response, boolean replayed) {}
+
+    /** El pedido; llama a bindOrder apenas crea la orden para que un reintento pueda retomarla. */
+    @FunctionalInterface
+    public interface Action {
+        StoredResponse run(LongConsumer bindOrder);
+    }
+
+    private record Entry(String requestHash, StoredResponse response) {}
+
+    private Cache<String, Entry> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void initCache() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .build();
+    }
+
+    /** SHA-256 del pedido (body + modo): la misma clave con otro pedido es un error del cliente. */
+    public String fingerprint(CreateOrderRequest req, boolean async) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(mapper.writeValueAsBytes(req));
+            digest.update((byte) (async ? 1 : 0));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** resume recibe el id de la orden que creó un intento anterior interrumpido y la lleva a su estado final. */
+    public Outcome execute(String key, String requestHash, Action action, LongFunction<StoredResponse> resume) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH)
+            throw badRequest("Idempotency-Key must have 1 to " + MAX_KEY_LENGTH + " characters");
+
+        var cached = cache.getIfPresent(key);
+        if (cached != null) return replay(cached, requestHash);
+
+        // Duplicado concurrente en esta instancia: espera al que ya está corriendo
+        var mine = new CompletableFuture<Entry>();
+        var running = inFlight.putIfAbsent(key, mine);
+        if (running != null) return replay(await(running), requestHash);
+
+        try {
+            var outcome = claimOrReplay(key, requestHash, action, resume);
+            mine.complete(new Entry(requestHash, outcome.response()));
+            return outcome;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Outcome claimOrReplay(String key, String requestHash, Action action, LongFunction<StoredResponse> resume) {
+        while (true) {
+            if (store.tryInsert(key, requestHash)) return run(key, requestHash, null, action);
+
+            var row = store.find(key).orElse(null);
+            if (row == null) continue; // se liberó entre el INSERT y el SELECT
+            if (COMPLETED.equals(row.status())) {
+                var entry = new Entry(row.requestHash(), new StoredResponse(row.responseStatus(), read(row.responseBody())));
+                cache.put(key, entry);
+                return replay(entry, requestHash);
+            }
+            if (!row.requestHash().equals(requestHash)) throw mismatch();
+            // INTERRUPTED, o IN_PROGRESS de una instancia que cayó: se retoma (la orden, si ya existía)
+            boolean abandoned = INTERRUPTED.equals(row.status())
+                    || row.updatedAt().isBefore(Instant.now().minusMillis(inProgressTimeoutMs));
+            if (!abandoned) throw inProgress(); // corre en otra instancia
+            if (!store.reclaim(key, requestHash, row.status(), row.updatedAt())) continue; // lo tomó otro reintento
+            Long orderId = row.orderId();
+            return orderId == null
+                    ? run(key, requestHash, null, action)
+                    : run(key, requestHash, orderId, bind -> resume.apply(orderId));
+        }
+    }
+
+    private Outcome run(String key, String requestHash, Long orderId, Action action) {
+        var bound = new boolean[]{ orderId != null };
+        StoredResponse res;
+        try {
+            res = action.run(id -> {
+                store.bindOrder(key, id);
+                bound[0] = true;
+            });
+        } catch (RuntimeException e) {
+            if (bound[0]) store.interrupt(key);
+            else store.release(key);
+            throw e;
+        }
+        store.complete(key, res.status(), write(res.body()), res.body().orderId());
+        cache.put(key, new Entry(requestHash, res));
+        return new Outcome(res, false);
+    }
+
+    private Outcome replay(Entry entry, String requestHash) {
+        if (!entry.requestHash().equals(requestHash)) throw mismatch();
+        return new Outcome(entry.response(), true);
+    }
+
+    /** Mismo resultado que el pedido en curso: su respuesta o su error. */
+    private Entry await(CompletableFuture<Entry> running) {
+        try {
+            return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw inProgress();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${orders.idempotency.cleanup-delay-ms:3600000}")
+    public void purgeExpired() {
+        try {
+            int n = store.deleteOlderThan(Instant.now().minus(retentionHours, ChronoUnit.HOURS));
+            if (n > 0) System.out.printf("[IDEMPOTENCY] claves vencidas borradas=%d%n", n);
+        } catch (Exception e) {
+            System.out.printf("[IDEMPOTENCY] purge failed: %s%n", e.getMessage());
+        }
+    }
+
+    private String write(OrderResponse body) {
+        try {
+            return mapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private OrderResponse read(String json) {
+        try {
+            return mapper.readValue(json, OrderResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ErrorResponseException badRequest(String m){ var ex = new ErrorResponseException(HttpStatus.BAD_REQUEST); ex.setDetail(m); return ex; }
+    private static ErrorResponseException mismatch(){ var ex = new ErrorResponseException(HttpStatus.UNPROCESSABLE_ENTITY); ex.setDetail("Idempotency-Key was already used with a different request"); return ex; }
+    private static ErrorResponseException inProgress(){ var ex = new ErrorResponseException(HttpStatus.CONFLICT); ex.setDetail("A request with this Idempotency-Key is still in progress"); return ex; }
+}
@@ -0,0 +1,34 @@
+package com.farmatodo.orders.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/** Cierra las órdenes síncronas que quedaron en CREATED porque el proceso cayó a mitad del request. */
+@Component
+@RequiredArgsConstructor
+public class OrderRecoverySweeper {
+
+    private final OrderService service;
+
+    @Value("${orders.recovery.sweep-batch-size:100}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${orders.recovery.sweep-delay-ms:60000}")
+    public void sweep() {
+        int recovered = 0;
+        try {
+            for (Long id : service.findStuck(batchSize)) {
+                try {
+                    if (service.recover(id)) recovered++;
+                } catch (Exception e) {
+                    System.out.printf("[ORDERS] recover failed ORD-%d: %s%n", id, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            System.out.printf("[ORDERS] recovery sweep failed: %s%n", e.getMessage());
+        }
+        if (recovered > 0) System.out.printf("[ORDERS] recovered=%d%n", recovered);
+    }
+}
@@ -0,0 +1,339 @@
+package com.farmatodo.orders.service;
+
+import com.farmatodo.orders.domain.*;
+import com.farmatodo.orders.dto.CreateOrderRequest;
+import com.farmatodo.orders.dto.OrderResponse;
+import com.farmatodo.orders.dto.PaymentModels;
+import com.farmatodo.orders.repository.OrderRepository;
+import com.farmatodo.orders.repository.OrderSagaRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.ErrorResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pipeline asíncrono de órdenes (POST /orders con Prefer: respond-async).
+ * <p>
+ * start guarda la orden en CREATED junto con su saga y responde de inmediato; un worker avanza la saga
+ * VALIDATE → RESERVE → CHARGE → CONFIRM, con RELEASE como compensación si el cobro no sale.
+ * Cada llamada remota se hace fuera de transacción y su resultado se guarda en una transacción corta,
+ * así ni el hilo HTTP ni una conexión del pool esperan a customers/products/payments.
+ * Los errores transitorios reintentan el paso con backoff exponencial; los de negocio (4xx) compensan.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderSagaService {
+
+    private final OrderRepository orders;
+    private final OrderSagaRepository sagas;
+    private final OrderService orderService;
+    private final ProductClient products;
+    private final PaymentsClient payments;
+    private final AuditClient auditClient;
+    private final ApplicationEventPublisher events;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${orders.saga.lease-ms:120000}")
+    private long leaseMs;
+
+    @Value("${orders.saga.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${orders.saga.backoff-ms:500}")
+    private long backoffMs;
+
+    @Value("${orders.saga.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    @Transactional
+    public OrderResponse start(CreateOrderRequest req) {
+        if (req.tokenCard()==null || req.tokenCard().isBlank())
+            throw badRequest("Async orders require 'tokenCard' (card data is not stored)");
+        if (req.items()==null || req.items().isEmpty()) throw badRequest("Items required");
+
+        List<OrderItem> items = new ArrayList<>();
+        for (var it : req.items()) {
+            items.add(OrderItem.builder().productId(it.productId()).qty(it.qty()).build());
+        }
+        Instant now = Instant.now();
+        Order order = Order.builder()
+                .customerId(req.customerId())
+                .addressSnapshot(req.address())
+                .status(OrderStatus.CREATED)
+                .createdAt(now)
+                .items(items)
+                .build();
+        Order finalOrder = order;
+        items.forEach(i -> i.setOrder(finalOrder));
+        order = orders.save(order);
+
+        // Tomada por quien la crea: el worker arranca tras el commit; si no hay lugar, el poller la retoma al vencer el lease
+        sagas.save(OrderSaga.builder()
+                .orderId(order.getId())
+                .step(SagaStep.VALIDATE)
+                .txId(MDC.get("txId"))
+                .tokenCard(req.tokenCard())
+                .customerEmail(req.customerEmail())
+                .nextRunAt(now)
+                .lockedUntil(now.plusMillis(leaseMs))
+                .updatedAt(now)
+                .build());
+        events.publishEvent(new OrderSagaStartedEvent(order.getId()));
+        return orderService.map(order, null, null);
+    }
+
+    /** Avanza la saga hasta terminar o hasta que un error transitorio la reprograma. */
+    public void run(Long orderId) {
+        var tx = new TransactionTemplate(txManager);
+        while (true) {
+            var state = tx.execute(s -> sagas.findById(orderId)
+                    .map(saga -> new State(saga, orders.findWithItemsById(orderId).orElseThrow()))
+                    .orElse(null));
+            if (state == null || state.saga().getStep().isTerminal()) return;
+            var saga = state.saga();
+            var order = state.order();
+            boolean rescheduled = false;
+
+            try {
+                advance(saga, order);
+                saga.setAttempts(0);
+                // en la compensación lastError guarda el motivo de la falla; si terminó bien ya no aplica
+                if (saga.getStep() == SagaStep.DONE) saga.setLastError(null);
+            } catch (RuntimeException e) {
+                String reason = reason(e);
+                // CHARGE también se reintenta: payments cobra una sola vez por orderId y reenvía el resultado
+                boolean retryable = isTransient(e) || chargeInProgress(saga, e);
+                if (retryable && saga.getAttempts() + 1 < maxAttempts) {
+                    saga.setAttempts(saga.getAttempts() + 1);
+                    saga.setLastError(truncate(reason));
+                    saga.setNextRunAt(Instant.now().plusMillis(backoff(saga.getAttempts())));
+                    rescheduled = true;
+                } else if (saga.getStep() == SagaStep.CHARGE) {
+                    rescheduled = settleCharge(saga, order, reason, retryable);
+                } else {
+                    compensate(saga, order, reason);
+                }
+            }
+
+            Instant now = Instant.now();
+            saga.setUpdatedAt(now);
+            saga.setLockedUntil(rescheduled ? null : now.plusMillis(leaseMs));
+            try {
+                tx.executeWithoutResult(s -> {
+                    orders.save(order);
+                    sagas.save(saga);
+                });
+            } catch (OptimisticLockingFailureException e) {
+                // Otro worker la tomó (lease vencido): el paso ya lo guardó él
+                System.out.printf("[SAGA] ORD-%d tomada por otro worker en %s%n", orderId, saga.getStep());
+                return;
+            }
+            if (rescheduled) {
+                System.out.printf("[SAGA] ORD-%d %s reintento %d: %s%n", orderId, saga.getStep(), saga.getAttempts(), saga.getLastError());
+                return;
+            }
+        }
+    }
+
+    private record State(OrderSaga saga, Order order) {}
+
+    private void advance(OrderSaga saga, Order order) {
+        switch (saga.getStep()) {
+            case VALIDATE -> validate(saga, order);
+            case RESERVE -> {
+                // Idempotente por referencia: un reintento tras timeout recibe el mismo hold
+                saga.setReservationId(products.reserve("ORD-" + order.getId(), order.getItems()));
+                saga.setStep(SagaStep.CHARGE);
+            }
+            case CHARGE -> charge(saga, order);
+            case CONFIRM -> {
+                orderService.confirmReservation(saga.getReservationId(), order);
+                finish(saga, order, OrderStatus.PAID, null);
+            }
+            case RELEASE -> {
+                products.release(saga.getReservationId());
+                finish(saga, order, OrderStatus.FAILED, saga.getLastError());
+            }
+            default -> throw new IllegalStateException("Unexpected step " + saga.getStep());
+        }
+    }
+
+    private void validate(OrderSaga saga, Order order) {
+        var lookup = orderService.lookup(order.getCustomerId(),
+                order.getItems().stream().map(OrderItem::getProductId).toList());
+        if (!lookup.customerExists()) throw badRequest("Customer not found");
+        order.setTotalAmount(orderService.price(order.getItems(), lookup.products()));
+
+        auditClient.log(
+                saga.getTxId(),
+                "orders",
+                "ORDER.CREATED",
+                "ORD-" + order.getId(),
+                null,
+                """
+                {
+                  "customerId": %d,
+                  "totalMinor": %d,
+                  "address": "%s",
+                  "itemsCount": %d,
+                  "async": true
+                }
+                """.formatted(order.getCustomerId(),
+                        minor(order.getTotalAmount()),
+                        order.getAddressSnapshot().replace("\"","\\\""),
+                        order.getItems().size())
+        );
+        saga.setStep(SagaStep.RESERVE);
+    }
+
+    private void charge(OrderSaga saga, Order order) {
+        var payRes = payments.charge(
+                "ORD-" + order.getId(),
+                minor(order.getTotalAmount()),
+                "COP",
+                saga.getTokenCard(),
+                null,
+                saga.getCustomerEmail()
+        );
+        saga.setPaymentAttempts(payRes.attempts());
+        if ("APPROVED".equalsIgnoreCase(payRes.status())) {
+            saga.setPaymentStatus("APPROVED");
+            saga.setStep(SagaStep.CONFIRM);
+        } else {
+            saga.setPaymentStatus("REJECTED");
+            saga.setLastError("payment_rejected");
+            saga.setStep(SagaStep.RELEASE);
+        }
+    }
+
+    /**
+     * CHARGE sin respuesta útil (reintentos agotados o 4xx): el cobro pudo aprobarse igual, así que antes de
+     * liberar el stock se consulta a payments. Solo se compensa con un resultado definitivo: un cobro no
+     * aprobado, o ningún cobro cuando payments rechazó el pedido (4xx). Sin cobro registrado tras 5xx/409 el
+     * cobro puede seguir en curso (payments lo guarda al terminar): se reprograma y el próximo CHARGE, que
+     * es idempotente por orderId, trae el resultado. true si hay que reprogramar.
+     */
+    private boolean settleCharge(OrderSaga saga, Order order, String reason, boolean mayBeInFlight) {
+        PaymentModels.ChargeResponse payment;
+        try {
+            payment = payments.findByOrder("ORD-" + order.getId());
+        } catch (RuntimeException e) {
+            // no se sabe si cobró: no se libera el stock, se vuelve a preguntar más tarde
+            return retryChargeLater(saga, reason);
+        }
+        if (payment == null && mayBeInFlight) return retryChargeLater(saga, reason);
+        if (payment != null && "APPROVED".equalsIgnoreCase(payment.status())) {
+            saga.setPaymentStatus("APPROVED");
+            saga.setPaymentAttempts(payment.attempts());
+            saga.setAttempts(0);
+            saga.setStep(SagaStep.CONFIRM);
+        } else {
+            compensate(saga, order, reason);
+        }
+        return false;
+    }
+
+    private boolean retryChargeLater(OrderSaga saga, String reason) {
+        saga.setLastError(truncate(reason));
+        saga.setNextRunAt(Instant.now().plusMillis(maxBackoffMs));
+        return true;
+    }
+
+    /** Error de negocio o reintentos agotados en el paso actual. */
+    private void compensate(OrderSaga saga, Order order, String reason) {
+        saga.setLastError(truncate(reason));
+        switch (saga.getStep()) {
+            case CHARGE -> saga.setStep(SagaStep.RELEASE);
+            case CONFIRM -> {
+                // El cobro ya se aprobó: la orden queda PAID igual y el desfase de stock queda en el log
+                System.out.printf("[SAGA] ORD-%d confirm %s falló: %s%n", order.getId(), saga.getReservationId(), reason);
+                finish(saga, order, OrderStatus.PAID, null);
+            }
+            case RELEASE -> {
+                // el sweeper de products devuelve el stock al vencer el hold
+                System.out.printf("[SAGA] ORD-%d release %s falló: %s%n", order.getId(), saga.getReservationId(), reason);
+                finish(saga, order, OrderStatus.FAILED, saga.getLastError());
+            }
+            default -> finish(saga, order, OrderStatus.FAILED, reason);
+        }
+    }
+
+    private void finish(OrderSaga saga, Order order, OrderStatus status, String reason) {
+        order.setStatus(status);
+        saga.setStep(status == OrderStatus.PAID ? SagaStep.DONE : SagaStep.FAILED);
+        if (status == OrderStatus.PAID) {
+            auditClient.log(
+                    saga.getTxId(),
+                    "orders",
+                    "ORDER.PAID",
+                    "ORD-" + order.getId(),
+                    null,
+                    """
+                    {
+                      "paymentAttempts": %d,
+                      "totalMinor": %d,
+                      "currency": "COP"
+                    }
+                    """.formatted(saga.getPaymentAttempts(), minor(order.getTotalAmount()))
+            );
+        } else {
+            auditClient.log(
+                    saga.getTxId(),
+                    "orders",
+                    "ORDER.FAILED",
+                    "ORD-" + order.getId(),
+                    null,
+                    """
+                    {
+                      "reason": "%s",
+                      "totalMinor": %s,
+                      "currency": "COP"
+                    }
+                    """.formatted(String.valueOf(reason).replace("\"","\\\""),
+                            order.getTotalAmount() == null ? "null" : minor(order.getTotalAmount()))
+            );
+        }
+    }
+
+    /** 5xx, 429, timeouts y errores de conexión se reintentan; el resto de 4xx es definitivo. */
+    static boolean isTransient(RuntimeException e) {
+        if (e instanceof ErrorResponseException er) return er.getStatusCode().is5xxServerError();
+        if (e instanceof WebClientResponseException wr)
+            return wr.getStatusCode().is5xxServerError() || wr.getStatusCode().value() == 429;
+        return true;
+    }
+
+    /** 409 de payments en CHARGE: el mismo cobro sigue en curso allá; reintentar devuelve su resultado. */
+    static boolean chargeInProgress(OrderSaga saga, RuntimeException e) {
+        return saga.getStep() == SagaStep.CHARGE
+                && e instanceof WebClientResponseException wr && wr.getStatusCode().value() == 409;
+    }
+
+    private static String reason(RuntimeException e) {
+        if (e instanceof ErrorResponseException er && er.getBody().getDetail() != null) return er.getBody().getDetail();
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private long backoff(int attempt) {
+        return Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 20));
+    }
+
+    private static long minor(BigDecimal amount) { return amount.movePointRight(2).longValueExact(); }
+
+    private static String truncate(String s) { return s.length() <= 512 ? s : s.substring(0, 512); }
+
+    private ErrorResponseException badRequest(String m){ var ex = new ErrorResponseException(HttpStatus.BAD_REQUEST); ex.setDetail(m); return ex; }
+}
@@ -0,0 +1,4 @@
+package com.farmatodo.orders.service;
+
+/** Se publica dentro de la transacción que crea la saga; el worker la arranca solo si hace commit. */
+public record OrderSagaStartedEvent(Long orderId) {}
@@ -0,0 +1,82 @@
+package com.farmatodo.orders.service;
+
+import com.farmatodo.orders.repository.OrderSagaJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Pool acotado que ejecuta las sagas de órdenes asíncronas. Las nuevas arrancan apenas hace commit
+ * la transacción que las crea; el poller toma las reprogramadas (backoff) y las de workers caídos
+ * (lease vencido), solo tantas como hilos libres hay, así la cola nunca crece más que el pool.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderSagaWorker {
+
+    private final OrderSagaService sagas;
+    private final OrderSagaJdbcRepository claims;
+
+    @Value("${orders.saga.workers:8}")
+    private int workers;
+
+    @Value("${orders.saga.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${orders.saga.lease-ms:120000}")
+    private long leaseMs;
+
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("order-saga-");
+        executor.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // lo que quede a medias lo retoma el poller (de esta u otra instancia) al vencer el lease
+        executor.shutdown();
+    }
+
+    @TransactionalEventListener
+    public void on(OrderSagaStartedEvent event) {
+        submit(event.orderId());
+    }
+
+    @Scheduled(fixedDelayString = "${orders.saga.poll-ms:1000}")
+    public void poll() {
+        try {
+            int free = workers - executor.getActiveCount() - executor.getQueueSize();
+            for (Long id : claims.claimDue(free, leaseMs)) submit(id);
+        } catch (Exception e) {
+            System.out.printf("[SAGA] poll failed: %s%n", e.getMessage());
+        }
+    }
+
+    private void submit(Long orderId) {
+        try {
+            executor.execute(() -> {
+                try {
+                    sagas.run(orderId);
+                } catch (Exception e) {
+                    System.out.printf("[SAGA] ORD-%d falló: %s%n", orderId, e.getMessage());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // cola llena: queda tomada hasta que venza el lease y el poller la vuelva a tomar
+            System.out.printf("[SAGA] ORD-%d sin lugar en el pool, se retoma al vencer el lease%n", orderId);
+        }
+    }
+}
@@ -3,18 +3,31 @@ package com.farmatodo.orders.service;
 import com.farmatodo.orders.domain.*;
 import com.farmatodo.orders.dto.CreateOrderRequest;
 import com.farmatodo.orders.dto.OrderResponse;
+import com.farmatodo.orders.dto.PaymentModels;
+import com.farmatodo.orders.dto.PaymentModels.ProductDTO;
 import com.farmatodo.orders.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.ErrorResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongConsumer;
 
 @Service
 @RequiredArgsConstructor
@@ -26,35 +39,56 @@ public class OrderService {
     private final PaymentsClient payments;
     private final AuditClient auditClient;
 
-    @Transactional
+    /** Ids por llamada a POST /products/batch. */
+    @Value("${orders.lookup.batch-size:100}")
+    private int lookupBatchSize;
+
+    /** Máximo de consultas simultáneas a products-service por orden. */
+    @Value("${orders.lookup.max-concurrency:8}")
+    private int lookupConcurrency;
+
+    /** Deadline único para validar cliente + productos (no es por llamada). */
+    @Value("${orders.lookup.timeout-ms:3000}")
+    private long lookupTimeoutMs;
+
+    /** Antigüedad a partir de la cual una orden síncrona en CREATED se da por abandonada (> TTL del hold). */
+    @Value("${orders.recovery.stuck-after-ms:600000}")
+    private long stuckAfterMs;
+
+    /** Sin cobro registrado en payments, el sweeper espera esto antes de darla por fallida (> duración máxima de un cobro). */
+    @Value("${orders.recovery.no-payment-fail-after-ms:3600000}")
+    private long noPaymentFailAfterMs;
+
+    /**
+     * Sin transacción envolvente: la orden se guarda en CREATED en una transacción corta y el estado final
+     * en otra (transition condicional), así ninguna conexión del pool queda tomada mientras se espera a
+     * products/payments. Si el proceso muere en el medio, OrderRecoverySweeper cierra la orden.
+     */
     public OrderResponse createAndPay(CreateOrderRequest req) {
+        return createAndPay(req, id -> {});
+    }
+
+    /** onCreated recibe el id apenas la orden queda guardada (Idempotency-Key la ata a la clave). */
+    public OrderResponse createAndPay(CreateOrderRequest req, LongConsumer onCreated) {
         final String txId = MDC.get("txId");
 
-        // 1) Validaciones de entrada
-        if (!customers.exists(req.customerId())) throw badRequest("Customer not found");
+        // 1) Validaciones de entrada (locales, antes de tocar la red)
         if ((req.tokenCard()==null || req.tokenCard().isBlank()) && req.card()==null)
             throw badRequest("Either 'tokenCard' or 'card' must be provided");
         if (req.items()==null || req.items().isEmpty()) throw badRequest("Items required");
 
-        // 2) Calcular total, validar stock, armar ítems
+        // Cliente y productos se consultan en paralelo: la latencia es la de la llamada más lenta
+        var lookup = lookup(req.customerId(), req.items().stream().map(CreateOrderRequest.Item::productId).toList());
+        if (!lookup.customerExists()) throw badRequest("Customer not found");
+
+        // 2) Calcular total y armar ítems (el stock se valida al reservar, no con el dato cacheado)
         List<OrderItem> items = new ArrayList<>();
-        BigDecimal total = BigDecimal.ZERO;
         for (var it : req.items()) {
-            var p = products.get(it.productId());
-            if (p == null) throw badRequest("Product not found: " + it.productId());
-            if (p.stock() < it.qty()) throw conflict("Insufficient stock for product " + it.productId());
-            BigDecimal unit = BigDecimal.valueOf(p.price()).movePointLeft(2); // price en centavos → moneda
-            BigDecimal sub = unit.multiply(BigDecimal.valueOf(it.qty()));
-            total = total.add(sub);
-            items.add(OrderItem.builder()
-                    .productId(it.productId())
-                    .qty(it.qty())
-                    .unitPrice(unit)
-                    .subtotal(sub)
-                    .build());
+            items.add(OrderItem.builder().productId(it.productId()).qty(it.qty()).build());
         }
+        BigDecimal total = price(items, lookup.products());
 
-        // 3) Crear Order en CREATED
+        // 3) Crear Order en CREATED (repo.save es su propia transacción: commit inmediato)
         Order order = Order.builder()
                 .customerId(req.customerId())
                 .addressSnapshot(req.address())
@@ -66,8 +100,48 @@ public class OrderService {
         Order finalOrder = order;
         items.forEach(i -> i.setOrder(finalOrder));
         order = repo.save(order);
+        onCreated.accept(order.getId());
 
-        auditClient.log(
+        return reserveAndCharge(order, req, txId, true);
+    }
+
+    /**
+     * Retoma una orden síncrona cuyo pedido se cortó (Idempotency-Key INTERRUPTED): si sigue en CREATED
+     * vuelve a reservar y cobrar, ambos idempotentes por ORD-<id> (se recibe el mismo hold y el mismo
+     * cobro si ya existían); si ya se cerró, devuelve su estado con el resultado que registró payments.
+     */
+    public OrderResponse resume(Long id, CreateOrderRequest req) {
+        var order = repo.findWithItemsById(id).orElseThrow(() -> notFound("Order not found"));
+        if (order.getStatus() == OrderStatus.CREATED) {
+            // pasado stuck-after la orden es del sweeper: cobrar ahora podría cruzarse con su cierre
+            if (order.getCreatedAt().isBefore(Instant.now().minusMillis(stuckAfterMs)))
+                throw conflict("Order is being recovered; check its status");
+            System.out.printf("[ORDERS] ORD-%d retomada por Idempotency-Key%n", id);
+            return reserveAndCharge(order, req, MDC.get("txId"), false);
+        }
+        var payRes = payments.findByOrder("ORD-" + id);
+        return map(order, payRes == null ? null : payRes.attempts(), payRes == null ? null : payRes.status());
+    }
+
+    /**
+     * Pasos 4 a 6 sobre una orden en CREATED. Una falla ambigua (timeout, 5xx, cobro aún en curso) deja la
+     * orden en CREATED con su hold: el cobro pudo haber pasado, así que no se libera ni se da por fallida;
+     * la retoma un reintento con la misma Idempotency-Key o, si no llega, OrderRecoverySweeper.
+     */
+    private OrderResponse reserveAndCharge(Order order, CreateOrderRequest req, String txId, boolean auditCreated) {
+        var items = order.getItems();
+        BigDecimal total = order.getTotalAmount();
+
+        // 4) Retener stock (hold con TTL en products-service) antes de cobrar
+        String reservationId;
+        try {
+            reservationId = products.reserve("ORD-" + order.getId(), order.getItems());
+        } catch (RuntimeException e) {
+            if (!OrderSagaService.isTransient(e)) close(order, OrderStatus.FAILED);
+            throw e;
+        }
+
+        if (auditCreated) auditClient.log(
                 txId,
                 "orders",
                 "ORDER.CREATED",
@@ -86,25 +160,30 @@ public class OrderService {
                         items.size())
         );
 
-        // 4) Llamar a payments-service
+        // 5) Llamar a payments-service; si rechaza (4xx), el hold se libera de inmediato (no espera al TTL)
         long amountMinor = total.movePointRight(2).longValueExact(); // a unidades menores
-        var payRes = payments.charge(
-                "ORD-" + order.getId(),
-                amountMinor,
-                "COP",
-                req.tokenCard(),
-                req.card(),
-                req.customerEmail()
-        );
-
-        // 5) Si payments aprobó → descontar stock y marcar PAID, si no → FAILED
-        if ("APPROVED".equalsIgnoreCase(payRes.status())) {
-            for (var it : order.getItems()) {
-                products.decrement(it.getProductId(), it.getQty());
+        PaymentModels.ChargeResponse payRes;
+        try {
+            payRes = payments.charge(
+                    "ORD-" + order.getId(),
+                    amountMinor,
+                    "COP",
+                    req.tokenCard(),
+                    req.card(),
+                    req.customerEmail()
+            );
+        } catch (RuntimeException e) {
+            if (!OrderSagaService.isTransient(e) && !chargeInProgress(e)) {
+                releaseQuietly(reservationId);
+                close(order, OrderStatus.FAILED);
             }
-            order.setStatus(OrderStatus.PAID);
+            throw e;
+        }
 
-            auditClient.log(
+        // 6) Si payments aprobó → confirmar la reserva y marcar PAID, si no → liberarla y FAILED
+        if ("APPROVED".equalsIgnoreCase(payRes.status())) {
+            confirmReservation(reservationId, order);
+            if (close(order, OrderStatus.PAID)) auditClient.log(
                     txId,
                     "orders",
                     "ORDER.PAID",
@@ -120,8 +199,8 @@ public class OrderService {
             );
 
         } else {
-            order.setStatus(OrderStatus.FAILED);
-            auditClient.log(
+            releaseQuietly(reservationId);
+            if (close(order, OrderStatus.FAILED)) auditClient.log(
                     txId,
                     "orders",
                     "ORDER.FAILED",
@@ -136,20 +215,165 @@ public class OrderService {
                     """.formatted(amountMinor)
             );
         }
-        order = repo.save(order);
 
         return map(order, payRes.attempts(),
                 "APPROVED".equalsIgnoreCase(payRes.status()) ? "APPROVED" : "REJECTED");
     }
 
+    /**
+     * Segunda transacción corta: CREATED → estado final, salvo que el sweeper ya la haya cerrado; en ese
+     * caso la orden toma el estado guardado, que es el que se responde. false si no la cerró este request.
+     */
+    private boolean close(Order order, OrderStatus status) {
+        if (repo.transition(order.getId(), OrderStatus.CREATED, status) == 0) {
+            var stored = repo.findById(order.getId()).map(Order::getStatus).orElse(status);
+            System.out.printf("[ORDERS] ORD-%d ya no estaba en CREATED al cerrarla como %s (está %s)%n",
+                    order.getId(), status, stored);
+            order.setStatus(stored);
+            return false;
+        }
+        order.setStatus(status);
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> findStuck(int limit) {
+        return repo.findStuckIds(OrderStatus.CREATED, Instant.now().minusMillis(stuckAfterMs), PageRequest.of(0, limit));
+    }
+
+    /**
+     * Cierra una orden síncrona que quedó en CREATED (el proceso cayó entre el alta y el cierre) según
+     * lo que registró payments. El stock se ajusta según el estado real de la reserva ORD-<id>: si ya
+     * se confirmó no se toca, si el hold sigue vivo se confirma (o se libera si no hubo cobro) y solo
+     * si venció o no existe se descuenta directo. Si payments o products no responden, se reintenta
+     * en el próximo barrido. Sin cobro registrado tampoco se cierra: payments guarda el cobro recién al
+     * terminarlo, así que puede seguir en curso; pasado no-payment-fail-after-ms se da por fallida.
+     */
+    public boolean recover(Long id) {
+        var order = repo.findWithItemsById(id).orElse(null);
+        if (order == null || order.getStatus() != OrderStatus.CREATED) return false;
+
+        var payRes = payments.findByOrder("ORD-" + id);
+        if (payRes == null && order.getCreatedAt().isAfter(Instant.now().minusMillis(noPaymentFailAfterMs))) return false;
+        boolean approved = payRes != null && "APPROVED".equalsIgnoreCase(payRes.status());
+        var reservations = products.findReservations("ORD-" + id);
+        if (repo.transition(id, OrderStatus.CREATED, approved ? OrderStatus.PAID : OrderStatus.FAILED) == 0) return false;
+
+        var held = reservations.stream().filter(r -> "HELD".equals(r.status())).findFirst();
+        if (approved) {
+            if (reservations.stream().anyMatch(r -> "CONFIRMED".equals(r.status()))) {
+                System.out.printf("[ORDERS] ORD-%d recuperada como PAID, reserva ya confirmada%n", id);
+            } else if (held.isPresent()) {
+                System.out.printf("[ORDERS] ORD-%d recuperada como PAID, se confirma el hold%n", id);
+                confirmReservation(held.get().id(), order);
+            } else {
+                System.out.printf("[ORDERS] ORD-%d recuperada como PAID, sin hold vivo: descuento directo%n", id);
+                try {
+                    products.decrementAll(order.getItems());
+                } catch (RuntimeException e) {
+                    System.out.printf("[ORDERS] stock no descontado para ORD-%d: %s%n", id, e.getMessage());
+                }
+            }
+        } else {
+            held.ifPresent(r -> releaseQuietly(r.id()));
+        }
+        auditClient.log(
+                null,
+                "orders",
+                approved ? "ORDER.PAID" : "ORDER.FAILED",
+                "ORD-" + id,
+                null,
+                """
+                {
+                  "reason": "recovered_%s",
+                  "totalMinor": %d,
+                  "currency": "COP"
+                }
+                """.formatted(payRes == null ? "no_payment" : payRes.status().toLowerCase(),
+                        order.getTotalAmount().movePointRight(2).longValueExact())
+        );
+        return true;
+    }
+
+    /**
+     * El cobro ya se aprobó: si el hold venció mientras tanto (confirm → 409) se intenta
+     * el descuento directo; la orden queda PAID igual y el desfase queda en el log.
+     */
+    void confirmReservation(String reservationId, Order order) {
+        try {
+            products.confirm(reservationId);
+        } catch (WebClientResponseException.Conflict e) {
+            System.out.printf("[ORDERS] reserva %s vencida para ORD-%d, descuento directo%n", reservationId, order.getId());
+            try {
+                products.decrementAll(order.getItems());
+            } catch (RuntimeException ex) {
+                System.out.printf("[ORDERS] stock no descontado para ORD-%d: %s%n", order.getId(), ex.getMessage());
+            }
+        }
+    }
+
+    /** 409 de payments: el mismo cobro sigue en curso allá. */
+    private static boolean chargeInProgress(RuntimeException e) {
+        return e instanceof WebClientResponseException wr && wr.getStatusCode().value() == 409;
+    }
+
+    private void releaseQuietly(String reservationId) {
+        try {
+            products.release(reservationId);
+        } catch (RuntimeException e) {
+            // el sweeper de products devuelve el stock al vencer el hold
+            System.out.printf("[ORDERS] release %s falló: %s%n", reservationId, e.getMessage());
+        }
+    }
+
+    /**
+     * Fan-out de validaciones remotas: customers.exists en paralelo con products.getAll
+     * (ids distintos, en lotes de {@code lookupBatchSize}), con concurrencia acotada
+     * y un único timeout para todo el conjunto.
+     */
+    Lookup lookup(Long customerId, List<Long> productIds) {
+        Mono<Boolean> customer = Mono.fromCallable(() -> customers.exists(customerId))
+                .subscribeOn(Schedulers.boundedElastic());
+
+        Mono<Map<Long, ProductDTO>> catalog = Flux.fromIterable(productIds)
+                .distinct()
+                .buffer(Math.max(1, lookupBatchSize))
+                .flatMap(ids -> Mono.fromCallable(() -> products.getAll(ids))
+                                .subscribeOn(Schedulers.boundedElastic()),
+                        Math.max(1, lookupConcurrency))
+                .collect(HashMap::new, Map::putAll);
+
+        return Mono.zip(customer, catalog, Lookup::new)
+                .timeout(Duration.ofMillis(lookupTimeoutMs))
+                .onErrorMap(TimeoutException.class,
+                        e -> gatewayTimeout("Customer/product validation exceeded " + lookupTimeoutMs + " ms"))
+                .block();
+    }
+
+    record Lookup(boolean customerExists, Map<Long, ProductDTO> products) {}
+
+    /** Completa precio unitario y subtotal de cada ítem con el catálogo y devuelve el total. */
+    BigDecimal price(List<OrderItem> items, Map<Long, ProductDTO> catalog) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (var it : items) {
+            var p = catalog.get(it.getProductId());
+            if (p == null) throw badRequest("Product not found: " + it.getProductId());
+            BigDecimal unit = BigDecimal.valueOf(p.price()).movePointLeft(2); // price en centavos → moneda
+            it.setUnitPrice(unit);
+            it.setSubtotal(unit.multiply(BigDecimal.valueOf(it.getQty())));
+            total = total.add(it.getSubtotal());
+        }
+        return total;
+    }
+
     @Transactional(readOnly = true)
     public OrderResponse get(Long id) {
-        var o = repo.findById(id).orElseThrow(() -> notFound("Order not found"));
+        var o = repo.findWithItemsById(id).orElseThrow(() -> notFound("Order not found"));
         // paymentAttempts / paymentStatus no vienen de DB aquí; los inferimos como null
         return map(o, null, null);
     }
 
-    private OrderResponse map(Order o, Integer attempts, String pstatus) {
+    OrderResponse map(Order o, Integer attempts, String pstatus) {
         var items = o.getItems().stream()
                 .map(i -> new OrderResponse.Item(i.getProductId(), i.getQty(), i.getUnitPrice(), i.getSubtotal()))
                 .toList();
@@ -159,4 +383,5 @@ public class OrderService {
     private ErrorResponseException badRequest(String m){ var ex = new ErrorResponseException(HttpStatus.BAD_REQUEST); ex.setDetail(m); return ex; }
     private ErrorResponseException conflict(String m){ var ex = new ErrorResponseException(HttpStatus.CONFLICT); ex.setDetail(m); return ex; }
     private ErrorResponseException notFound(String m){ var ex = new ErrorResponseException(HttpStatus.NOT_FOUND); ex.setDetail(m); return ex; }
+    private ErrorResponseException gatewayTimeout(String m){ var ex = new ErrorResponseException(HttpStatus.GATEWAY_TIMEOUT); ex.setDetail(m); return ex; }
 }
@@ -5,6 +5,7 @@ import com.farmatodo.orders.dto.PaymentModels.*;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 @Component
 public class PaymentsClient {
@@ -29,4 +30,18 @@ public class PaymentsClient {
                 .bodyToMono(ChargeResponse.class)
                 .block();
     }
+
+    /** Resultado del cobro de una orden según payments; null si nunca se registró un cobro. */
+    public ChargeResponse findByOrder(String orderId) {
+        try {
+            return web.mutate().baseUrl(baseUrl).build()
+                    .get().uri("/api/v1/payments/by-order/{orderId}", orderId)
+                    .header("X-API-KEY", apiKey)
+                    .retrieve()
+                    .bodyToMono(ChargeResponse.class)
+                    .block();
+        } catch (WebClientResponseException.NotFound e) {
+            return null;
+        }
+    }
 }
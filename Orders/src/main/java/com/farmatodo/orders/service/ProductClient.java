@@ -1,18 +1,37 @@
 package com.farmatodo.orders.service;
 
+import com.farmatodo.orders.domain.OrderItem;
 import com.farmatodo.orders.dto.PaymentModels.ProductDTO; // si tienes un DTO específico de product, úsalo aquí
+import com.farmatodo.orders.dto.PaymentModels.ProductChangesDTO;
+import com.farmatodo.orders.dto.PaymentModels.ReservationDTO;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
 @Component
 @RequiredArgsConstructor
 public class ProductClient {
 
     private final WebClient web;
+    private final MeterRegistry meterRegistry;
 
     @Value("${clients.product.base-url}")
     private String baseUrl;
@@ -20,11 +39,148 @@ public class ProductClient {
     @Value("${clients.product.api-key}")
     private String apiKey;
 
+    @Value("${clients.product.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${clients.product.cache.ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    @Value("${clients.product.cache.refresh-seconds:60}")
+    private long cacheRefreshSeconds;
+
+    /**
+     * Read-through de productos (precio/nombre). El stock que trae puede estar viejo:
+     * la disponibilidad real se valida al reservar. Caffeine agrupa las cargas concurrentes
+     * de un mismo id en una sola llamada HTTP.
+     * Pasados refresh-seconds, el siguiente acceso revalida en segundo plano con If-None-Match:
+     * un 304 deja la entrada vigente sin transferir ni deserializar el producto.
+     */
+    private LoadingCache<Long, Tagged> cache;
+
+    /** Producto + ETag con que se cargó (null si vino del batch, que no trae ETag por ítem). */
+    private record Tagged(ProductDTO product, String etag) {}
+
+    @PostConstruct
+    void initCache(){
+        var builder = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats();
+        if (cacheRefreshSeconds > 0) builder.refreshAfterWrite(Duration.ofSeconds(cacheRefreshSeconds));
+        cache = builder.build(new CacheLoader<Long, Tagged>() {
+            @Override public Tagged load(Long id) { return fetch(id, null); }
+            @Override public Tagged reload(Long id, Tagged old) { return fetch(id, old); }
+            @Override public Map<Long, Tagged> loadAll(Set<? extends Long> ids) {
+                var tagged = new HashMap<Long, Tagged>();
+                fetchAll(ids).forEach((id, p) -> tagged.put(id, new Tagged(p, null)));
+                return tagged;
+            }
+        });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "orders.products");
+    }
+
     public ProductDTO get(Long productId){
-        var uri = UriComponentsBuilder.fromHttpUrl(baseUrl)
+        return cache.get(productId).product();
+    }
+
+    /** Ids ausentes en cache se piden juntos en un POST /products/batch; los inexistentes no vuelven. */
+    public Map<Long, ProductDTO> getAll(Collection<Long> productIds){
+        var products = new HashMap<Long, ProductDTO>();
+        cache.getAll(productIds).forEach((id, t) -> products.put(id, t.product()));
+        return products;
+    }
+
+    public void invalidate(Long productId){
+        cache.invalidate(productId);
+    }
+
+    public void invalidateAll(){
+        cache.invalidateAll();
+    }
+
+    /** Cambios de productos posteriores al cursor (feed de products-service para invalidar la cache). */
+    public ProductChangesDTO changes(String epoch, long since){
+        var uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/api/v1/products/changes")
+                .queryParamIfPresent("epoch", Optional.ofNullable(epoch))
+                .queryParam("since", since)
+                .toUriString();
+
+        return web.get()
+                .uri(uri)
+                .header("X-API-KEY", apiKey)
+                .retrieve()
+                .bodyToMono(ProductChangesDTO.class)
+                .block();
+    }
+
+    /** GET condicional si hay versión previa con ETag: 304 → se conserva la anterior. */
+    private Tagged fetch(Long productId, Tagged previous){
+        var uri = UriComponentsBuilder.fromUriString(baseUrl)
                 .path("/api/v1/products/{id}")
                 .build(productId)
                 .toString();
+        String etag = previous == null ? null : previous.etag();
+
+        System.out.printf("→ [orders→product] GET %s%s%n", uri, etag == null ? "" : " If-None-Match=" + etag);
+
+        var res = web.get()
+                .uri(uri)
+                .header("X-API-KEY", apiKey)
+                .headers(h -> { if (etag != null) h.setIfNoneMatch(etag); })
+                .retrieve()
+                .toEntity(ProductDTO.class)
+                .block();
+        if (res.getStatusCode() == HttpStatus.NOT_MODIFIED) return previous;
+        return new Tagged(res.getBody(), res.getHeaders().getETag());
+    }
+
+    /** Consulta por lote: un solo POST /products/batch para todos los ids. */
+    private Map<Long, ProductDTO> fetchAll(Collection<? extends Long> productIds){
+        var uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/api/v1/products/batch")
+                .toUriString();
+
+        System.out.printf("→ [orders→product] POST %s ids=%s%n", uri, productIds);
+
+        return web.post()
+                .uri(uri)
+                .header("X-API-KEY", apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("ids", productIds))
+                .retrieve()
+                .bodyToFlux(ProductDTO.class)
+                .collectMap(ProductDTO::id)
+                .block();
+    }
+
+    /** Retiene el stock de la orden antes de cobrar; devuelve el id de la reserva (409 si no alcanza). */
+    public String reserve(String reference, List<OrderItem> items){
+        var uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/api/v1/products/stock/reservations")
+                .toUriString();
+
+        var body = Map.of("reference", reference, "items", lines(items));
+
+        System.out.printf("→ [orders→product] POST %s ref=%s items=%d%n", uri, reference, items.size());
+
+        var res = web.post()
+                .uri(uri)
+                .header("X-API-KEY", apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(ReservationDTO.class)
+                .block();
+        return res.id();
+    }
+
+    /** Reservas de una referencia en cualquier estado, la más reciente primero. */
+    public List<ReservationDTO> findReservations(String reference){
+        var uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/api/v1/products/stock/reservations")
+                .queryParam("reference", reference)
+                .toUriString();
 
         System.out.printf("→ [orders→product] GET %s%n", uri);
 
@@ -32,27 +188,60 @@ public class ProductClient {
                 .uri(uri)
                 .header("X-API-KEY", apiKey)
                 .retrieve()
-                .bodyToMono(ProductDTO.class)
+                .bodyToFlux(ReservationDTO.class)
+                .collectList()
                 .block();
     }
 
-    public void decrement(Long productId, int qty){
-        var uri = UriComponentsBuilder.fromHttpUrl(baseUrl)
-                .path("/api/v1/products/{id}/decrement")
-                .queryParam("qty", qty)
-                .build(productId)
+    public void confirm(String reservationId){
+        transition(reservationId, "confirm");
+    }
+
+    public void release(String reservationId){
+        transition(reservationId, "release");
+    }
+
+    private void transition(String reservationId, String action){
+        var uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/api/v1/products/stock/reservations/{id}/{action}")
+                .build(reservationId, action)
                 .toString();
 
         System.out.printf("→ [orders→product] POST %s%n", uri);
 
+        web.post()
+                .uri(uri)
+                .header("X-API-KEY", apiKey)
+                .retrieve()
+                .toBodilessEntity()
+                .block();
+    }
+
+    /** Descuenta el stock de todos los ítems de la orden en una sola llamada (todo o nada). */
+    public void decrementAll(List<OrderItem> items){
+        var uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/api/v1/products/stock/decrement-batch")
+                .toUriString();
+
+        var body = Map.of("items", lines(items));
+
+        System.out.printf("→ [orders→product] POST %s items=%d%n", uri, items.size());
+
         web.post()
                 .uri(uri)
                 .header("X-API-KEY", apiKey)
                 .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
                 .retrieve()
                 .toBodilessEntity()
                 .block();
 
-        System.out.printf(" [orders→product] Stock decrementado productId=%d qty=%d%n", productId, qty);
+        System.out.printf(" [orders→product] Stock decrementado para %d ítem(s)%n", items.size());
+    }
+
+    private static List<Map<String, Object>> lines(List<OrderItem> items){
+        return items.stream()
+                .map(i -> Map.<String, Object>of("productId", i.getProductId(), "qty", i.getQty()))
+                .toList();
     }
 }
@@ -0,0 +1,20 @@
+-- Esquema base de orders: lo que antes generaba ddl-auto: update.
+-- Idempotente: en bases ya creadas por Hibernate (baseline-on-migrate, versión 0) no cambia nada.
+
+CREATE TABLE IF NOT EXISTS orders (
+    id               bigint        GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    customer_id      bigint        NOT NULL,
+    address_snapshot varchar(512)  NOT NULL,
+    status           varchar(16)   NOT NULL CHECK (status IN ('CREATED', 'PAID', 'FAILED')),
+    total_amount     numeric(18,2) NOT NULL,
+    created_at       timestamp(6) with time zone NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS order_items (
+    id         bigint        GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id   bigint        NOT NULL REFERENCES orders (id),
+    product_id bigint        NOT NULL,
+    qty        integer       NOT NULL,
+    unit_price numeric(18,2) NOT NULL,
+    subtotal   numeric(18,2) NOT NULL
+);
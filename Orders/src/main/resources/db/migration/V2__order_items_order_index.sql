@@ -0,0 +1,3 @@
+-- Los ítems se cargan siempre por su orden (Order.items): sin índice en la FK cada carga
+-- recorría order_items completa. PostgreSQL no indexa las FK por sí solo.
+CREATE INDEX IF NOT EXISTS idx_order_items_order ON order_items (order_id);
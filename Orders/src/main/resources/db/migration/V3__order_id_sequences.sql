@@ -0,0 +1,14 @@
+-- Ids por secuencia en bloques de 50 (= Order.ID_ALLOCATION_SIZE) en vez de IDENTITY:
+-- con IDENTITY Hibernate necesita el id de cada fila al insertarla y no puede agrupar los INSERT,
+-- así una orden con N ítems eran N+1 round-trips.
+CREATE SEQUENCE IF NOT EXISTS orders_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS order_items_seq INCREMENT BY 50;
+
+ALTER TABLE orders ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE order_items ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+-- Las secuencias arrancan después del max(id) existente
+SELECT setval('orders_seq', m.max_id)
+FROM (SELECT max(id) AS max_id FROM orders) m WHERE m.max_id IS NOT NULL;
+SELECT setval('order_items_seq', m.max_id)
+FROM (SELECT max(id) AS max_id FROM order_items) m WHERE m.max_id IS NOT NULL;
@@ -0,0 +1,26 @@
+-- Órdenes asíncronas (Prefer: respond-async): la orden se guarda antes de validar, así que
+-- precios y total quedan en NULL hasta que la saga pasa VALIDATE.
+ALTER TABLE orders ALTER COLUMN total_amount DROP NOT NULL;
+ALTER TABLE order_items ALTER COLUMN unit_price DROP NOT NULL;
+ALTER TABLE order_items ALTER COLUMN subtotal DROP NOT NULL;
+
+CREATE TABLE IF NOT EXISTS order_sagas (
+    order_id         bigint        NOT NULL PRIMARY KEY REFERENCES orders (id),
+    step             varchar(16)   NOT NULL CHECK (step IN ('VALIDATE', 'RESERVE', 'CHARGE', 'CONFIRM', 'RELEASE', 'DONE', 'FAILED')),
+    tx_id            varchar(64),
+    token_card       varchar(255)  NOT NULL,
+    customer_email   varchar(255),
+    reservation_id   varchar(64),
+    payment_attempts integer,
+    payment_status   varchar(16),
+    attempts         integer       NOT NULL DEFAULT 0,
+    last_error       varchar(512),
+    next_run_at      timestamp(6) with time zone NOT NULL,
+    locked_until     timestamp(6) with time zone,
+    updated_at       timestamp(6) with time zone NOT NULL,
+    version          bigint
+);
+
+-- El poller solo mira sagas en curso; las terminadas no ocupan el índice
+CREATE INDEX IF NOT EXISTS idx_order_sagas_due ON order_sagas (next_run_at)
+    WHERE step NOT IN ('DONE', 'FAILED');
@@ -0,0 +1,4 @@
+-- OrderRecoverySweeper busca órdenes en CREATED más viejas que stuck-after-ms;
+-- casi todas las órdenes están cerradas, así que el índice parcial queda chico.
+CREATE INDEX IF NOT EXISTS idx_orders_created_pending ON orders (created_at)
+    WHERE status = 'CREATED';
@@ -0,0 +1,15 @@
+-- Idempotency-Key de POST /orders: la PK es el candado entre instancias y la fila guarda
+-- la respuesta original para devolverla tal cual en los reintentos.
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idem_key        varchar(255) NOT NULL PRIMARY KEY,
+    request_hash    varchar(64)  NOT NULL,   -- SHA-256 del body: misma clave con otro pedido → 422
+    status          varchar(16)  NOT NULL CHECK (status IN ('IN_PROGRESS', 'COMPLETED')),
+    response_status integer,
+    response_body   text,
+    order_id        bigint,
+    created_at      timestamp(6) with time zone NOT NULL,
+    updated_at      timestamp(6) with time zone NOT NULL
+);
+
+-- Limpieza periódica por antigüedad (orders.idempotency.retention-hours)
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created_at ON idempotency_keys (created_at);
@@ -0,0 +1,5 @@
+-- INTERRUPTED: el pedido falló después de crear la orden (order_id ya cargado). La clave no se
+-- libera: el reintento retoma esa orden, así un timeout de payments no termina en un segundo cobro.
+ALTER TABLE idempotency_keys DROP CONSTRAINT IF EXISTS idempotency_keys_status_check;
+ALTER TABLE idempotency_keys ADD CONSTRAINT idempotency_keys_status_check
+    CHECK (status IN ('IN_PROGRESS', 'INTERRUPTED', 'COMPLETED'));
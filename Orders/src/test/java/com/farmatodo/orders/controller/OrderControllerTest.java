@@ -3,6 +3,8 @@ package com.farmatodo.orders.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.farmatodo.orders.dto.CreateOrderRequest;
 import com.farmatodo.orders.dto.OrderResponse;
+import com.farmatodo.orders.service.IdempotencyService;
+import com.farmatodo.orders.service.OrderSagaService;
 import com.farmatodo.orders.service.OrderService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -31,6 +33,8 @@ class OrderControllerTest {
     @Autowired ObjectMapper om;
 
     @MockBean OrderService service;
+    @MockBean OrderSagaService sagas;
+    @MockBean IdempotencyService idempotency;
 
     @Test
     void create_order_returns_201_with_body_and_location() throws Exception {
@@ -46,7 +50,7 @@ class OrderControllerTest {
         var items = List.of(new OrderResponse.Item(7L, 2, new BigDecimal("159.00"), new BigDecimal("318.00")));
         var resp = new OrderResponse(123L, "PAID", new BigDecimal("318.00"), items, 1, "APPROVED", Instant.now());
 
-        Mockito.when(service.createAndPay(any())).thenReturn(resp);
+        Mockito.when(service.createAndPay(any(), any())).thenReturn(resp);
 
         mvc.perform(post("/api/v1/orders")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -58,6 +62,47 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.items", hasSize(1)));
     }
 
+    @Test
+    void create_order_with_prefer_async_returns_202_and_status_location() throws Exception {
+        var req = new CreateOrderRequest(1L, "Calle 1", "tok-abc", null,
+                List.of(new CreateOrderRequest.Item(7L, 2)), "user@mail.com");
+        var items = List.of(new OrderResponse.Item(7L, 2, null, null));
+        var resp = new OrderResponse(124L, "CREATED", null, items, null, null, Instant.now());
+
+        Mockito.when(sagas.start(any())).thenReturn(resp);
+
+        mvc.perform(post("/api/v1/orders")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(req)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/v1/orders/124"))
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andExpect(jsonPath("$.status").value("CREATED"));
+        Mockito.verify(service, Mockito.never()).createAndPay(any(), any());
+    }
+
+    @Test
+    void create_order_retry_with_idempotency_key_replays_original_response() throws Exception {
+        var req = new CreateOrderRequest(1L, "Calle 1", "tok-abc", null,
+                List.of(new CreateOrderRequest.Item(7L, 2)), "user@mail.com");
+        var resp = new OrderResponse(123L, "PAID", new BigDecimal("318.00"), List.of(), 1, "APPROVED", Instant.now());
+
+        Mockito.when(idempotency.fingerprint(any(), eq(false))).thenReturn("h1");
+        Mockito.when(idempotency.execute(eq("key-1"), eq("h1"), any(), any()))
+                .thenReturn(new IdempotencyService.Outcome(new IdempotencyService.StoredResponse(201, resp), true));
+
+        mvc.perform(post("/api/v1/orders")
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(req)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/v1/orders/123"))
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.orderId").value(123));
+        Mockito.verify(service, Mockito.never()).createAndPay(any(), any());
+    }
+
     @Test
     void get_order_returns_200_with_body() throws Exception {
         var items = List.of(new OrderResponse.Item(1L, 1, new BigDecimal("10.00"), new BigDecimal("10.00")));
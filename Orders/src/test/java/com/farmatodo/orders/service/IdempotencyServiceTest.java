@@ -0,0 +1,244 @@
+package com.farmatodo.orders.service;
+
+import com.farmatodo.orders.dto.CreateOrderRequest;
+import com.farmatodo.orders.dto.OrderResponse;
+import com.farmatodo.orders.repository.IdempotencyJdbcRepository;
+import com.farmatodo.orders.repository.IdempotencyJdbcRepository.Entry;
+import com.farmatodo.orders.service.IdempotencyService.StoredResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.web.ErrorResponseException;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class IdempotencyServiceTest {
+
+    private final ObjectMapper mapper = JsonMapper.builder().findAndAddModules().build();
+    private IdempotencyJdbcRepository store;
+    private IdempotencyService service;
+
+    private static final OrderResponse ORDER = new OrderResponse(7L, "PAID", new BigDecimal("20.00"),
+            List.of(new OrderResponse.Item(1L, 2, new BigDecimal("10.00"), new BigDecimal("20.00"))),
+            1, "APPROVED", Instant.parse("2025-01-01T00:00:00Z"));
+
+    @BeforeEach
+    void setup() {
+        store = Mockito.mock(IdempotencyJdbcRepository.class);
+        service = new IdempotencyService(store, mapper);
+        setField(service, "cacheMaxSize", 100L);
+        setField(service, "cacheTtlSeconds", 60L);
+        setField(service, "waitTimeoutMs", 2000L);
+        setField(service, "inProgressTimeoutMs", 60_000L);
+        service.initCache();
+        Mockito.when(store.tryInsert(any(), any())).thenReturn(true);
+    }
+
+    @Test
+    void first_request_runs_and_retry_is_replayed_from_cache() {
+        var runs = new AtomicInteger();
+
+        var first = execute("k1", "h1", () -> { runs.incrementAndGet(); return new StoredResponse(201, ORDER); });
+        var retry = execute("k1", "h1", () -> { runs.incrementAndGet(); return new StoredResponse(201, ORDER); });
+
+        assertFalse(first.replayed());
+        assertTrue(retry.replayed());
+        assertEquals(201, retry.response().status());
+        assertEquals(ORDER, retry.response().body());
+        assertEquals(1, runs.get());
+        Mockito.verify(store).complete(eq("k1"), eq(201), contains("\"orderId\":7"), eq(7L));
+        Mockito.verify(store, Mockito.times(1)).tryInsert(any(), any());
+    }
+
+    @Test
+    void same_key_with_different_request_is_rejected() {
+        execute("k1", "h1", () -> new StoredResponse(201, ORDER));
+
+        var ex = assertThrows(ErrorResponseException.class,
+                () -> execute("k1", "h2", () -> new StoredResponse(201, ORDER)));
+        assertEquals(422, ex.getStatusCode().value());
+    }
+
+    @Test
+    void completed_key_from_another_instance_is_replayed_from_store() throws Exception {
+        Mockito.when(store.tryInsert("k1", "h1")).thenReturn(false);
+        Mockito.when(store.find("k1")).thenReturn(Optional.of(new Entry("h1", IdempotencyJdbcRepository.COMPLETED,
+                202, mapper.writeValueAsString(ORDER), 7L, Instant.now())));
+
+        var out = execute("k1", "h1", () -> fail("must not run"));
+
+        assertTrue(out.replayed());
+        assertEquals(202, out.response().status());
+        assertEquals(ORDER, out.response().body());
+    }
+
+    @Test
+    void failed_request_releases_key_and_retry_runs_again() {
+        assertThrows(IllegalStateException.class,
+                () -> execute("k1", "h1", () -> { throw new IllegalStateException("boom"); }));
+        Mockito.verify(store).release("k1");
+
+        var out = execute("k1", "h1", () -> new StoredResponse(201, ORDER));
+        assertFalse(out.replayed());
+    }
+
+    @Test
+    void failure_after_order_was_created_keeps_key_bound_to_it() {
+        assertThrows(IllegalStateException.class, () -> service.execute("k1", "h1", bind -> {
+            bind.accept(7L);
+            throw new IllegalStateException("payments timeout");
+        }, id -> fail("must not resume")));
+
+        Mockito.verify(store).bindOrder("k1", 7L);
+        Mockito.verify(store).interrupt("k1");
+        Mockito.verify(store, Mockito.never()).release(any());
+    }
+
+    @Test
+    void interrupted_key_resumes_its_order_instead_of_running_again() {
+        var at = Instant.now();
+        Mockito.when(store.tryInsert("k1", "h1")).thenReturn(false);
+        Mockito.when(store.find("k1")).thenReturn(Optional.of(new Entry("h1", IdempotencyJdbcRepository.INTERRUPTED,
+                null, null, 7L, at)));
+        Mockito.when(store.reclaim("k1", "h1", IdempotencyJdbcRepository.INTERRUPTED, at)).thenReturn(true);
+        var resumed = new AtomicInteger();
+
+        var out = service.execute("k1", "h1", bind -> fail("must not run"), id -> {
+            assertEquals(7L, id);
+            resumed.incrementAndGet();
+            return new StoredResponse(201, ORDER);
+        });
+
+        assertFalse(out.replayed());
+        assertEquals(1, resumed.get());
+        Mockito.verify(store).complete(eq("k1"), eq(201), any(), eq(7L));
+    }
+
+    @Test
+    void resume_failing_again_leaves_key_interrupted() {
+        var at = Instant.now();
+        Mockito.when(store.tryInsert("k1", "h1")).thenReturn(false);
+        Mockito.when(store.find("k1")).thenReturn(Optional.of(new Entry("h1", IdempotencyJdbcRepository.INTERRUPTED,
+                null, null, 7L, at)));
+        Mockito.when(store.reclaim("k1", "h1", IdempotencyJdbcRepository.INTERRUPTED, at)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> service.execute("k1", "h1", bind -> fail("must not run"),
+                id -> { throw new IllegalStateException("payments down"); }));
+
+        Mockito.verify(store).interrupt("k1");
+        Mockito.verify(store, Mockito.never()).release(any());
+    }
+
+    @Test
+    void in_progress_elsewhere_answers_409_without_waiting() {
+        Mockito.when(store.tryInsert("k1", "h1")).thenReturn(false);
+        Mockito.when(store.find("k1")).thenReturn(Optional.of(new Entry("h1", IdempotencyJdbcRepository.IN_PROGRESS,
+                null, null, null, Instant.now())));
+
+        long start = System.nanoTime();
+        var ex = assertThrows(ErrorResponseException.class, () -> execute("k1", "h1", () -> fail("must not run")));
+        assertEquals(409, ex.getStatusCode().value());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        Mockito.verify(store).find("k1");
+    }
+
+    @Test
+    void abandoned_in_progress_key_is_reclaimed() {
+        var stale = Instant.now().minusSeconds(600);
+        Mockito.when(store.tryInsert("k1", "h1")).thenReturn(false);
+        Mockito.when(store.find("k1")).thenReturn(Optional.of(new Entry("h1", IdempotencyJdbcRepository.IN_PROGRESS,
+                null, null, null, stale)));
+        Mockito.when(store.reclaim("k1", "h1", IdempotencyJdbcRepository.IN_PROGRESS, stale)).thenReturn(true);
+
+        var out = execute("k1", "h1", () -> new StoredResponse(201, ORDER));
+
+        assertFalse(out.replayed());
+        Mockito.verify(store).complete(eq("k1"), eq(201), any(), eq(7L));
+    }
+
+    @Test
+    void concurrent_duplicates_wait_for_the_in_flight_request() throws Exception {
+        var started = new CountDownLatch(1);
+        var finish = new CountDownLatch(1);
+        var runs = new AtomicInteger();
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<IdempotencyService.Outcome> leader = pool.submit(() -> execute("k1", "h1", () -> {
+                runs.incrementAndGet();
+                started.countDown();
+                await(finish);
+                return new StoredResponse(201, ORDER);
+            }));
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+            var dups = List.of(
+                    pool.submit(() -> execute("k1", "h1", () -> { runs.incrementAndGet(); return null; })),
+                    pool.submit(() -> execute("k1", "h1", () -> { runs.incrementAndGet(); return null; })));
+            Thread.sleep(100);
+            finish.countDown();
+
+            assertFalse(leader.get(2, TimeUnit.SECONDS).replayed());
+            for (var d : dups) {
+                var out = d.get(2, TimeUnit.SECONDS);
+                assertTrue(out.replayed());
+                assertEquals(ORDER, out.response().body());
+            }
+            assertEquals(1, runs.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void fingerprint_depends_on_body_and_mode() {
+        var a = new CreateOrderRequest(1L, "Dir", "tok", null, List.of(new CreateOrderRequest.Item(7L, 2)), "x@y.com");
+        var b = new CreateOrderRequest(1L, "Dir", "tok", null, List.of(new CreateOrderRequest.Item(7L, 3)), "x@y.com");
+
+        assertEquals(service.fingerprint(a, false), service.fingerprint(a, false));
+        assertNotEquals(service.fingerprint(a, false), service.fingerprint(b, false));
+        assertNotEquals(service.fingerprint(a, false), service.fingerprint(a, true));
+    }
+
+    @Test
+    void key_too_long_is_bad_request() {
+        var ex = assertThrows(ErrorResponseException.class,
+                () -> execute("x".repeat(256), "h1", () -> new StoredResponse(201, ORDER)));
+        assertEquals(400, ex.getStatusCode().value());
+    }
+
+    private IdempotencyService.Outcome execute(String key, String hash, Supplier<StoredResponse> action) {
+        return service.execute(key, hash, bind -> action.get(), id -> fail("must not resume"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void setField(Object target, String name, Object val) {
+        try {
+            Field f = target.getClass().getDeclaredField(name);
+            f.setAccessible(true);
+            f.set(target, val);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.farmatodo.orders.service;
+
+import com.farmatodo.orders.domain.*;
+import com.farmatodo.orders.dto.CreateOrderRequest;
+import com.farmatodo.orders.dto.PaymentModels;
+import com.farmatodo.orders.repository.OrderRepository;
+import com.farmatodo.orders.repository.OrderSagaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.ErrorResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class OrderSagaServiceTest {
+
+    private OrderRepository orders;
+    private OrderSagaRepository sagas;
+    private CustomerClient customers;
+    private ProductClient products;
+    private PaymentsClient payments;
+    private ApplicationEventPublisher events;
+
+    private OrderSagaService service;
+
+    private Order order;
+    private OrderSaga saga;
+
+    @BeforeEach
+    void setup() {
+        orders = Mockito.mock(OrderRepository.class);
+        sagas = Mockito.mock(OrderSagaRepository.class);
+        customers = Mockito.mock(CustomerClient.class);
+        products = Mockito.mock(ProductClient.class);
+        payments = Mockito.mock(PaymentsClient.class);
+        events = Mockito.mock(ApplicationEventPublisher.class);
+        var audit = Mockito.mock(AuditClient.class);
+
+        var orderService = new OrderService(orders, customers, products, payments, audit);
+        setField(orderService, "lookupBatchSize", 100);
+        setField(orderService, "lookupConcurrency", 4);
+        setField(orderService, "lookupTimeoutMs", 2000L);
+
+        service = new OrderSagaService(orders, sagas, orderService, products, payments, audit, events,
+                Mockito.mock(PlatformTransactionManager.class));
+        setField(service, "leaseMs", 60_000L);
+        setField(service, "maxAttempts", 3);
+        setField(service, "backoffMs", 500L);
+        setField(service, "maxBackoffMs", 30_000L);
+
+        // Orden y saga ya guardadas por start(); los mocks devuelven siempre la misma instancia
+        var items = new ArrayList<OrderItem>(List.of(OrderItem.builder().id(10L).productId(7L).qty(2).build()));
+        order = Order.builder().id(1L).customerId(1L).addressSnapshot("Dir").status(OrderStatus.CREATED)
+                .createdAt(Instant.now()).items(items).build();
+        saga = OrderSaga.builder().orderId(1L).step(SagaStep.VALIDATE).tokenCard("tok").customerEmail("x@y.com")
+                .nextRunAt(Instant.now()).updatedAt(Instant.now()).version(0L).build();
+        Mockito.when(orders.findWithItemsById(1L)).thenReturn(Optional.of(order));
+        Mockito.when(sagas.findById(1L)).thenAnswer(a -> Optional.of(saga));
+        Mockito.when(customers.exists(1L)).thenReturn(true);
+        Mockito.when(products.getAll(List.of(7L))).thenReturn(Map.of(
+                7L, new PaymentModels.ProductDTO(7L, "A", 1000L, 10)));
+        Mockito.when(products.reserve(anyString(), any())).thenReturn("res-1");
+    }
+
+    @Test
+    void start__persists_created_order_and_saga_then_publishes_event() {
+        Mockito.when(orders.save(any(Order.class))).thenAnswer(inv -> {
+            Order o = inv.getArgument(0);
+            o.setId(5L);
+            return o;
+        });
+        var req = new CreateOrderRequest(1L, "Dir", "tok", null, List.of(new CreateOrderRequest.Item(7L, 2)), "x@y.com");
+
+        var res = service.start(req);
+
+        assertEquals(5L, res.orderId());
+        assertEquals("CREATED", res.status());
+        assertNull(res.totalAmount());
+        Mockito.verify(sagas).save(argThat(s -> s.getOrderId() == 5L && s.getStep() == SagaStep.VALIDATE
+                && s.getLockedUntil() != null));
+        Mockito.verify(events).publishEvent(new OrderSagaStartedEvent(5L));
+        Mockito.verifyNoInteractions(customers, payments);
+    }
+
+    @Test
+    void start__requires_token() {
+        var req = new CreateOrderRequest(1L, "Dir", null,
+                new CreateOrderRequest.CardData("4111111111111111", "123", 12, 2030, "X"),
+                List.of(new CreateOrderRequest.Item(7L, 2)), "x@y.com");
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.start(req));
+        assertEquals(400, ex.getStatusCode().value());
+        Mockito.verifyNoInteractions(orders, sagas);
+    }
+
+    @Test
+    void run__approved_payment_ends_paid() {
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-1"));
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.PAID, order.getStatus());
+        assertEquals(SagaStep.DONE, saga.getStep());
+        assertEquals(new BigDecimal("20.00"), order.getTotalAmount());
+        assertEquals("APPROVED", saga.getPaymentStatus());
+        Mockito.verify(payments).charge("ORD-1", 2000L, "COP", "tok", null, "x@y.com");
+        Mockito.verify(products).confirm("res-1");
+        Mockito.verify(products, Mockito.never()).release(any());
+    }
+
+    @Test
+    void run__rejected_payment_releases_hold_and_fails() {
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenReturn(new PaymentModels.ChargeResponse("REJECTED", 3, null, "ORD-1"));
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.FAILED, order.getStatus());
+        assertEquals(SagaStep.FAILED, saga.getStep());
+        assertEquals("payment_rejected", saga.getLastError());
+        Mockito.verify(products).release("res-1");
+        Mockito.verify(products, Mockito.never()).confirm(any());
+    }
+
+    @Test
+    void run__transient_payment_error_retries_charge() {
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenThrow(WebClientResponseException.create(503, "Unavailable", null, null, null));
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.CREATED, order.getStatus());
+        assertEquals(SagaStep.CHARGE, saga.getStep());
+        assertEquals(1, saga.getAttempts());
+        Mockito.verify(products, Mockito.never()).release(any());
+    }
+
+    @Test
+    void run__payment_rejected_by_payments_api_is_compensated() {
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenThrow(WebClientResponseException.create(422, "Unprocessable Entity", null, null, null));
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.FAILED, order.getStatus());
+        Mockito.verify(payments, Mockito.times(1)).charge(anyString(), anyLong(), anyString(), any(), any(), any());
+        Mockito.verify(products).release("res-1");
+    }
+
+    @Test
+    void run__charge_in_progress_409_is_retried() {
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenThrow(WebClientResponseException.create(409, "Conflict", null, null, null));
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.CREATED, order.getStatus());
+        assertEquals(SagaStep.CHARGE, saga.getStep());
+        assertEquals(1, saga.getAttempts());
+        Mockito.verify(products, Mockito.never()).release(any());
+    }
+
+    @Test
+    void run__exhausted_charge_that_was_approved_confirms_instead_of_releasing() {
+        saga.setStep(SagaStep.CHARGE);
+        saga.setAttempts(2);
+        saga.setReservationId("res-1");
+        order.setTotalAmount(new BigDecimal("20.00"));
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenThrow(WebClientResponseException.create(503, "Unavailable", null, null, null));
+        Mockito.when(payments.findByOrder("ORD-1"))
+                .thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-1"));
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.PAID, order.getStatus());
+        assertEquals(SagaStep.DONE, saga.getStep());
+        Mockito.verify(products).confirm("res-1");
+        Mockito.verify(products, Mockito.never()).release(any());
+    }
+
+    @Test
+    void run__exhausted_charge_with_payments_down_keeps_the_hold_and_reschedules() {
+        saga.setStep(SagaStep.CHARGE);
+        saga.setAttempts(2);
+        saga.setReservationId("res-1");
+        order.setTotalAmount(new BigDecimal("20.00"));
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenThrow(WebClientResponseException.create(503, "Unavailable", null, null, null));
+        Mockito.when(payments.findByOrder("ORD-1"))
+                .thenThrow(WebClientResponseException.create(503, "Unavailable", null, null, null));
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.CREATED, order.getStatus());
+        assertEquals(SagaStep.CHARGE, saga.getStep());
+        assertNull(saga.getLockedUntil());
+        assertTrue(saga.getNextRunAt().isAfter(Instant.now()));
+        Mockito.verify(products, Mockito.never()).release(any());
+    }
+
+    @Test
+    void run__charge_in_progress_until_attempts_run_out_then_approved_confirms() {
+        saga.setStep(SagaStep.CHARGE);
+        saga.setAttempts(2);
+        saga.setReservationId("res-1");
+        order.setTotalAmount(new BigDecimal("20.00"));
+        // payments guarda el cobro recién al terminar: mientras tanto 409 y by-order 404
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenThrow(WebClientResponseException.create(409, "Conflict", null, null, null))
+                .thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-1"));
+        Mockito.when(payments.findByOrder("ORD-1")).thenReturn(null);
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.CREATED, order.getStatus());
+        assertEquals(SagaStep.CHARGE, saga.getStep());
+        assertNull(saga.getLockedUntil());
+        assertTrue(saga.getNextRunAt().isAfter(Instant.now()));
+        Mockito.verify(products, Mockito.never()).release(any());
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.PAID, order.getStatus());
+        assertEquals(SagaStep.DONE, saga.getStep());
+        Mockito.verify(products).confirm("res-1");
+        Mockito.verify(products, Mockito.never()).release(any());
+    }
+
+    @Test
+    void run__insufficient_stock_fails_without_charging() {
+        Mockito.when(products.reserve(anyString(), any()))
+                .thenThrow(WebClientResponseException.create(409, "Conflict", null, null, null));
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.FAILED, order.getStatus());
+        assertEquals(SagaStep.FAILED, saga.getStep());
+        Mockito.verifyNoInteractions(payments);
+        Mockito.verify(products, Mockito.never()).release(any());
+    }
+
+    @Test
+    void run__customer_not_found_fails_at_validate() {
+        Mockito.when(customers.exists(1L)).thenReturn(false);
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.FAILED, order.getStatus());
+        assertEquals("Customer not found", saga.getLastError());
+        Mockito.verify(products, Mockito.never()).reserve(any(), any());
+    }
+
+    @Test
+    void run__transient_error_reschedules_step_with_backoff() {
+        Mockito.when(products.reserve(anyString(), any()))
+                .thenThrow(WebClientResponseException.create(503, "Unavailable", null, null, null));
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.CREATED, order.getStatus());
+        assertEquals(SagaStep.RESERVE, saga.getStep());
+        assertEquals(1, saga.getAttempts());
+        assertNull(saga.getLockedUntil());
+        assertTrue(saga.getNextRunAt().isAfter(Instant.now()));
+        Mockito.verifyNoInteractions(payments);
+    }
+
+    @Test
+    void run__transient_errors_exhaust_attempts_then_fail() {
+        saga.setStep(SagaStep.RESERVE);
+        saga.setAttempts(2);
+        order.setTotalAmount(new BigDecimal("20.00"));
+        Mockito.when(products.reserve(anyString(), any()))
+                .thenThrow(WebClientResponseException.create(503, "Unavailable", null, null, null));
+
+        service.run(1L);
+
+        assertEquals(OrderStatus.FAILED, order.getStatus());
+        assertEquals(SagaStep.FAILED, saga.getStep());
+    }
+
+    @Test
+    void run__terminal_saga_is_noop() {
+        saga.setStep(SagaStep.DONE);
+
+        service.run(1L);
+
+        Mockito.verifyNoInteractions(customers, products, payments);
+        Mockito.verify(sagas, Mockito.never()).save(any());
+    }
+
+    private static void setField(Object target, String name, Object val) {
+        try {
+            Field f = target.getClass().getDeclaredField(name);
+            f.setAccessible(true);
+            f.set(target, val);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -5,16 +5,19 @@ import com.farmatodo.orders.domain.OrderItem;
 import com.farmatodo.orders.domain.OrderStatus;
 import com.farmatodo.orders.dto.CreateOrderRequest;
 import com.farmatodo.orders.dto.OrderResponse;
+import com.farmatodo.orders.dto.PaymentModels;
 import com.farmatodo.orders.repository.OrderRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.web.ErrorResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -66,6 +69,21 @@ class OrderServiceTest {
         audit = Mockito.mock(AuditClient.class);
 
         service = new OrderService(repo, customers, products, payments, audit);
+        setField(service, "lookupBatchSize", 100);
+        setField(service, "lookupConcurrency", 4);
+        setField(service, "lookupTimeoutMs", 2000L);
+        setField(service, "stuckAfterMs", 600_000L);
+        setField(service, "noPaymentFailAfterMs", 3_600_000L);
+    }
+
+    private static void setField(Object target, String name, Object val) {
+        try {
+            Field f = target.getClass().getDeclaredField(name);
+            f.setAccessible(true);
+            f.set(target, val);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
     }
 
 
@@ -106,7 +124,7 @@ class OrderServiceTest {
     @Test
     void createAndPay__product_not_found() {
         Mockito.when(customers.exists(1L)).thenReturn(true);
-        Mockito.when(products.get(99L)).thenReturn(null);
+        Mockito.when(products.getAll(List.of(99L))).thenReturn(Map.of());
 
         var req = new CreateOrderRequest(
                 1L, "Dir", "tok", null, List.of(new CreateOrderRequest.Item(99L, 1)), "x@y.com"
@@ -116,6 +134,323 @@ class OrderServiceTest {
         assertEquals(400, ex.getStatusCode().value());
     }
 
+    @Test
+    void createAndPay__looks_up_products_in_one_batch() {
+        Mockito.when(customers.exists(1L)).thenReturn(true);
+        Mockito.when(products.getAll(List.of(7L, 8L))).thenReturn(Map.of(
+                7L, new PaymentModels.ProductDTO(7L, "A", 1000L, 10),
+                8L, new PaymentModels.ProductDTO(8L, "B", 2550L, 10)));
+        Mockito.when(repo.save(any(Order.class))).thenAnswer(inv -> {
+            Order o = inv.getArgument(0);
+            o.setId(1L);
+            return o;
+        });
+        Mockito.when(products.reserve(anyString(), any())).thenReturn("res-1");
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-1"));
+
+        var req = new CreateOrderRequest(1L, "Dir", "tok", null, List.of(
+                new CreateOrderRequest.Item(7L, 1),
+                new CreateOrderRequest.Item(8L, 2),
+                new CreateOrderRequest.Item(7L, 1)
+        ), "x@y.com");
+
+        OrderResponse res = service.createAndPay(req);
+
+        assertEquals("PAID", res.status());
+        assertEquals(new BigDecimal("71.00"), res.totalAmount());
+        Mockito.verify(products, Mockito.times(1)).getAll(List.of(7L, 8L));
+        Mockito.verify(products, Mockito.never()).get(any());
+        Mockito.verify(products).reserve(eq("ORD-1"), argThat(items -> items.size() == 3));
+        Mockito.verify(products).confirm("res-1");
+        Mockito.verify(products, Mockito.never()).decrementAll(any());
+    }
+
+    @Test
+    void createAndPay__rejected_payment_releases_hold() {
+        stubSingleProductOrder();
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenReturn(new PaymentModels.ChargeResponse("REJECTED", 3, null, "ORD-1"));
+
+        OrderResponse res = service.createAndPay(singleItemRequest());
+
+        assertEquals("FAILED", res.status());
+        Mockito.verify(products).release("res-1");
+        Mockito.verify(products, Mockito.never()).confirm(any());
+        Mockito.verify(repo).transition(1L, OrderStatus.CREATED, OrderStatus.FAILED);
+    }
+
+    @Test
+    void createAndPay__payment_error_releases_hold_and_propagates() {
+        stubSingleProductOrder();
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenThrow(WebClientResponseException.create(422, "Unprocessable", null, null, null));
+
+        assertThrows(WebClientResponseException.class, () -> service.createAndPay(singleItemRequest()));
+        Mockito.verify(products).release("res-1");
+        // la orden ya se guardó en su propia transacción: queda cerrada como FAILED, no se pierde
+        Mockito.verify(repo).transition(1L, OrderStatus.CREATED, OrderStatus.FAILED);
+    }
+
+    @Test
+    void createAndPay__payment_timeout_keeps_order_and_hold_for_resume() {
+        stubSingleProductOrder();
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("Timeout on blocking read"));
+        var created = new java.util.concurrent.atomic.AtomicLong();
+
+        assertThrows(IllegalStateException.class, () -> service.createAndPay(singleItemRequest(), created::set));
+
+        // el cobro pudo haber pasado: ni se libera el hold ni se cierra la orden
+        assertEquals(1L, created.get());
+        Mockito.verify(products, Mockito.never()).release(any());
+        Mockito.verify(repo, Mockito.never()).transition(anyLong(), any(), any());
+    }
+
+    @Test
+    void resume__created_order_reserves_and_charges_the_same_reference_again() {
+        Order o = stuckOrder();
+        o.setCreatedAt(Instant.now());
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(o));
+        Mockito.when(products.reserve("ORD-3", o.getItems())).thenReturn("res-1");
+        Mockito.when(payments.charge(eq("ORD-3"), eq(2000L), eq("COP"), eq("tok"), any(), any()))
+                .thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-3"));
+        Mockito.when(repo.transition(3L, OrderStatus.CREATED, OrderStatus.PAID)).thenReturn(1);
+
+        OrderResponse res = service.resume(3L, singleItemRequest());
+
+        assertEquals("PAID", res.status());
+        Mockito.verify(products).confirm("res-1");
+        Mockito.verify(repo, Mockito.never()).save(any());
+    }
+
+    @Test
+    void resume__closed_order_returns_its_state_without_charging() {
+        Order o = stuckOrder();
+        o.setStatus(OrderStatus.PAID);
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(o));
+        Mockito.when(payments.findByOrder("ORD-3")).thenReturn(new PaymentModels.ChargeResponse("APPROVED", 2, "AUTH", "ORD-3"));
+
+        OrderResponse res = service.resume(3L, singleItemRequest());
+
+        assertEquals("PAID", res.status());
+        assertEquals("APPROVED", res.paymentStatus());
+        assertEquals(2, res.paymentAttempts());
+        Mockito.verify(payments, Mockito.never()).charge(any(), anyLong(), any(), any(), any(), any());
+        Mockito.verifyNoInteractions(products);
+    }
+
+    @Test
+    void resume__stuck_order_is_left_to_the_recovery_sweeper() {
+        Order o = stuckOrder();
+        o.setCreatedAt(Instant.now().minusSeconds(3600));
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(o));
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.resume(3L, singleItemRequest()));
+        assertEquals(409, ex.getStatusCode().value());
+        Mockito.verifyNoInteractions(products, payments);
+    }
+
+    @Test
+    void createAndPay__insufficient_stock_at_reserve_never_charges() {
+        stubSingleProductOrder();
+        Mockito.when(products.reserve(anyString(), any()))
+                .thenThrow(WebClientResponseException.create(409, "Conflict", null, null, null));
+
+        var ex = assertThrows(WebClientResponseException.class, () -> service.createAndPay(singleItemRequest()));
+        assertEquals(409, ex.getStatusCode().value());
+        Mockito.verifyNoInteractions(payments);
+        Mockito.verify(repo).transition(1L, OrderStatus.CREATED, OrderStatus.FAILED);
+    }
+
+    @Test
+    void createAndPay__expired_hold_falls_back_to_direct_decrement() {
+        stubSingleProductOrder();
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-1"));
+        Mockito.doThrow(WebClientResponseException.create(409, "Conflict", null, null, null))
+                .when(products).confirm("res-1");
+
+        OrderResponse res = service.createAndPay(singleItemRequest());
+
+        assertEquals("PAID", res.status());
+        Mockito.verify(products).decrementAll(argThat(items -> items.size() == 1));
+        Mockito.verify(repo).transition(1L, OrderStatus.CREATED, OrderStatus.PAID);
+    }
+
+    @Test
+    void createAndPay__is_not_one_transaction_around_remote_calls() throws Exception {
+        var m = OrderService.class.getMethod("createAndPay", CreateOrderRequest.class);
+        assertNull(m.getAnnotation(org.springframework.transaction.annotation.Transactional.class));
+        assertNull(OrderService.class.getAnnotation(org.springframework.transaction.annotation.Transactional.class));
+    }
+
+    @Test
+    void recover__approved_payment_without_live_hold_decrements_stock() {
+        Order o = stuckOrder();
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(o));
+        Mockito.when(payments.findByOrder("ORD-3")).thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-3"));
+        Mockito.when(products.findReservations("ORD-3")).thenReturn(List.of(new PaymentModels.ReservationDTO("res-1", "EXPIRED")));
+        Mockito.when(repo.transition(3L, OrderStatus.CREATED, OrderStatus.PAID)).thenReturn(1);
+
+        assertTrue(service.recover(3L));
+        Mockito.verify(products).decrementAll(o.getItems());
+    }
+
+    @Test
+    void recover__approved_payment_with_confirmed_reservation_leaves_stock_alone() {
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(stuckOrder()));
+        Mockito.when(payments.findByOrder("ORD-3")).thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-3"));
+        Mockito.when(products.findReservations("ORD-3")).thenReturn(List.of(new PaymentModels.ReservationDTO("res-1", "CONFIRMED")));
+        Mockito.when(repo.transition(3L, OrderStatus.CREATED, OrderStatus.PAID)).thenReturn(1);
+
+        assertTrue(service.recover(3L));
+        Mockito.verify(products, Mockito.never()).decrementAll(any());
+        Mockito.verify(products, Mockito.never()).confirm(any());
+    }
+
+    @Test
+    void recover__approved_payment_with_live_hold_confirms_it() {
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(stuckOrder()));
+        Mockito.when(payments.findByOrder("ORD-3")).thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-3"));
+        Mockito.when(products.findReservations("ORD-3")).thenReturn(List.of(new PaymentModels.ReservationDTO("res-1", "HELD")));
+        Mockito.when(repo.transition(3L, OrderStatus.CREATED, OrderStatus.PAID)).thenReturn(1);
+
+        assertTrue(service.recover(3L));
+        Mockito.verify(products).confirm("res-1");
+        Mockito.verify(products, Mockito.never()).decrementAll(any());
+    }
+
+    @Test
+    void recover__without_payment_releases_live_hold() {
+        Order o = stuckOrder();
+        o.setCreatedAt(Instant.now().minusSeconds(7200));
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(o));
+        Mockito.when(payments.findByOrder("ORD-3")).thenReturn(null);
+        Mockito.when(products.findReservations("ORD-3")).thenReturn(List.of(new PaymentModels.ReservationDTO("res-1", "HELD")));
+        Mockito.when(repo.transition(3L, OrderStatus.CREATED, OrderStatus.FAILED)).thenReturn(1);
+
+        assertTrue(service.recover(3L));
+        Mockito.verify(products).release("res-1");
+    }
+
+    @Test
+    void recover__products_unavailable_leaves_order_for_next_sweep() {
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(stuckOrder()));
+        Mockito.when(payments.findByOrder("ORD-3")).thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-3"));
+        Mockito.when(products.findReservations("ORD-3")).thenThrow(new RuntimeException("down"));
+
+        assertThrows(RuntimeException.class, () -> service.recover(3L));
+        Mockito.verify(repo, Mockito.never()).transition(anyLong(), any(), any());
+        Mockito.verify(products, Mockito.never()).decrementAll(any());
+    }
+
+    @Test
+    void recover__without_payment_marks_failed() {
+        Order o = stuckOrder();
+        o.setCreatedAt(Instant.now().minusSeconds(7200));
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(o));
+        Mockito.when(payments.findByOrder("ORD-3")).thenReturn(null);
+        Mockito.when(repo.transition(3L, OrderStatus.CREATED, OrderStatus.FAILED)).thenReturn(1);
+
+        assertTrue(service.recover(3L));
+        Mockito.verify(products, Mockito.never()).decrementAll(any());
+    }
+
+    @Test
+    void recover__without_payment_yet_is_skipped_for_this_sweep() {
+        // payments guarda el cobro recién al terminarlo: puede seguir en curso
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(stuckOrder()));
+        Mockito.when(payments.findByOrder("ORD-3")).thenReturn(null);
+
+        assertFalse(service.recover(3L));
+        Mockito.verify(repo, Mockito.never()).transition(anyLong(), any(), any());
+        Mockito.verifyNoInteractions(products, audit);
+    }
+
+    @Test
+    void createAndPay__order_closed_by_the_sweeper_meanwhile_answers_the_stored_status() {
+        stubSingleProductOrder();
+        Mockito.when(payments.charge(anyString(), anyLong(), anyString(), any(), any(), any()))
+                .thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-1"));
+        Mockito.when(repo.transition(1L, OrderStatus.CREATED, OrderStatus.PAID)).thenReturn(0);
+        Mockito.when(repo.findById(1L)).thenReturn(Optional.of(Order.builder().id(1L).status(OrderStatus.FAILED).build()));
+
+        OrderResponse res = service.createAndPay(singleItemRequest());
+
+        assertEquals("FAILED", res.status());
+        Mockito.verify(audit, Mockito.never()).log(any(), any(), eq("ORDER.PAID"), any(), any(), any());
+    }
+
+    @Test
+    void recover__order_closed_meanwhile_is_left_alone() {
+        Mockito.when(repo.findWithItemsById(3L)).thenReturn(Optional.of(stuckOrder()));
+        Mockito.when(payments.findByOrder("ORD-3")).thenReturn(new PaymentModels.ChargeResponse("APPROVED", 1, "AUTH", "ORD-3"));
+        Mockito.when(repo.transition(anyLong(), any(), any())).thenReturn(0);
+
+        assertFalse(service.recover(3L));
+        Mockito.verify(products, Mockito.never()).decrementAll(any());
+        Mockito.verifyNoInteractions(audit);
+    }
+
+    private static Order stuckOrder() {
+        return Order.builder().id(3L).customerId(1L).status(OrderStatus.CREATED)
+                .totalAmount(new BigDecimal("20.00")).createdAt(Instant.now())
+                .items(List.of(OrderItem.builder().productId(7L).qty(2).build()))
+                .build();
+    }
+
+    private void stubSingleProductOrder() {
+        Mockito.when(customers.exists(1L)).thenReturn(true);
+        Mockito.when(products.getAll(List.of(7L))).thenReturn(Map.of(
+                7L, new PaymentModels.ProductDTO(7L, "A", 1000L, 10)));
+        Mockito.when(repo.save(any(Order.class))).thenAnswer(inv -> {
+            Order o = inv.getArgument(0);
+            o.setId(1L);
+            return o;
+        });
+        Mockito.when(products.reserve(anyString(), any())).thenReturn("res-1");
+        Mockito.when(repo.transition(eq(1L), eq(OrderStatus.CREATED), any())).thenReturn(1);
+    }
+
+    private static CreateOrderRequest singleItemRequest() {
+        return new CreateOrderRequest(1L, "Dir", "tok", null, List.of(new CreateOrderRequest.Item(7L, 2)), "x@y.com");
+    }
+
+    @Test
+    void createAndPay__splits_large_baskets_into_batches() {
+        setField(service, "lookupBatchSize", 2);
+        Mockito.when(customers.exists(1L)).thenReturn(true);
+        Mockito.when(products.getAll(any())).thenReturn(Map.of());
+
+        var req = new CreateOrderRequest(1L, "Dir", "tok", null, List.of(
+                new CreateOrderRequest.Item(1L, 1),
+                new CreateOrderRequest.Item(2L, 1),
+                new CreateOrderRequest.Item(3L, 1)
+        ), "x@y.com");
+
+        assertThrows(ErrorResponseException.class, () -> service.createAndPay(req));
+        Mockito.verify(products).getAll(List.of(1L, 2L));
+        Mockito.verify(products).getAll(List.of(3L));
+    }
+
+    @Test
+    void createAndPay__lookup_deadline_exceeded() {
+        setField(service, "lookupTimeoutMs", 100L);
+        Mockito.when(customers.exists(1L)).thenReturn(true);
+        Mockito.when(products.getAll(List.of(1L))).thenAnswer(inv -> {
+            Thread.sleep(1000);
+            return Map.of(1L, new PaymentModels.ProductDTO(1L, "Lento", 100L, 5));
+        });
+
+        var req = new CreateOrderRequest(
+                1L, "Dir", "tok", null, List.of(new CreateOrderRequest.Item(1L, 1)), "x@y.com"
+        );
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.createAndPay(req));
+        assertEquals(504, ex.getStatusCode().value());
+        Mockito.verify(payments, Mockito.never()).charge(any(), anyLong(), any(), any(), any(), any());
+    }
 
     @Test
     void get__ok() {
@@ -129,7 +464,7 @@ class OrderServiceTest {
                         .productId(7L).qty(2).unitPrice(new BigDecimal("61.72")).subtotal(new BigDecimal("123.44")).build()))
                 .build();
 
-        Mockito.when(repo.findById(5L)).thenReturn(Optional.of(o));
+        Mockito.when(repo.findWithItemsById(5L)).thenReturn(Optional.of(o));
 
         var res = service.get(5L);
         assertEquals(5L, res.orderId());
@@ -140,7 +475,7 @@ class OrderServiceTest {
 
     @Test
     void get__not_found() {
-        Mockito.when(repo.findById(5L)).thenReturn(Optional.empty());
+        Mockito.when(repo.findWithItemsById(5L)).thenReturn(Optional.empty());
         var ex = assertThrows(ErrorResponseException.class, () -> service.get(5L));
         assertEquals(404, ex.getStatusCode().value());
     }
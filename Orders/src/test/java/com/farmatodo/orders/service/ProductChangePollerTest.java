@@ -0,0 +1,67 @@
+package com.farmatodo.orders.service;
+
+import com.farmatodo.orders.dto.PaymentModels.ProductChangesDTO;
+import com.farmatodo.orders.dto.PaymentModels.ProductChangesDTO.Change;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+
+class ProductChangePollerTest {
+
+    private ProductClient products;
+    private ProductChangePoller poller;
+
+    @BeforeEach
+    void setup() {
+        products = Mockito.mock(ProductClient.class);
+        poller = new ProductChangePoller(products);
+    }
+
+    @Test
+    void first_poll_resyncs_then_invalidates_changed_ids() {
+        Mockito.when(products.changes(null, 0L)).thenReturn(new ProductChangesDTO("e1", 10L, true, List.of()));
+        Mockito.when(products.changes("e1", 10L)).thenReturn(new ProductChangesDTO("e1", 12L, false,
+                List.of(new Change(11L, 7L, "UPDATED"), new Change(12L, 8L, "DELETED"))));
+        Mockito.when(products.changes("e1", 12L)).thenReturn(new ProductChangesDTO("e1", 12L, false, List.of()));
+
+        poller.poll();
+        Mockito.verify(products).invalidateAll();
+
+        poller.poll();
+        Mockito.verify(products).invalidate(7L);
+        Mockito.verify(products).invalidate(8L);
+        // una consulta por poll: el feed ya trae todo lo pendiente
+        Mockito.verify(products, Mockito.never()).changes("e1", 12L);
+
+        poller.poll();
+        Mockito.verify(products).changes("e1", 12L);
+    }
+
+    @Test
+    void products_restart_invalidates_everything() {
+        Mockito.when(products.changes(null, 0L)).thenReturn(new ProductChangesDTO("e1", 3L, true, List.of()));
+        Mockito.when(products.changes("e1", 3L)).thenReturn(new ProductChangesDTO("e2", 0L, true, List.of()));
+
+        poller.poll();
+        poller.poll();
+
+        Mockito.verify(products, Mockito.times(2)).invalidateAll();
+        Mockito.verify(products, Mockito.never()).invalidate(any());
+    }
+
+    @Test
+    void failures_keep_cursor() {
+        Mockito.when(products.changes(null, 0L)).thenReturn(new ProductChangesDTO("e1", 3L, true, List.of()));
+        poller.poll();
+        Mockito.when(products.changes("e1", 3L)).thenThrow(new RuntimeException("down"));
+
+        poller.poll();
+        poller.poll();
+
+        Mockito.verify(products, Mockito.times(2)).changes("e1", 3L);
+    }
+}
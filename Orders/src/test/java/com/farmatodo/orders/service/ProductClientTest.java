@@ -0,0 +1,122 @@
+package com.farmatodo.orders.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductClientTest {
+
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+    private final List<String> conditional = new CopyOnWriteArrayList<>();
+    private SimpleMeterRegistry registry;
+    private ProductClient client;
+
+    @BeforeEach
+    void setup() {
+        // products-service simulado: GET /products/{id} (ETag "7") y POST /products/batch (responde ids 1..3)
+        WebClient web = WebClient.builder().exchangeFunction(req -> {
+            calls.add(req.method() + " " + req.url().getPath());
+            String inm = req.headers().getFirst(HttpHeaders.IF_NONE_MATCH);
+            if (inm != null) {
+                conditional.add(inm);
+                return Mono.just(ClientResponse.create(HttpStatus.NOT_MODIFIED).header(HttpHeaders.ETAG, inm).build());
+            }
+            String body = req.url().getPath().endsWith("/batch")
+                    ? "[{\"id\":2,\"name\":\"B\",\"price\":200,\"stock\":5},{\"id\":3,\"name\":\"C\",\"price\":300,\"stock\":5}]"
+                    : "{\"id\":1,\"name\":\"A\",\"price\":100,\"stock\":5}";
+            return Mono.delay(Duration.ofMillis(50)).thenReturn(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.ETAG, "\"7\"")
+                    .body(body)
+                    .build());
+        }).build();
+
+        registry = new SimpleMeterRegistry();
+        client = new ProductClient(web, registry);
+        setField(client, "baseUrl", "http://products");
+        setField(client, "apiKey", "k");
+        setField(client, "cacheMaxSize", 100L);
+        setField(client, "cacheTtlSeconds", 60L);
+        client.initCache();
+    }
+
+    @Test
+    void get_is_served_from_cache_after_first_load() {
+        assertEquals("A", client.get(1L).name());
+        assertEquals("A", client.get(1L).name());
+
+        assertEquals(1, calls.size());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "orders.products").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void concurrent_misses_for_same_id_share_one_request() {
+        var futures = IntStream.range(0, 8)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> client.get(1L)))
+                .toList();
+        futures.forEach(f -> assertEquals(1L, f.join().id()));
+
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    void getAll_only_fetches_missing_ids_in_one_batch() {
+        client.get(1L);
+
+        var res = client.getAll(List.of(1L, 2L, 3L));
+
+        assertEquals(3, res.size());
+        assertEquals(List.of("GET /api/v1/products/1", "POST /api/v1/products/batch"), calls);
+    }
+
+    @Test
+    void invalidate_forces_reload() {
+        client.get(1L);
+        client.invalidate(1L);
+        client.get(1L);
+
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    void stale_entry_is_revalidated_with_if_none_match() throws Exception {
+        setField(client, "cacheRefreshSeconds", 1L);
+        client.initCache();
+        client.get(1L);
+        Thread.sleep(1100);
+
+        // Se sirve la entrada vigente mientras se revalida en segundo plano; el 304 la mantiene
+        assertEquals("A", client.get(1L).name());
+        for (int i = 0; i < 40 && conditional.isEmpty(); i++) Thread.sleep(50);
+        Thread.sleep(100);
+        assertEquals("A", client.get(1L).name());
+
+        assertEquals(List.of("\"7\""), conditional);
+        assertEquals(2, calls.size());
+    }
+
+    private static void setField(Object target, String name, Object val) {
+        try {
+            Field f = target.getClass().getDeclaredField(name);
+            f.setAccessible(true);
+            f.set(target, val);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
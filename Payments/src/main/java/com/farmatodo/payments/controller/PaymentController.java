@@ -9,6 +9,8 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 // Controlador REST para exponer el cobro y consulta
 @RestController
 @RequestMapping("/api/v1")
@@ -19,12 +21,12 @@ public class PaymentController {
     private final PaymentService service;
 
     // Endpoint principal de cobro: POST /payments/charge
+    // Asíncrono: el hilo de Tomcat se libera mientras el cobro reintenta; la respuesta sale al completarse
     @PostMapping("/payments/charge")
-    public ResponseEntity<ChargeResponse> charge(
+    public CompletableFuture<ResponseEntity<ChargeResponse>> charge(
             @Valid @RequestBody ChargeRequest req
     ) {
-        var res = service.charge(req);
-        return ResponseEntity.ok(res);
+        return service.charge(req).thenApply(ResponseEntity::ok);
     }
 
     // Consulta por id de pago: GET /payments/{id}
@@ -34,4 +36,12 @@ public class PaymentController {
     ) {
         return ResponseEntity.ok(service.getById(id));
     }
+
+    // Consulta por orden: GET /payments/by-order/{orderId} (conciliación desde orders)
+    @GetMapping("/payments/by-order/{orderId}")
+    public ResponseEntity<ChargeResponse> getByOrderId(
+            @PathVariable(name = "orderId") String orderId
+    ) {
+        return ResponseEntity.ok(service.getByOrderId(orderId));
+    }
 }
@@ -12,9 +12,9 @@ import java.time.Instant;
 // Entidad JPA para persistir los pagos
 @Entity
 @Table(name = "payments",
-        indexes = {
-                // Índice por orderId para búsquedas rápidas
-                @jakarta.persistence.Index(name = "idx_payments_order", columnList = "orderId")
+        uniqueConstraints = {
+                // Un cobro por orden: hace idempotente a /charge y sirve de índice por orderId
+                @UniqueConstraint(name = "uk_payments_order", columnNames = "orderId")
         })
 @Data
 @Builder
@@ -9,6 +9,6 @@ import java.util.Optional;
 // Repositorio Spring Data JPA para la entidad Payment
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
-    // Búsqueda conveniente por orderId
+    // Búsqueda por orderId (único: un cobro por orden)
     Optional<Payment> findByOrderId(String orderId);
 }
\ No newline at end of file
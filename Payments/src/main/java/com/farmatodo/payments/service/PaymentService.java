@@ -4,18 +4,28 @@ import com.farmatodo.payments.domain.Payment;
 import com.farmatodo.payments.domain.PaymentStatus;
 import com.farmatodo.payments.dto.ChargeRequest;
 import com.farmatodo.payments.dto.ChargeResponse;
+import com.farmatodo.payments.dto.TokenizationModels;
 import com.farmatodo.payments.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.ErrorResponseException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.time.Instant;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
@@ -26,6 +36,7 @@ public class PaymentService {
 
     private final NotificationPublisher publisher;
     private final AuditClient auditClient;
+    private final RetryEngine retries;
 
     @Value("${payment.rejection-prob:0.20}")
     private double rejectionProb;
@@ -36,19 +47,92 @@ public class PaymentService {
     @Value("${payment.backoff-ms:200}")
     private long backoffMs;
 
+    @Value("${payment.max-backoff-ms:2000}")
+    private long maxBackoffMs;
+
     @Value("${payment.tokenization.max-retries:2}")
     private int tokenizationMaxRetries;
 
     @Value("${payment.tokenization.backoff-ms:150}")
     private long tokenizationBackoffMs;
 
-    public ChargeResponse charge(ChargeRequest req) {
+    @Value("${payment.tokenization.max-backoff-ms:1000}")
+    private long tokenizationMaxBackoffMs;
+
+    /** Cuánto espera un cobro duplicado a que termine el original antes de responder 409. */
+    @Value("${payment.in-flight-wait-ms:30000}")
+    private long inFlightWaitMs;
+
+    private record InFlight(ChargeRequest req, CompletableFuture<ChargeResponse> result) {}
+
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    /** Hilos para lo bloqueante del final del cobro (guardar, notificar, auditar); los reintentos no ocupan ninguno. */
+    @Value("${payment.executor.workers:8}")
+    private int workers;
+
+    @Value("${payment.executor.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private ThreadPoolTaskExecutor executor;
+
+    /** Resultado de la autorización simulada: authCode null si el último intento fue rechazado. */
+    private record Authorization(int attempts, String authCode) {
+        boolean approved() { return authCode != null; }
+    }
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("payment-");
+        executor.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Cobra la orden sin bloquear al llamador: tokenización y autorización reintentan sobre el timer
+     * de RetryEngine y el futuro se completa al guardar el pago. Validaciones y replays fallan de inmediato.
+     */
+    public CompletableFuture<ChargeResponse> charge(ChargeRequest req) {
         if ((req.token() == null || req.token().isBlank()) && req.card() == null) {
             throw badRequest("Either 'token' or 'card' must be provided");
         }
         if (req.amount() <= 0) throw badRequest("Amount must be > 0");
         if (req.currency() == null || req.currency().isBlank()) throw badRequest("Currency is required");
 
+        // Una orden se cobra una sola vez: el reintento recibe el resultado guardado
+        var existing = repo.findByOrderId(req.orderId());
+        if (existing.isPresent()) return CompletableFuture.completedFuture(replay(existing.get(), req));
+
+        // Duplicado concurrente en esta instancia: espera al cobro en curso en vez de tokenizar de nuevo
+        var mine = new InFlight(req, new CompletableFuture<>());
+        var running = inFlight.putIfAbsent(req.orderId(), mine);
+        if (running != null) return follow(running, req);
+
+        CompletableFuture<ChargeResponse> res;
+        try {
+            res = process(req);
+        } catch (RuntimeException e) {
+            res = CompletableFuture.failedFuture(e);
+        }
+        res.whenComplete((value, error) -> {
+            // primero se libera: quien llegue después ya encuentra el pago guardado
+            inFlight.remove(req.orderId(), mine);
+            if (error != null) mine.result().completeExceptionally(RetryEngine.unwrap(error));
+            else mine.result().complete(value);
+        });
+        return mine.result();
+    }
+
+    private CompletableFuture<ChargeResponse> process(ChargeRequest req) {
+        // el MDC es del hilo del request; las etapas siguientes corren en otros hilos
         final String txId = MDC.get("txId");
         System.out.println(req + txId);
         auditClient.log(
@@ -67,61 +151,61 @@ public class PaymentService {
                 """.formatted(req.amount(), req.currency(), req.token()!=null && !req.token().isBlank(), req.card()!=null)
         );
 
-        String token = req.token();
-        String last4 = null;
-        String brand = null;
-
-        // Tokenización con reintentos cortos en 422
-        if (token == null || token.isBlank()) {
-            int tries = 0;
-            while (true) {
-                try {
-                    var tRes = tokenizationClient.tokenize(req.card());
-                    if (!"ISSUED".equalsIgnoreCase(tRes.status())) {
-                        throw unprocessable("Tokenization did not issue a token");
-                    }
-                    token = tRes.token();
-                    last4 = tRes.last4();
-                    brand = tRes.brand();
-                    break;
-                } catch (WebClientResponseException ex) {
-                    if (ex.getStatusCode().value() == 422 && tries++ < tokenizationMaxRetries) {
-                        sleepQuiet(tokenizationBackoffMs);
-                        continue;
-                    }
-                    throw ex;
-                }
-            }
-        }
+        return tokenize(req).thenCompose(tRes -> authorize()
+                .thenApplyAsync(auth -> save(req, txId, tRes, auth), executor));
+    }
 
-        // Pago probabilístico con reintentos
-        int attempts = 0;
-        boolean approved = false;
-        String authCode = null;
+    /** Token ya emitido (o null si vino en el request); reintenta los 422 de tokenization. */
+    private CompletableFuture<TokenizationModels.TokenizeResponse> tokenize(ChargeRequest req) {
+        if (req.token() != null && !req.token().isBlank()) return CompletableFuture.completedFuture(null);
+        var policy = new RetryEngine.Policy("tokenization", tokenizationMaxRetries, tokenizationBackoffMs, tokenizationMaxBackoffMs);
+        return retries.execute(policy, n -> tokenizationClient.tokenize(req.card()), r -> false,
+                        e -> e instanceof WebClientResponseException ex && ex.getStatusCode().value() == 422)
+                .thenApply(tRes -> {
+                    if (!"ISSUED".equalsIgnoreCase(tRes.status())) throw unprocessable("Tokenization did not issue a token");
+                    return tRes;
+                });
+    }
 
-        while (attempts <= maxRetries) {
-            attempts++;
+    /** Pago probabilístico: cada rechazo se reintenta hasta maxRetries veces. */
+    private CompletableFuture<Authorization> authorize() {
+        var policy = new RetryEngine.Policy("authorization", maxRetries, backoffMs, maxBackoffMs);
+        return retries.execute(policy, n -> {
             double r = ThreadLocalRandom.current().nextDouble();
-            if (r >= rejectionProb) {
-                approved = true;
-                authCode = UUID.randomUUID().toString().replace("-", "").substring(0, 6).toUpperCase();
-                break;
-            }
-            if (attempts <= maxRetries) sleepQuiet(backoffMs);
-        }
+            String authCode = r >= rejectionProb
+                    ? UUID.randomUUID().toString().replace("-", "").substring(0, 6).toUpperCase()
+                    : null;
+            return CompletableFuture.completedFuture(new Authorization(n, authCode));
+        }, auth -> !auth.approved(), e -> false);
+    }
 
-        Payment saved = repo.save(Payment.builder()
-                .orderId(req.orderId())
-                .amount(req.amount())
-                .currency(req.currency().toUpperCase())
-                .last4(last4)
-                .brand(brand)
-                .token(token)
-                .authCode(authCode)
-                .attempts(attempts)
-                .status(approved ? PaymentStatus.APPROVED : PaymentStatus.REJECTED)
-                .createdAt(Instant.now())
-                .build());
+    private ChargeResponse save(ChargeRequest req, String txId, TokenizationModels.TokenizeResponse tRes, Authorization auth) {
+        String token = tRes == null ? req.token() : tRes.token();
+        String last4 = tRes == null ? null : tRes.last4();
+        String brand = tRes == null ? null : tRes.brand();
+        int attempts = auth.attempts();
+        boolean approved = auth.approved();
+        String authCode = auth.authCode();
+
+        Payment saved;
+        try {
+            saved = repo.save(Payment.builder()
+                    .orderId(req.orderId())
+                    .amount(req.amount())
+                    .currency(req.currency().toUpperCase())
+                    .last4(last4)
+                    .brand(brand)
+                    .token(token)
+                    .authCode(authCode)
+                    .attempts(attempts)
+                    .status(approved ? PaymentStatus.APPROVED : PaymentStatus.REJECTED)
+                    .createdAt(Instant.now())
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Otra instancia cobró la misma orden primero (uk_payments_order): manda su resultado,
+            // sin notificar ni auditar de nuevo
+            return replay(repo.findByOrderId(req.orderId()).orElseThrow(() -> e), req);
+        }
 
         if (!approved) {
             safeNotify("PAYMENT_FAILED", req.orderId(), req.customerEmail(),
@@ -165,18 +249,44 @@ public class PaymentService {
         return new ChargeResponse("APPROVED", saved.getAttempts(), saved.getAuthCode(), saved.getOrderId());
     }
 
+    /** Resultado ya guardado para la orden; el mismo orderId con otro monto/moneda es un conflicto. */
+    private ChargeResponse replay(Payment p, ChargeRequest req) {
+        if (!sameCharge(p.getAmount(), p.getCurrency(), req)) throw conflictingCharge();
+        if (p.getStatus() == PaymentStatus.REJECTED)
+            throw unprocessable("Payment rejected after " + p.getAttempts() + " attempt(s)");
+        return new ChargeResponse(p.getStatus().name(), p.getAttempts(), p.getAuthCode(), p.getOrderId());
+    }
+
+    /** Mismo resultado que el cobro en curso: su respuesta o su error (409 si tarda más que inFlightWaitMs). */
+    private CompletableFuture<ChargeResponse> follow(InFlight running, ChargeRequest req) {
+        if (!sameCharge(running.req().amount(), running.req().currency(), req)) throw conflictingCharge();
+        return running.result().copy()
+                .orTimeout(inFlightWaitMs, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    var cause = RetryEngine.unwrap(e);
+                    if (cause instanceof TimeoutException) throw conflict("A charge for this order is still in progress");
+                    throw cause instanceof RuntimeException re ? re : new CompletionException(cause);
+                });
+    }
+
+    private static boolean sameCharge(long amount, String currency, ChargeRequest req) {
+        return amount == req.amount() && currency.equalsIgnoreCase(req.currency());
+    }
+
     public ChargeResponse getById(Long id) {
         var p = repo.findById(id).orElseThrow(() -> notFound("Payment not found"));
         return new ChargeResponse(p.getStatus().name(), p.getAttempts(), p.getAuthCode(), p.getOrderId());
     }
 
-    /* ---------------- Helpers ---------------- */
-
-    private void sleepQuiet(long ms) {
-        try { Thread.sleep(ms); }
-        catch (InterruptedException ie) { Thread.currentThread().interrupt(); throw internal("Interrupted during backoff"); }
+    /** Resultado del cobro de una orden (hay uno solo por orderId); 404 si nunca llegó a cobrarse. */
+    public ChargeResponse getByOrderId(String orderId) {
+        var p = repo.findByOrderId(orderId)
+                .orElseThrow(() -> notFound("Payment not found"));
+        return new ChargeResponse(p.getStatus().name(), p.getAttempts(), p.getAuthCode(), p.getOrderId());
     }
 
+    /* ---------------- Helpers ---------------- */
+
     private void safeNotify(String type, String orderId, String email,
                             long amount, String currency, int attempts, String status) {
         try {
@@ -190,5 +300,6 @@ public class PaymentService {
     private ErrorResponseException unprocessable(String m) { var ex=new ErrorResponseException(HttpStatus.UNPROCESSABLE_ENTITY); ex.setDetail(m); return ex; }
     private ErrorResponseException notFound(String m) { var ex=new ErrorResponseException(HttpStatus.NOT_FOUND); ex.setDetail(m); return ex; }
     private ErrorResponseException badRequest(String m) { var ex=new ErrorResponseException(HttpStatus.BAD_REQUEST); ex.setDetail(m); return ex; }
-    private ErrorResponseException internal(String m) { var ex=new ErrorResponseException(HttpStatus.INTERNAL_SERVER_ERROR); ex.setDetail(m); return ex; }
+    private ErrorResponseException conflict(String m) { var ex=new ErrorResponseException(HttpStatus.CONFLICT); ex.setDetail(m); return ex; }
+    private ErrorResponseException conflictingCharge() { return conflict("Order already has a charge with a different amount or currency"); }
 }
@@ -0,0 +1,136 @@
+package com.farmatodo.payments.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Reintentos sin hilos dormidos: entre intento e intento no se hace Thread.sleep, el siguiente intento
+ * se agenda en un timer compartido y el hilo queda libre. Backoff exponencial con jitter (los reintentos
+ * de muchos cobros no llegan todos juntos) y un presupuesto por política: cada llamada suma
+ * budget-ratio fichas (hasta budget-max) y cada reintento gasta una, así en una tormenta de fallas los
+ * reintentos quedan acotados a una fracción del tráfico en vez de multiplicarlo.
+ */
+@Component
+public class RetryEngine {
+
+    /** maxRetries reintentos además del primer intento; el delay del reintento n es base * 2^(n-1), tope maxDelayMs. */
+    public record Policy(String name, int maxRetries, long baseDelayMs, long maxDelayMs) {}
+
+    /** Fracción del delay que se resta al azar (0 = sin jitter, 1 = full jitter). */
+    @Value("${payment.retry.jitter:0.5}")
+    private double jitter;
+
+    @Value("${payment.retry.budget-ratio:0.5}")
+    private double budgetRatio;
+
+    @Value("${payment.retry.budget-max:100}")
+    private double budgetMax;
+
+    private ScheduledExecutorService timer;
+    private final ConcurrentHashMap<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "payment-retry-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Ejecuta attempt (recibe el número de intento, desde 1) hasta que el resultado o el error no
+     * pidan reintento, se agoten los reintentos o el presupuesto. Devuelve el último resultado o error.
+     * Cada intento debe ser no bloqueante: corre en el hilo que completó el anterior o en el timer.
+     */
+    public <T> CompletableFuture<T> execute(Policy policy, IntFunction<CompletableFuture<T>> attempt,
+                                            Predicate<T> retryOnResult, Predicate<Throwable> retryOnError) {
+        var budget = budgets.computeIfAbsent(policy.name(), n -> new Budget(budgetRatio, budgetMax));
+        budget.deposit();
+        var result = new CompletableFuture<T>();
+        run(policy, budget, attempt, retryOnResult, retryOnError, 1, result);
+        return result;
+    }
+
+    private <T> void run(Policy policy, Budget budget, IntFunction<CompletableFuture<T>> attempt,
+                         Predicate<T> retryOnResult, Predicate<Throwable> retryOnError,
+                         int n, CompletableFuture<T> result) {
+        CompletableFuture<T> current;
+        try {
+            current = attempt.apply(n);
+        } catch (RuntimeException e) {
+            current = CompletableFuture.failedFuture(e);
+        }
+        current.whenComplete((value, error) -> {
+            Throwable cause = unwrap(error);
+            boolean retry = cause == null ? retryOnResult.test(value) : retryOnError.test(cause);
+            if (retry && n <= policy.maxRetries() && budget.tryWithdraw()) {
+                try {
+                    timer.schedule(() -> run(policy, budget, attempt, retryOnResult, retryOnError, n + 1, result),
+                            delay(policy, n), TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // apagando: se devuelve el último resultado
+                }
+            }
+            if (cause == null) result.complete(value);
+            else result.completeExceptionally(cause);
+        });
+    }
+
+    /** Delay antes del reintento n (1 = primer reintento). */
+    long delay(Policy policy, int retry) {
+        long exp = Math.min(policy.maxDelayMs(), policy.baseDelayMs() << Math.min(retry - 1, 20));
+        return exp - (long) (exp * jitter * ThreadLocalRandom.current().nextDouble());
+    }
+
+    /** El error real detrás de los envoltorios de CompletableFuture. */
+    static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    /** Fichas de reintento de una política: empieza lleno para no frenar reintentos con poco tráfico. */
+    static final class Budget {
+        private final double ratio;
+        private final double max;
+        private double tokens;
+
+        Budget(double ratio, double max) {
+            this.ratio = ratio;
+            this.max = max;
+            this.tokens = max;
+        }
+
+        synchronized void deposit() {
+            tokens = Math.min(max, tokens + ratio);
+        }
+
+        synchronized boolean tryWithdraw() {
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+    }
+}
@@ -11,12 +11,14 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Cliente HTTP para el micro de Tokenization.
  * - Usa baseUrl del builder (evita concatenaciones).
  * - Mapea rechazo probabilístico a 422 (Unprocessable Entity).
  * - Propaga otros 4xx/5xx con el cuerpo del error.
+ * - No bloquea: devuelve un CompletableFuture que se completa al llegar la respuesta.
  */
 @Component
 @RequiredArgsConstructor
@@ -33,7 +35,7 @@ public class TokenizationClient {
     /**
      * Solicita tokenización de tarjeta a /api/v1/tokenize.
      */
-    public TokenizationModels.TokenizeResponse tokenize(CardData card) {
+    public CompletableFuture<TokenizationModels.TokenizeResponse> tokenize(CardData card) {
         if (baseUrl == null || baseUrl.isBlank()) {
             throw new IllegalStateException("tokenization.base-url is not configured");
         }
@@ -84,6 +86,6 @@ public class TokenizationClient {
                                 msg.getBytes(StandardCharsets.UTF_8),
                                 StandardCharsets.UTF_8)))
                 .bodyToMono(TokenizationModels.TokenizeResponse.class)
-                .block();
+                .toFuture();
     }
 }
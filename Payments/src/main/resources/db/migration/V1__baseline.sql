@@ -0,0 +1,32 @@
+-- Esquema base de payments: lo que antes generaba ddl-auto: update.
+-- Idempotente: en bases ya creadas por Hibernate (baseline-on-migrate, versión 0) no cambia nada.
+
+CREATE TABLE IF NOT EXISTS payments (
+    id         bigint       GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id   varchar(255) NOT NULL,
+    amount     bigint       NOT NULL,
+    currency   varchar(10)  NOT NULL,
+    last4      varchar(4),
+    brand      varchar(20),
+    token      varchar(80),
+    auth_code  varchar(20),
+    attempts   integer      NOT NULL,
+    status     varchar(20)  NOT NULL CHECK (status IN ('APPROVED', 'REJECTED')),
+    created_at timestamp(6) with time zone NOT NULL
+);
+
+-- findByOrderId
+CREATE INDEX IF NOT EXISTS idx_payments_order ON payments (order_id);
+
+CREATE TABLE IF NOT EXISTS payment_event_logs (
+    id           bigint      GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tx_id        varchar(40) NOT NULL,
+    event_type   smallint    NOT NULL CHECK (event_type BETWEEN 0 AND 1),   -- PaymentStatus ordinal
+    order_id     varchar(80) NOT NULL,
+    created_at   timestamp(6) with time zone NOT NULL,
+    payload_json oid         NOT NULL   -- @Lob String en PostgreSQL
+);
+
+-- Traza de auditoría del pago: se busca por transacción o por orden
+CREATE INDEX IF NOT EXISTS idx_event_tx ON payment_event_logs (tx_id);
+CREATE INDEX IF NOT EXISTS idx_event_order ON payment_event_logs (order_id);
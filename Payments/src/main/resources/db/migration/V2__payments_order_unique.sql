@@ -0,0 +1,14 @@
+-- Un cobro por orden: /charge es idempotente por orderId y la unique es el candado entre instancias.
+-- Duplicados previos (reintentos que cobraron dos veces) no se borran: queda la fila APPROVED (o la
+-- más reciente) y el resto se renombra a '<orderId>#dup-<id>' para revisarlas a mano.
+UPDATE payments p
+SET order_id = p.order_id || '#dup-' || p.id
+FROM (SELECT id, row_number() OVER (PARTITION BY order_id
+                                    ORDER BY (status = 'APPROVED') DESC, id DESC) AS rn
+      FROM payments) d
+WHERE p.id = d.id AND d.rn > 1;
+
+ALTER TABLE payments ADD CONSTRAINT uk_payments_order UNIQUE (order_id);
+
+-- La unique ya indexa order_id
+DROP INDEX IF EXISTS idx_payments_order;
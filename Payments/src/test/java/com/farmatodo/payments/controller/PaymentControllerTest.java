@@ -9,10 +9,14 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.web.ErrorResponseException;
+
+import java.util.concurrent.CompletableFuture;
 
 // Tests del controlador usando MockMvc
 @WebMvcTest(controllers = PaymentController.class)
@@ -44,15 +48,19 @@ class PaymentControllerTest {
         var res = new ChargeResponse("APPROVED", 1, "ABC123", "order-1");
 
         // Mockeamos el servicio
-        Mockito.when(service.charge(Mockito.any())).thenReturn(res);
+        Mockito.when(service.charge(Mockito.any())).thenReturn(CompletableFuture.completedFuture(res));
 
-        // Ejecutamos la llamada HTTP
-        mvc.perform(
+        // Ejecutamos la llamada HTTP (el endpoint es asíncrono: se espera el dispatch del resultado)
+        var async = mvc.perform(
                         MockMvcRequestBuilders.post(BASE + "/charge")
                                 .header("X-API-KEY", API_KEY)
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .content(om.writeValueAsString(req))
                 )
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(async))
                 // Validamos 200
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 // Validamos campos de la respuesta
@@ -60,6 +68,27 @@ class PaymentControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.orderId").value("order-1"));
     }
 
+    // Test POST /payments/charge 422: el rechazo llega como error del futuro
+    @Test
+    void charge_rejected_422() throws Exception {
+        var req = new ChargeRequest("order-2", 1000, "COP", "tok", null, null);
+        var rejected = new ErrorResponseException(HttpStatus.UNPROCESSABLE_ENTITY);
+        rejected.setDetail("Payment rejected after 3 attempt(s)");
+        Mockito.when(service.charge(Mockito.any())).thenReturn(CompletableFuture.failedFuture(rejected));
+
+        var async = mvc.perform(
+                        MockMvcRequestBuilders.post(BASE + "/charge")
+                                .header("X-API-KEY", API_KEY)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(om.writeValueAsString(req))
+                )
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(async))
+                .andExpect(MockMvcResultMatchers.status().isUnprocessableEntity());
+    }
+
     // Test GET /payments/{id} 200
     @Test
     void getById_ok_200() throws Exception {
@@ -72,4 +101,18 @@ class PaymentControllerTest {
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath("$.authCode").value("ZZZ999"));
     }
+
+    // Test GET /payments/by-order/{orderId} 200
+    @Test
+    void getByOrderId_ok_200() throws Exception {
+        var res = new ChargeResponse("APPROVED", 2, "QQQ111", "ORD-7");
+        Mockito.when(service.getByOrderId("ORD-7")).thenReturn(res);
+
+        mvc.perform(MockMvcRequestBuilders.get(BASE + "/by-order/ORD-7")
+                                .header("X-API-KEY", API_KEY)
+                )
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.status").value("APPROVED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.orderId").value("ORD-7"));
+    }
 }
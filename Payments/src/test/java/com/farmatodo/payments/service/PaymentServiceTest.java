@@ -1,16 +1,25 @@
 package com.farmatodo.payments.service;
 
 import com.farmatodo.payments.domain.Payment;
+import com.farmatodo.payments.domain.PaymentStatus;
 import com.farmatodo.payments.dto.CardData;
 import com.farmatodo.payments.dto.ChargeRequest;
+import com.farmatodo.payments.dto.ChargeResponse;
 import com.farmatodo.payments.dto.TokenizationModels;
 import com.farmatodo.payments.repository.PaymentRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.web.ErrorResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -25,6 +34,7 @@ class PaymentServiceTest {
     private NotificationPublisher publisher;
     private AuditClient auditClient;
 
+    private RetryEngine retries;
     private PaymentService service;
 
     @BeforeEach
@@ -34,13 +44,38 @@ class PaymentServiceTest {
         publisher = Mockito.mock(NotificationPublisher.class);
         auditClient = Mockito.mock(AuditClient.class);
 
-        service = new PaymentService(repo, tokenClient, publisher, auditClient);
+        retries = new RetryEngine();
+        setField(retries, "jitter", 0.5d);
+        setField(retries, "budgetRatio", 0.5d);
+        setField(retries, "budgetMax", 100d);
+        retries.init();
+
+        service = new PaymentService(repo, tokenClient, publisher, auditClient, retries);
 
         setField(service, "rejectionProb", 0.0d); // siempre aprueba
         setField(service, "maxRetries", 0);       // sin reintentos
         setField(service, "backoffMs", 0L);       // sin sleep
         setField(service, "tokenizationMaxRetries", 0); // sin reintentos de tokenización
         setField(service, "tokenizationBackoffMs", 0L);
+        setField(service, "inFlightWaitMs", 2000L);
+        setField(service, "workers", 2);
+        setField(service, "queueCapacity", 10);
+        service.init();
+    }
+
+    @AfterEach
+    void teardown() {
+        service.shutdown();
+        retries.shutdown();
+    }
+
+    /** charge sincrónico para los tests: espera el futuro y desenvuelve su error. */
+    private ChargeResponse charge(ChargeRequest req) {
+        try {
+            return service.charge(req).join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
     }
 
     private static void setField(Object target, String name, Object val) {
@@ -59,7 +94,7 @@ class PaymentServiceTest {
         var req = new ChargeRequest("order-1", 1000, "COP", null, card, "user@mail.com");
 
         var tRes = new TokenizationModels.TokenizeResponse("tok-123", "1111", "VISA", "ISSUED");
-        Mockito.when(tokenClient.tokenize(any())).thenReturn(tRes);
+        Mockito.when(tokenClient.tokenize(any())).thenReturn(CompletableFuture.completedFuture(tRes));
 
         Mockito.when(repo.save(any())).thenAnswer(inv -> {
             Payment p = inv.getArgument(0);
@@ -67,7 +102,7 @@ class PaymentServiceTest {
             return p;
         });
 
-        var res = service.charge(req);
+        var res = charge(req);
 
         assertEquals("APPROVED", res.status());
         Mockito.verify(tokenClient).tokenize(any());
@@ -94,7 +129,7 @@ class PaymentServiceTest {
 
         Mockito.when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
-        var res = service.charge(req);
+        var res = charge(req);
 
         assertEquals("APPROVED", res.status());
         Mockito.verify(tokenClient, Mockito.never()).tokenize(any());
@@ -115,7 +150,7 @@ class PaymentServiceTest {
     @Test
     void charge_missing_token_and_card_bad_request() {
         var req = new ChargeRequest("order-3", 1000, "COP", null, null, "a@mail.com");
-        var ex = assertThrows(ErrorResponseException.class, () -> service.charge(req));
+        var ex = assertThrows(ErrorResponseException.class, () -> charge(req));
         assertEquals(400, ex.getStatusCode().value());
         Mockito.verifyNoInteractions(repo, tokenClient, publisher, auditClient);
     }
@@ -130,7 +165,7 @@ class PaymentServiceTest {
 
         Mockito.when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
-        var ex = assertThrows(ErrorResponseException.class, () -> service.charge(req));
+        var ex = assertThrows(ErrorResponseException.class, () -> charge(req));
         // Tu servicio actualmente lanza 422 (Unprocessable) en el rechazo final
         assertEquals(422, ex.getStatusCode().value());
 
@@ -148,4 +183,120 @@ class PaymentServiceTest {
         // También debe auditar
         Mockito.verify(auditClient, Mockito.atLeastOnce()).log(any(), any(), any(), any(), any(), any());
     }
+
+    @Test
+    void charge_for_already_paid_order_returns_existing_outcome() {
+        Mockito.when(repo.findByOrderId("order-5")).thenReturn(Optional.of(paid("order-5", 1000L)));
+        var card = new CardData("4111111111111111", "123", 12, 2030, "John");
+
+        var res = charge(new ChargeRequest("order-5", 1000, "cop", null, card, "u@mail.com"));
+
+        assertEquals("APPROVED", res.status());
+        assertEquals("ABC123", res.authCode());
+        Mockito.verify(repo, Mockito.never()).save(any());
+        Mockito.verifyNoInteractions(tokenClient, publisher, auditClient);
+    }
+
+    @Test
+    void charge_for_rejected_order_replays_422_without_retrying() {
+        var rejected = paid("order-6", 1000L);
+        rejected.setStatus(PaymentStatus.REJECTED);
+        rejected.setAttempts(3);
+        Mockito.when(repo.findByOrderId("order-6")).thenReturn(Optional.of(rejected));
+
+        var ex = assertThrows(ErrorResponseException.class,
+                () -> charge(new ChargeRequest("order-6", 1000, "COP", "tok", null, null)));
+
+        assertEquals(422, ex.getStatusCode().value());
+        Mockito.verify(repo, Mockito.never()).save(any());
+        Mockito.verifyNoInteractions(publisher, auditClient);
+    }
+
+    @Test
+    void charge_same_order_with_different_amount_is_409() {
+        Mockito.when(repo.findByOrderId("order-7")).thenReturn(Optional.of(paid("order-7", 1000L)));
+
+        var ex = assertThrows(ErrorResponseException.class,
+                () -> charge(new ChargeRequest("order-7", 2000, "COP", "tok", null, null)));
+
+        assertEquals(409, ex.getStatusCode().value());
+    }
+
+    @Test
+    void charge_lost_race_against_other_instance_returns_winner_outcome() {
+        Mockito.when(repo.findByOrderId("order-8"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(paid("order-8", 1000L)));
+        Mockito.when(repo.save(any())).thenThrow(new DataIntegrityViolationException("uk_payments_order"));
+
+        var res = charge(new ChargeRequest("order-8", 1000, "COP", "tok", null, "u@mail.com"));
+
+        assertEquals("ABC123", res.authCode());
+        Mockito.verifyNoInteractions(publisher);
+        Mockito.verify(auditClient, Mockito.never()).log(any(), any(), eq("PAYMENT.APPROVED"), any(), any(), any());
+    }
+
+    @Test
+    void concurrent_duplicates_share_the_in_flight_charge() {
+        var tokenization = new CompletableFuture<TokenizationModels.TokenizeResponse>();
+        var card = new CardData("4111111111111111", "123", 12, 2030, "John");
+        Mockito.when(tokenClient.tokenize(any())).thenReturn(tokenization);
+        Mockito.when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        var req = new ChargeRequest("order-9", 1000, "COP", null, card, "u@mail.com");
+
+        // El cobro original queda esperando a tokenization sin ocupar el hilo; los duplicados se cuelgan de él
+        var leader = service.charge(req);
+        var dups = List.of(service.charge(req), service.charge(req));
+        assertFalse(leader.isDone());
+        tokenization.complete(new TokenizationModels.TokenizeResponse("tok-1", "1111", "VISA", "ISSUED"));
+
+        var first = leader.join();
+        for (var d : dups) assertEquals(first, d.join());
+        Mockito.verify(tokenClient, Mockito.times(1)).tokenize(any());
+        Mockito.verify(repo, Mockito.times(1)).save(any());
+        Mockito.verify(publisher, Mockito.times(1)).notify(any(), any(), any(), anyLong(), any(), anyInt(), any());
+    }
+
+    @Test
+    void tokenization_422_is_retried_without_blocking_the_caller() {
+        var card = new CardData("4111111111111111", "123", 12, 2030, "John");
+        setField(service, "tokenizationMaxRetries", 2);
+        setField(service, "tokenizationBackoffMs", 50L);
+        Mockito.when(tokenClient.tokenize(any()))
+                .thenReturn(CompletableFuture.failedFuture(
+                        WebClientResponseException.create(422, "Unprocessable Entity", null, null, null)))
+                .thenReturn(CompletableFuture.completedFuture(
+                        new TokenizationModels.TokenizeResponse("tok-2", "1111", "VISA", "ISSUED")));
+        Mockito.when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        var future = service.charge(new ChargeRequest("order-10", 1000, "COP", null, card, null));
+        // el reintento está agendado en el timer: charge ya devolvió
+        assertFalse(future.isDone());
+
+        assertEquals("APPROVED", future.join().status());
+        Mockito.verify(tokenClient, Mockito.times(2)).tokenize(any());
+        Mockito.verify(repo).save(argThat(p -> "tok-2".equals(p.getToken())));
+    }
+
+    @Test
+    void getByOrderId_returns_the_order_payment() {
+        Mockito.when(repo.findByOrderId("ORD-1")).thenReturn(Optional.of(paid("ORD-1", 1000L)));
+
+        var res = service.getByOrderId("ORD-1");
+
+        assertEquals("APPROVED", res.status());
+    }
+
+    @Test
+    void getByOrderId_without_payment_is_404() {
+        Mockito.when(repo.findByOrderId("ORD-2")).thenReturn(Optional.empty());
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.getByOrderId("ORD-2"));
+        assertEquals(404, ex.getStatusCode().value());
+    }
+
+    private static Payment paid(String orderId, long amount) {
+        return Payment.builder().id(1L).orderId(orderId).amount(amount).currency("COP")
+                .status(PaymentStatus.APPROVED).attempts(1).authCode("ABC123").build();
+    }
 }
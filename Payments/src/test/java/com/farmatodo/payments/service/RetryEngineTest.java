@@ -0,0 +1,123 @@
+package com.farmatodo.payments.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios de RetryEngine
+ */
+class RetryEngineTest {
+
+    private RetryEngine engine;
+
+    @BeforeEach
+    void setup() {
+        engine = new RetryEngine();
+        setField(engine, "jitter", 0.5d);
+        setField(engine, "budgetRatio", 0.5d);
+        setField(engine, "budgetMax", 100d);
+        engine.init();
+    }
+
+    @AfterEach
+    void teardown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void retries_until_result_is_accepted() {
+        var calls = new AtomicInteger();
+
+        var res = engine.execute(policy("a", 3), n -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(n);
+        }, n -> n < 3, e -> false).join();
+
+        assertEquals(3, res);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void gives_up_after_max_retries_with_last_result() {
+        var res = engine.execute(policy("a", 2), CompletableFuture::completedFuture, n -> true, e -> false).join();
+
+        assertEquals(3, res); // 1 intento + 2 reintentos
+    }
+
+    @Test
+    void retries_only_matching_errors() {
+        var calls = new AtomicInteger();
+
+        var ex = assertThrows(CompletionException.class, () -> engine.<Integer>execute(policy("a", 5), n -> {
+            calls.incrementAndGet();
+            return CompletableFuture.failedFuture(n == 1 ? new IllegalStateException("retry") : new IllegalArgumentException("stop"));
+        }, r -> false, e -> e instanceof IllegalStateException).join());
+
+        assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void exhausted_budget_stops_retrying() {
+        setField(engine, "budgetMax", 2d);
+        setField(engine, "budgetRatio", 0d);
+
+        // el presupuesto (2 fichas) lo comparten todas las llamadas de la política
+        var first = engine.execute(policy("storm", 5), CompletableFuture::completedFuture, n -> true, e -> false).join();
+        var second = engine.execute(policy("storm", 5), CompletableFuture::completedFuture, n -> true, e -> false).join();
+
+        assertEquals(3, first);
+        assertEquals(1, second);
+        // otra política tiene su propio presupuesto
+        assertEquals(3, engine.execute(policy("other", 2), CompletableFuture::completedFuture, n -> true, e -> false).join());
+    }
+
+    @Test
+    void does_not_block_the_caller_between_attempts() {
+        var policy = new RetryEngine.Policy("slow", 1, 200, 200);
+
+        long start = System.nanoTime();
+        var future = engine.execute(policy, CompletableFuture::completedFuture, n -> n < 2, e -> false);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertFalse(future.isDone());
+        assertTrue(elapsedMs < 100, "execute returned after " + elapsedMs + "ms");
+        assertEquals(2, future.join());
+    }
+
+    @Test
+    void delay_grows_exponentially_with_jitter_and_cap() {
+        var policy = new RetryEngine.Policy("a", 10, 100, 1000);
+
+        for (int i = 0; i < 50; i++) {
+            long d1 = engine.delay(policy, 1);
+            long d3 = engine.delay(policy, 3);
+            long d10 = engine.delay(policy, 10);
+            assertTrue(d1 >= 50 && d1 <= 100, "d1=" + d1);
+            assertTrue(d3 >= 200 && d3 <= 400, "d3=" + d3);
+            assertTrue(d10 >= 500 && d10 <= 1000, "d10=" + d10);
+        }
+    }
+
+    private static RetryEngine.Policy policy(String name, int maxRetries) {
+        return new RetryEngine.Policy(name, maxRetries, 1, 5);
+    }
+
+    private static void setField(Object target, String name, Object val) {
+        try {
+            Field f = target.getClass().getDeclaredField(name);
+            f.setAccessible(true);
+            f.set(target, val);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.dto.ProductChangesResponse;
+import com.farmatodo.product.service.ProductChangeFeed;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class ProductChangeController {
+
+    private final ProductChangeFeed feed;
+
+    // Feed de cambios para invalidar caches de consumidores (poll con cursor)
+    @GetMapping("/products/changes")
+    public ProductChangesResponse changes(@RequestParam(required = false) String epoch,
+                                          @RequestParam(defaultValue = "0") @Min(0) long since,
+                                          @RequestParam(defaultValue = "500") @Min(1) @Max(1000) int limit){
+        return feed.since(epoch, since, limit);
+    }
+}
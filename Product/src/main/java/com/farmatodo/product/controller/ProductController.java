@@ -3,11 +3,14 @@
 package com.farmatodo.product.controller;
 
 import com.farmatodo.product.dto.CreateProductRequest;
+import com.farmatodo.product.dto.PageResponse;
+import com.farmatodo.product.dto.ProductIdsRequest;
 import com.farmatodo.product.dto.UpdateProductRequest;
 import com.farmatodo.product.dto.ProductDTO;
 import com.farmatodo.product.service.ProductService;
 import com.farmatodo.product.service.SearchLogService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -50,16 +53,26 @@ public class ProductController {
         return ResponseEntity.noContent().build();
     }
 
+    // Listado paginado por keyset: cursor = nextCursor de la página anterior (size máx. 100)
     @GetMapping("/products")
-    public ResponseEntity<List<ProductDTO>> list() {
-        return ResponseEntity.ok(service.list());
+    public ResponseEntity<PageResponse<ProductDTO>> list(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size) {
+        return ResponseEntity.ok(service.list(cursor, size));
     }
 
     /** -------- existentes -------- */
 
+    // Con ETag: si coincide con If-None-Match, Spring responde 304 sin serializar el body
     @GetMapping("/products/{id}")
     public ResponseEntity<ProductDTO> getById(@PathVariable Long id){
-        return ResponseEntity.ok(service.getById(id));
+        var v = service.getVersioned(id);
+        return ResponseEntity.ok().eTag(v.etag()).body(v.body());
+    }
+
+    // Consulta por lote (una llamada HTTP y un SELECT por canasta)
+    @PostMapping("/products/batch")
+    public ResponseEntity<List<ProductDTO>> getByIds(@Valid @RequestBody ProductIdsRequest req){
+        return ResponseEntity.ok(service.getByIds(req.ids()));
     }
 
     @PostMapping("/products/{id}/decrement")
@@ -68,9 +81,12 @@ public class ProductController {
         return ResponseEntity.noContent().build();
     }
 
+    // Búsqueda paginada y rankeada (page desde 0, size máx. 100)
     @GetMapping("/products/search")
-    public ResponseEntity<List<ProductDTO>> search(@RequestParam String q){
+    public ResponseEntity<List<ProductDTO>> search(@RequestParam String q,
+                                                   @RequestParam(defaultValue = "0") @Min(0) int page,
+                                                   @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size){
         searchLogService.logAsync(q);
-        return ResponseEntity.ok(service.search(q));
+        return ResponseEntity.ok(service.search(q, page, size));
     }
 }
@@ -0,0 +1,38 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.service.ProductExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class ProductExportController {
+
+    public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    /** Usar como updatedSince del próximo export incremental (hora de la base en el snapshot, con solapamiento). */
+    public static final String HDR_STARTED_AT = "X-Export-Started-At";
+
+    private final ProductExportService service;
+
+    // Export NDJSON en streaming; updatedSince (ISO-8601) limita a lo modificado desde ese instante
+    @GetMapping(value = "/products/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant updatedSince,
+            HttpServletResponse response) {
+        service.requireIncrementalWindow(updatedSince);
+        // El cursor se conoce recién dentro de la transacción del export; se fija antes de escribir el body
+        StreamingResponseBody body = out -> service.exportNdjson(updatedSince, out,
+                cursor -> response.setHeader(HDR_STARTED_AT, cursor.toString()));
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
+    }
+}
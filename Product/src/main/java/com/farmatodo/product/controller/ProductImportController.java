@@ -0,0 +1,28 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.dto.ImportResultDTO;
+import com.farmatodo.product.service.ProductImportService;
+import com.farmatodo.product.service.ProductImportService.Format;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class ProductImportController {
+
+    private final ProductImportService service;
+
+    // Import masivo (upsert por nombre); el body se procesa en streaming, sin cargarlo entero
+    @PostMapping(value = "/products/import", consumes = "text/csv")
+    public ImportResultDTO importCsv(InputStream body) {
+        return service.importProducts(Format.CSV, body);
+    }
+
+    @PostMapping(value = "/products/import", consumes = "application/x-ndjson")
+    public ImportResultDTO importNdjson(InputStream body) {
+        return service.importProducts(Format.NDJSON, body);
+    }
+}
@@ -0,0 +1,25 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.dto.TopSearchDTO;
+import com.farmatodo.product.service.SearchTrendService;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class SearchTrendController {
+
+    private final SearchTrendService service;
+
+    // Términos más buscados en los últimos {minutes} (máx. 7 días), desde los rollups
+    @GetMapping("/products/search/top")
+    public List<TopSearchDTO> top(@RequestParam(defaultValue = "60") @Min(1) @Max(10080) int minutes,
+                                  @RequestParam(defaultValue = "10") @Min(1) @Max(100) int limit){
+        return service.top(minutes, limit);
+    }
+}
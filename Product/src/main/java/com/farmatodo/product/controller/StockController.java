@@ -0,0 +1,57 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.dto.ReservationResponse;
+import com.farmatodo.product.dto.ReserveStockRequest;
+import com.farmatodo.product.dto.StockItemsRequest;
+import com.farmatodo.product.service.ReservationService;
+import com.farmatodo.product.service.StockService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class StockController {
+
+    private final StockService service;
+    private final ReservationService reservations;
+
+    // Descuento atómico de stock para todos los ítems de una orden (todo o nada)
+    @PostMapping("/products/stock/decrement-batch")
+    public ResponseEntity<Void> decrementBatch(@Valid @RequestBody StockItemsRequest req){
+        service.decrementAll(req.items());
+        return ResponseEntity.noContent().build();
+    }
+
+    // Reserva en dos fases: retiene stock con vencimiento hasta confirm/release
+    @PostMapping("/products/stock/reservations")
+    public ResponseEntity<ReservationResponse> reserve(@Valid @RequestBody ReserveStockRequest req){
+        var r = reservations.reserve(req);
+        return ResponseEntity.created(URI.create("/api/v1/products/stock/reservations/" + r.id())).body(r);
+    }
+
+    @GetMapping("/products/stock/reservations")
+    public List<ReservationResponse> findReservations(@RequestParam String reference){
+        return reservations.findByReference(reference);
+    }
+
+    @GetMapping("/products/stock/reservations/{id}")
+    public ReservationResponse getReservation(@PathVariable String id){
+        return reservations.get(id);
+    }
+
+    @PostMapping("/products/stock/reservations/{id}/confirm")
+    public ReservationResponse confirm(@PathVariable String id){
+        return reservations.confirm(id);
+    }
+
+    @PostMapping("/products/stock/reservations/{id}/release")
+    public ReservationResponse release(@PathVariable String id){
+        return reservations.release(id);
+    }
+}
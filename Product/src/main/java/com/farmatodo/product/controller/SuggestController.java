@@ -0,0 +1,25 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.dto.SuggestionDTO;
+import com.farmatodo.product.service.SuggestService;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class SuggestController {
+
+    private final SuggestService service;
+
+    // Autocompletado por prefijo (memoria, sin DB); no se registra en search_logs
+    @GetMapping("/products/suggest")
+    public List<SuggestionDTO> suggest(@RequestParam String prefix,
+                                       @RequestParam(defaultValue = "10") @Min(1) @Max(50) int limit){
+        return service.suggest(prefix, limit);
+    }
+}
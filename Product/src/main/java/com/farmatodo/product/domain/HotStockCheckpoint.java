@@ -0,0 +1,16 @@
+package com.farmatodo.product.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/** Último segmento del journal de stock caliente ya aplicado a products (uno por nodo). */
+@Entity @Table(name="hot_stock_checkpoints")
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class HotStockCheckpoint {
+    @Id @Column(length=64)
+    private String node;
+
+    @Column(nullable=false) private Long lastSegment;
+    @Column(nullable=false) private Instant updatedAt;
+}
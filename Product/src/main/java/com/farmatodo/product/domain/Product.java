@@ -3,12 +3,20 @@ package com.farmatodo.product.domain;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.Instant;
+
 @Entity
-@Table(name="products",
-        uniqueConstraints = @UniqueConstraint(name="uk_products_name", columnNames = "name"))
+@Table(name="products", indexes = @Index(name="idx_products_updated_at", columnList = "updated_at"))
 @Data @Builder @NoArgsConstructor @AllArgsConstructor
 public class Product {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    /** Ids por bloques de products_seq: Hibernate puede agrupar INSERTs y el import masivo reserva los suyos. */
+    public static final int ID_ALLOCATION_SIZE = 50;
+    /** Índice único sobre lower(name) (migración V2): nombres iguales sin importar mayúsculas chocan aquí. */
+    public static final String UK_NAME_LOWER = "uk_products_name_lower";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable=false) private String name;
@@ -17,5 +25,14 @@ public class Product {
 
     @Column(nullable=false) private Integer stock;
 
+    // Control de concurrencia + ETag; los UPDATE de stock por JDBC también la incrementan
+    @Version @Column(nullable=false, columnDefinition="bigint default 0") private Long version;
+
+    // Última modificación (export incremental); los UPDATE de stock por JDBC también la tocan
+    @Column(name="updated_at") private Instant updatedAt;
 
+    @PrePersist @PreUpdate
+    void touch() {
+        updatedAt = Instant.now();
+    }
 }
@@ -0,0 +1,12 @@
+package com.farmatodo.product.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+@Embeddable
+@Data @NoArgsConstructor @AllArgsConstructor
+public class ReservationLine {
+    @Column(nullable=false) private Long productId;
+    @Column(nullable=false) private Integer qty;
+}
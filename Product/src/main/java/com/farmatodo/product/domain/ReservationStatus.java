@@ -0,0 +1,5 @@
+package com.farmatodo.product.domain;
+
+public enum ReservationStatus {
+    HELD, CONFIRMED, RELEASED, EXPIRED
+}
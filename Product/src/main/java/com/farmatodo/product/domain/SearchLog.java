@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 import java.time.Instant;
 
-@Entity @Table(name="search_logs", indexes = @Index(name="idx_search_q", columnList = "q"))
+@Entity @Table(name="search_logs", indexes = @Index(name="idx_search_logs_created_at", columnList = "createdAt"))
 @Data @Builder @NoArgsConstructor @AllArgsConstructor
 public class SearchLog {
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
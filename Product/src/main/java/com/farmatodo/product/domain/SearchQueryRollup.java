@@ -0,0 +1,28 @@
+package com.farmatodo.product.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/**
+ * Búsquedas agregadas por término normalizado y bucket (minuto u hora).
+ * Se escribe por upsert desde SearchTrendService; /products/search/top lee solo de aquí.
+ */
+@Entity
+@Table(name="search_query_rollups",
+        uniqueConstraints = @UniqueConstraint(name="uk_search_rollup", columnNames = {"granularity", "bucket_start", "term"}))
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class SearchQueryRollup {
+
+    public enum Granularity { MINUTE, HOUR }
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING) @Column(nullable=false, length=8)
+    private Granularity granularity;
+
+    @Column(name="bucket_start", nullable=false) private Instant bucketStart;
+    @Column(nullable=false) private String term;
+    @Column(nullable=false) private Long hits;
+}
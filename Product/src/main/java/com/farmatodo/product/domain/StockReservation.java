@@ -0,0 +1,40 @@
+package com.farmatodo.product.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retención temporal de stock: al reservar, las unidades ya salen de products.stock;
+ * confirm las deja fuera definitivamente y release/expiración las devuelve.
+ */
+@Entity
+// uk_reservation_reference_held (reference WHERE status='HELD') es índice parcial: solo en V4__ de Flyway
+@Table(name="stock_reservations",
+        indexes = {
+                @Index(name="idx_reservation_status_expires", columnList = "status,expiresAt"),
+                @Index(name="idx_reservation_reference", columnList = "reference")
+        })
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class StockReservation {
+    @Id @Column(length=36)
+    private String id;
+
+    @Column(length=80) private String reference; // ej: ORD-123
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable=false, length=16)
+    private ReservationStatus status;
+
+    @Column(nullable=false) private Instant expiresAt;
+    @Column(nullable=false) private Instant createdAt;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name="stock_reservation_items", joinColumns = @JoinColumn(name="reservation_id"))
+    @Builder.Default
+    private List<ReservationLine> items = new ArrayList<>();
+
+    @PrePersist void onCreate(){ if (createdAt==null) createdAt = Instant.now(); }
+}
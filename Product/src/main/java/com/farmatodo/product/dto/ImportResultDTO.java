@@ -0,0 +1,11 @@
+package com.farmatodo.product.dto;
+
+import java.util.List;
+
+/**
+ * Resultado del import masivo. upserted cuenta filas que la DB escribió (altas + cambios; las idénticas no cuentan);
+ * errors trae solo los primeros rechazos, rejected es el total.
+ */
+public record ImportResultDTO(long received, long upserted, long rejected, List<RowError> errors, long tookMs) {
+    public record RowError(long line, String message) {}
+}
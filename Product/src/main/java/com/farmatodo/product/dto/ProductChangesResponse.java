@@ -0,0 +1,12 @@
+package com.farmatodo.product.dto;
+
+import java.util.List;
+
+/**
+ * Página del feed de cambios. cursor es el valor a enviar en la próxima consulta (hora de la base en µs);
+ * resync=true indica que el consumidor pudo perder cambios (primer poll, epoch desconocido o demasiados
+ * cambios pendientes) y debe invalidar toda su cache. seq de cada cambio es su instante en µs.
+ */
+public record ProductChangesResponse(String epoch, long cursor, boolean resync, List<Change> changes) {
+    public record Change(long seq, Long productId, String type) {}
+}
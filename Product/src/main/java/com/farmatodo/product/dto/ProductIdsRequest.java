@@ -0,0 +1,12 @@
+package com.farmatodo.product.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/** Payload de consulta por lote: ids de producto (máx. 500 por llamada). */
+public record ProductIdsRequest(
+        @NotEmpty @Size(max = 500) List<@NotNull Long> ids
+) {}
@@ -0,0 +1,6 @@
+package com.farmatodo.product.dto;
+
+/** Línea de baja en el export incremental: {"id":5,"deleted":true}. */
+public record ProductTombstoneDTO(Long id, boolean deleted) {
+    public ProductTombstoneDTO(Long id) { this(id, true); }
+}
@@ -0,0 +1,8 @@
+package com.farmatodo.product.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+public record ReservationResponse(
+        String id, String reference, String status, Instant expiresAt, List<StockItemsRequest.Item> items
+) {}
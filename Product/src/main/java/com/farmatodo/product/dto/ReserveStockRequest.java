@@ -0,0 +1,16 @@
+package com.farmatodo.product.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/** Payload para retener stock de una orden antes de cobrar. ttlSeconds es opcional. */
+public record ReserveStockRequest(
+        @Size(max = 80) String reference,
+        @Min(1) @Max(3600) Integer ttlSeconds,
+        @NotEmpty @Size(max = 500) List<StockItemsRequest.@Valid Item> items
+) {}
@@ -0,0 +1,16 @@
+package com.farmatodo.product.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/** Payload de operaciones de stock por lote (una orden = una llamada). */
+public record StockItemsRequest(
+        @NotEmpty @Size(max = 500) List<@Valid Item> items
+) {
+    public record Item(@NotNull Long productId, @Min(1) int qty) {}
+}
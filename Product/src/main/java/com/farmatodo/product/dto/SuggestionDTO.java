@@ -0,0 +1,3 @@
+package com.farmatodo.product.dto;
+
+public record SuggestionDTO(Long id, String name) {}
@@ -0,0 +1,3 @@
+package com.farmatodo.product.dto;
+
+public record TopSearchDTO(String term, long hits) {}
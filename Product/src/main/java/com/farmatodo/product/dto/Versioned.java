@@ -0,0 +1,4 @@
+package com.farmatodo.product.dto;
+
+/** Representación + ETag fuerte (sin comillas; ResponseEntity.eTag las agrega). */
+public record Versioned<T>(T body, String etag) {}
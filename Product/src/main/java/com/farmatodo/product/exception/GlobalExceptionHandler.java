@@ -4,6 +4,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.*;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.FieldError;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.ErrorResponseException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +27,13 @@ public class GlobalExceptionHandler {
     }
     private String fmt(FieldError fe){ return fe.getField()+": "+(fe.getDefaultMessage()!=null?fe.getDefaultMessage():"invalid"); }
 
+    // p. ej. /products/import sin text/csv ni application/x-ndjson
+    @ExceptionHandler(HttpMediaTypeNotSupportedException.class)
+    public ResponseEntity<ApiError> mediaType(HttpMediaTypeNotSupportedException ex, HttpServletRequest req){
+        return build(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unsupported Media Type", req,
+                "Supported: " + ex.getSupportedMediaTypes());
+    }
+
     @ExceptionHandler(ErrorResponseException.class)
     public ResponseEntity<ApiError> custom(ErrorResponseException ex, HttpServletRequest req){
         HttpStatus st = (HttpStatus) ex.getStatusCode();
@@ -0,0 +1,6 @@
+package com.farmatodo.product.repository;
+
+import com.farmatodo.product.domain.HotStockCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface HotStockCheckpointRepository extends JpaRepository<HotStockCheckpoint, String> {}
@@ -0,0 +1,48 @@
+package com.farmatodo.product.repository;
+
+import com.farmatodo.product.dto.ProductChangesResponse.Change;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Cambios de productos leídos de la base (products.updated_at + product_tombstones), así todas las
+ * instancias de products responden el mismo feed. seq de cada cambio = su instante en µs.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductChangeJdbcRepository {
+
+    private final JdbcTemplate jdbc;
+
+    /** Hasta limit cambios desde since (inclusive), por instante e id; idx_products_updated_at / idx_product_tombstones_deleted_at. */
+    public List<Change> changedSince(Instant since, int limit) {
+        var ts = Timestamp.from(since);
+        return jdbc.query("""
+                SELECT id, updated_at AS at, 'UPDATED' AS type FROM products WHERE updated_at >= ?
+                UNION ALL
+                SELECT product_id, deleted_at, 'DELETED' FROM product_tombstones WHERE deleted_at >= ?
+                ORDER BY at, id
+                LIMIT ?
+                """, (rs, i) -> new Change(micros(rs.getTimestamp(2).toInstant()), rs.getLong(1), rs.getString(3)),
+                ts, ts, limit);
+    }
+
+    /** Hora de la base al empezar la transacción actual (transaction_timestamp). */
+    public Instant now() {
+        return jdbc.queryForObject("SELECT now()", Timestamp.class).toInstant();
+    }
+
+    public static long micros(Instant t) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, t);
+    }
+
+    public static Instant fromMicros(long micros) {
+        return Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+}
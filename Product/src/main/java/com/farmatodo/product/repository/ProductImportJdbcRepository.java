@@ -0,0 +1,86 @@
+package com.farmatodo.product.repository;
+
+import com.farmatodo.product.domain.Product;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Upsert del import masivo: un INSERT ... SELECT FROM unnest(arrays) por batch, una sola sentencia y un
+ * solo viaje, que además devuelve (RETURNING) qué filas se escribieron de verdad.
+ * Los ids salen de products_seq por bloques, igual que el optimizador pooled de Hibernate:
+ * cada nextval v reserva v-ID_ALLOCATION_SIZE+1..v, así no se pisan con los que asigna JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductImportJdbcRepository {
+
+    public record Row(long id, String name, long price, int stock) {}
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO products (id, name, price, stock, version, updated_at)
+            SELECT id, name, price, stock, 0, now() FROM unnest(?::bigint[], ?::varchar[], ?::bigint[], ?::int[])
+                AS r(id, name, price, stock)
+            ON CONFLICT (lower(name)) DO UPDATE SET price = excluded.price, stock = %s,
+                version = products.version + 1, updated_at = now()
+            WHERE products.price <> excluded.price OR products.stock <> excluded.stock
+            RETURNING id
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    /** {@code n} ids nuevos; pide los bloques de la secuencia en una sola consulta. */
+    public long[] allocateIds(int n) {
+        int blocks = (n + Product.ID_ALLOCATION_SIZE - 1) / Product.ID_ALLOCATION_SIZE;
+        List<Long> his = jdbc.queryForList("SELECT nextval('products_seq') FROM generate_series(1, ?)", Long.class, blocks);
+        long[] ids = new long[n];
+        int i = 0;
+        for (long hi : his) {
+            for (long id = hi - Product.ID_ALLOCATION_SIZE + 1; id <= hi && i < n; id++) ids[i++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Inserta o actualiza por nombre sin distinguir mayúsculas (se conserva el nombre ya guardado);
+     * filas sin cambios no se reescriben (no suben versión ni updated_at).
+     * Los nombres deben ser únicos dentro del batch, también ignorando mayúsculas; el id reservado de una fila que termina en UPDATE se descarta.
+     *
+     * @param keepStockIds SKUs calientes: su stock lo lleva el contador en memoria, no se toca la fila
+     * @return ids de las filas insertadas o modificadas (sin las que no cambiaron)
+     */
+    public List<Long> upsertBatch(List<Row> rows, Set<Long> keepStockIds) {
+        if (rows.isEmpty()) return List.of();
+        // los ids calientes son Long: se pueden escribir en el SQL sin riesgo
+        String stockExpr = keepStockIds.isEmpty() ? "excluded.stock"
+                : "CASE WHEN products.id IN (" + keepStockIds.stream().map(String::valueOf).collect(Collectors.joining(","))
+                + ") THEN products.stock ELSE excluded.stock END";
+        return jdbc.query(con -> {
+            var ps = con.prepareStatement(UPSERT_SQL.formatted(stockExpr));
+            ps.setArray(1, con.createArrayOf("bigint", rows.stream().map(Row::id).toArray()));
+            ps.setArray(2, con.createArrayOf("varchar", rows.stream().map(Row::name).toArray()));
+            ps.setArray(3, con.createArrayOf("bigint", rows.stream().map(Row::price).toArray()));
+            ps.setArray(4, con.createArrayOf("int4", rows.stream().map(Row::stock).toArray()));
+            return ps;
+        }, (rs, i) -> rs.getLong(1));
+    }
+
+    /** @param lowerNames nombres en minúsculas; las claves del resultado son lower(name) */
+    public Map<String, Long> findIdsByLowerName(Collection<String> lowerNames) {
+        if (lowerNames.isEmpty()) return Map.of();
+        Map<String, Long> ids = new HashMap<>();
+        new NamedParameterJdbcTemplate(jdbc).query("SELECT id, lower(name) AS lname FROM products WHERE lower(name) IN (:names)",
+                new MapSqlParameterSource("names", lowerNames),
+                rs -> { ids.put(rs.getString("lname"), rs.getLong("id")); });
+        return ids;
+    }
+}
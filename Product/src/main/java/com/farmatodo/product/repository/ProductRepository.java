@@ -1,11 +1,74 @@
 package com.farmatodo.product.repository;
 
 import com.farmatodo.product.domain.Product;
+import com.farmatodo.product.dto.ProductDTO;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.repository.query.Param;
+import java.time.Instant;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
-    List<Product> findByNameContainingIgnoreCaseAndStockGreaterThanEqual(String q, Integer minStock);
-    boolean existsByNameIgnoreCase(String name);
+    /** Página por keyset sobre la PK: proyecta directo al DTO, sin cargar entidades. */
+    @Query("""
+            SELECT new com.farmatodo.product.dto.ProductDTO(p.id, p.name, p.price, p.stock)
+            FROM Product p WHERE p.id > :afterId ORDER BY p.id
+            """)
+    List<ProductDTO> findPageAfter(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Catálogo completo como stream: con fetch size el driver trae filas por tandas (cursor del
+     * servidor) en vez de todo el resultado. Debe consumirse dentro de una transacción y cerrarse.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.farmatodo.product.dto.ProductDTO(p.id, p.name, p.price, p.stock) FROM Product p ORDER BY p.id")
+    Stream<ProductDTO> streamAll();
+
+    /** Igual que {@link #streamAll()} pero solo lo modificado desde {@code since} (sync incremental). */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("""
+            SELECT new com.farmatodo.product.dto.ProductDTO(p.id, p.name, p.price, p.stock)
+            FROM Product p WHERE p.updatedAt >= :since ORDER BY p.id
+            """)
+    Stream<ProductDTO> streamUpdatedSince(@Param("since") Instant since);
+
+    /**
+     * Búsqueda por nombre sobre lower(name) en dos tramos, sin rankear todas las coincidencias:
+     * <ol>
+     *   <li>prefijo ('q%'): en orden de nombre directo del índice text_pattern_ops (USING ~<~),
+     *       leyendo solo offset + limit filas;</li>
+     *   <li>si contains, "contiene" ('%q%', índice de trigramas) excluyendo los prefijos antes del tope:
+     *       las primeras :candidates por id (conjunto estable entre páginas), rankeadas por coincidencia
+     *       más temprana y nombre más corto.</li>
+     * </ol>
+     */
+    @Query(value = """
+            SELECT id, name, price, stock, updated_at, version FROM (
+                (SELECT p.*, 0 AS tier, 1 AS pos FROM products p
+                 WHERE lower(p.name) LIKE :prefix ESCAPE '\\' AND p.stock >= :minStock
+                 ORDER BY lower(p.name) USING ~<~
+                 LIMIT (:limit + :offset))
+                UNION ALL
+                SELECT c.*, 1, strpos(lower(c.name), :term) FROM (
+                    SELECT * FROM products
+                    WHERE :contains AND lower(name) LIKE :pattern ESCAPE '\\'
+                      AND lower(name) NOT LIKE :prefix ESCAPE '\\' AND stock >= :minStock
+                    ORDER BY id
+                    LIMIT :candidates
+                ) c
+            ) m
+            ORDER BY tier, CASE WHEN tier = 0 THEN lower(name) END USING ~<~, pos, length(name), id
+            LIMIT :limit OFFSET :offset
+            """, nativeQuery = true)
+    List<Product> search(@Param("term") String term, @Param("prefix") String prefix, @Param("pattern") String pattern,
+                         @Param("contains") boolean contains, @Param("minStock") int minStock,
+                         @Param("candidates") int candidates, @Param("limit") int limit, @Param("offset") long offset);
 
 }
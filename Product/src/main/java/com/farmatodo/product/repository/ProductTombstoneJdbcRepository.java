@@ -0,0 +1,46 @@
+package com.farmatodo.product.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Bajas de productos (product_tombstones) para que el export incremental también propague los DELETE.
+ * deleted_at usa la hora de la base, igual que updated_at en los UPDATE de stock.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductTombstoneJdbcRepository {
+
+    private final JdbcTemplate jdbc;
+
+    /** Dentro de la transacción del DELETE: si hace rollback, no queda la baja. */
+    public void record(long productId) {
+        jdbc.update("""
+                INSERT INTO product_tombstones (product_id, deleted_at) VALUES (?, now())
+                ON CONFLICT (product_id) DO UPDATE SET deleted_at = EXCLUDED.deleted_at
+                """, productId);
+    }
+
+    /** Ids borrados desde since que no volvieron a crearse (el import puede reinsertar un id). */
+    public List<Long> deletedSince(Instant since) {
+        return jdbc.queryForList("""
+                SELECT t.product_id FROM product_tombstones t
+                WHERE t.deleted_at >= ? AND NOT EXISTS (SELECT 1 FROM products p WHERE p.id = t.product_id)
+                ORDER BY t.product_id
+                """, Long.class, Timestamp.from(since));
+    }
+
+    public int deleteOlderThan(Instant before) {
+        return jdbc.update("DELETE FROM product_tombstones WHERE deleted_at < ?", Timestamp.from(before));
+    }
+
+    /** Hora de la base al empezar la transacción actual (transaction_timestamp). */
+    public Instant now() {
+        return jdbc.queryForObject("SELECT now()", Timestamp.class).toInstant();
+    }
+}
@@ -0,0 +1,29 @@
+package com.farmatodo.product.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/** Inserción de search_logs en batch JDBC (con reWriteBatchedInserts el driver arma un INSERT multi-fila). */
+@Repository
+@RequiredArgsConstructor
+public class SearchLogJdbcRepository {
+
+    public record Entry(String q, Instant createdAt) {}
+
+    private static final String INSERT_SQL = "INSERT INTO search_logs (q, created_at) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbc;
+
+    public void insertBatch(List<Entry> entries) {
+        if (entries.isEmpty()) return;
+        jdbc.batchUpdate(INSERT_SQL, entries, entries.size(), (ps, e) -> {
+            ps.setString(1, e.q());
+            ps.setTimestamp(2, Timestamp.from(e.createdAt()));
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package com.farmatodo.product.repository;
+
+import com.farmatodo.product.domain.SearchQueryRollup.Granularity;
+import com.farmatodo.product.dto.TopSearchDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Escrituras/lecturas de search_query_rollups por SQL directo (upsert acumulativo). */
+@Repository
+@RequiredArgsConstructor
+public class SearchRollupJdbcRepository {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO search_query_rollups (granularity, bucket_start, term, hits) VALUES (?, ?, ?, ?)
+            ON CONFLICT (granularity, bucket_start, term) DO UPDATE SET hits = search_query_rollups.hits + EXCLUDED.hits
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    /** Suma hits al bucket (crea la fila si no existe), todo en un batch. */
+    public void addAll(Granularity granularity, Instant bucketStart, Map<String, Long> hitsByTerm) {
+        if (hitsByTerm.isEmpty()) return;
+        var bucket = Timestamp.from(bucketStart);
+        jdbc.batchUpdate(UPSERT_SQL, new ArrayList<>(hitsByTerm.entrySet()), hitsByTerm.size(), (ps, e) -> {
+            ps.setString(1, granularity.name());
+            ps.setTimestamp(2, bucket);
+            ps.setString(3, e.getKey());
+            ps.setLong(4, e.getValue());
+        });
+    }
+
+    public List<TopSearchDTO> top(Granularity granularity, Instant since, int limit) {
+        return jdbc.query("""
+                SELECT term, sum(hits) AS hits FROM search_query_rollups
+                WHERE granularity = ? AND bucket_start >= ?
+                GROUP BY term ORDER BY hits DESC, term LIMIT ?
+                """, (rs, i) -> new TopSearchDTO(rs.getString(1), rs.getLong(2)),
+                granularity.name(), Timestamp.from(since), limit);
+    }
+
+    public int deleteOlderThan(Granularity granularity, Instant before) {
+        return jdbc.update("DELETE FROM search_query_rollups WHERE granularity = ? AND bucket_start < ?",
+                granularity.name(), Timestamp.from(before));
+    }
+}
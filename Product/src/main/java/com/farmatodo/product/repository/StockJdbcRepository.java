@@ -0,0 +1,82 @@
+package com.farmatodo.product.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Escrituras de stock por SQL directo: UPDATE condicional (sin leer la fila antes),
+ * así dos órdenes concurrentes nunca dejan el stock negativo ni pisan sus cambios.
+ * Cada UPDATE incrementa version (ETag y locking optimista de las escrituras por JPA).
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockJdbcRepository {
+
+    private static final String DECREMENT_SQL =
+            "UPDATE products SET stock = stock - ?, updated_at = now(), version = version + 1 WHERE id = ? AND stock >= ?";
+    private static final String INCREMENT_SQL =
+            "UPDATE products SET stock = stock + ?, updated_at = now(), version = version + 1 WHERE id = ?";
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE products SET stock = stock - ?, updated_at = now(), version = version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbc;
+
+    /**
+     * Aplica todos los descuentos en un solo batch JDBC.
+     * @return ids cuyo UPDATE no afectó filas (stock insuficiente o producto inexistente)
+     */
+    public List<Long> decrementAll(Map<Long, Integer> qtyByProduct) {
+        if (qtyByProduct.isEmpty()) return List.of();
+        var entries = new ArrayList<>(qtyByProduct.entrySet());
+        int[] counts = jdbc.batchUpdate(DECREMENT_SQL, entries, entries.size(), (ps, e) -> {
+            ps.setInt(1, e.getValue());
+            ps.setLong(2, e.getKey());
+            ps.setInt(3, e.getValue());
+        })[0];
+
+        List<Long> failed = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) failed.add(entries.get(i).getKey());
+        }
+        return failed;
+    }
+
+    /** Devuelve unidades retenidas (release/expiración de reservas). */
+    public void incrementAll(Map<Long, Integer> qtyByProduct) {
+        if (qtyByProduct.isEmpty()) return;
+        jdbc.batchUpdate(INCREMENT_SQL, new ArrayList<>(qtyByProduct.entrySet()), qtyByProduct.size(), (ps, e) -> {
+            ps.setInt(1, e.getValue());
+            ps.setLong(2, e.getKey());
+        });
+    }
+
+    /**
+     * Write-behind de SKUs calientes: resta sin condición, la validación ya se hizo en memoria.
+     * delta negativo suma (releases / ajustes).
+     */
+    public void applyDeltas(Map<Long, Long> deltaByProduct) {
+        if (deltaByProduct.isEmpty()) return;
+        jdbc.batchUpdate(APPLY_DELTA_SQL, new ArrayList<>(deltaByProduct.entrySet()), deltaByProduct.size(), (ps, e) -> {
+            ps.setLong(1, e.getValue());
+            ps.setLong(2, e.getKey());
+        });
+    }
+
+    public Map<Long, Integer> findStock(Collection<Long> ids) {
+        if (ids.isEmpty()) return Map.of();
+        var params = new MapSqlParameterSource("ids", ids);
+        Map<Long, Integer> stock = new HashMap<>();
+        new NamedParameterJdbcTemplate(jdbc).query("SELECT id, stock FROM products WHERE id IN (:ids)", params,
+                rs -> { stock.put(rs.getLong("id"), rs.getInt("stock")); });
+        return stock;
+    }
+}
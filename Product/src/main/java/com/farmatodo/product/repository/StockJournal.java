@@ -0,0 +1,167 @@
+package com.farmatodo.product.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Journal append-only de movimientos de stock caliente, en segmentos numerados
+ * (segment-000000000001.log). Cada línea es "productId,delta" donde delta es lo que hay que
+ * restar en products.stock. Se rota un segmento por flush; los segmentos ya aplicados se borran.
+ * <p>
+ * fsync en grupo: {@link #awaitDurable(long)} hace un solo force() para todos los appends
+ * pendientes, así N decrementos concurrentes comparten el costo del disco.
+ */
+public class StockJournal implements AutoCloseable {
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final Object forceLock = new Object();
+
+    private FileChannel channel;
+    private long segment;
+    private long written;          // bytes escritos (lógico, acumulado entre segmentos)
+    private volatile long durable; // hasta dónde ya hubo fsync
+
+    public StockJournal(Path dir, long firstSegment) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        open(firstSegment);
+    }
+
+    /** @return posición lógica a pasar a {@link #awaitDurable(long)} */
+    public synchronized long append(long productId, long delta) {
+        var buf = ByteBuffer.wrap((productId + "," + delta + "\n").getBytes(StandardCharsets.US_ASCII));
+        try {
+            while (buf.hasRemaining()) written += channel.write(buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return written;
+    }
+
+    public void awaitDurable(long position) {
+        if (durable >= position) return;
+        synchronized (forceLock) {
+            if (durable >= position) return;
+            long target;
+            FileChannel ch;
+            synchronized (this) { target = written; ch = channel; }
+            force(ch);
+            durable = target;
+        }
+    }
+
+    /** Cierra el segmento actual (con fsync) y abre el siguiente. @return número del segmento cerrado */
+    public long rotate() {
+        synchronized (forceLock) {
+            synchronized (this) {
+                force(channel);
+                durable = written;
+                close(channel);
+                long closed = segment;
+                open(segment + 1);
+                return closed;
+            }
+        }
+    }
+
+    public synchronized long currentSegment() { return segment; }
+
+    /** Deltas agregados por producto de un segmento; ignora una última línea incompleta (escritura cortada). */
+    public static Map<Long, Long> readSegment(Path dir, long seg) {
+        Map<Long, Long> deltas = new TreeMap<>();
+        try {
+            for (String line : Files.readAllLines(file(dir, seg), StandardCharsets.US_ASCII)) {
+                int comma = line.indexOf(',');
+                if (comma <= 0) continue;
+                try {
+                    deltas.merge(Long.parseLong(line.substring(0, comma)), Long.parseLong(line.substring(comma + 1)), Long::sum);
+                } catch (NumberFormatException ignored) { }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        deltas.values().removeIf(v -> v == 0);
+        return deltas;
+    }
+
+    /** Segmentos en disco, en orden, sin incluir el que está abierto. */
+    public List<Long> closedSegments() {
+        long current = currentSegment();
+        return segmentsIn(dir).stream().filter(s -> s != current).toList();
+    }
+
+    public void delete(long seg) {
+        deleteSegment(dir, seg);
+    }
+
+    public static void deleteSegment(Path dir, long seg) {
+        try {
+            Files.deleteIfExists(file(dir, seg));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static List<Long> segmentsIn(Path dir) {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(PREFIX) && n.endsWith(SUFFIX))
+                    .map(n -> Long.parseLong(n.substring(PREFIX.length(), n.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        force(channel);
+        close(channel);
+    }
+
+    private void open(long seg) {
+        try {
+            channel = FileChannel.open(file(dir, seg), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            segment = seg;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path file(Path dir, long seg) { return dir.resolve(PREFIX + "%012d".formatted(seg) + SUFFIX); }
+
+    private static void force(FileChannel ch) {
+        try {
+            if (ch.isOpen()) ch.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void close(FileChannel ch) {
+        try {
+            ch.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
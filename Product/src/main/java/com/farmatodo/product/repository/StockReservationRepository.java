@@ -0,0 +1,30 @@
+package com.farmatodo.product.repository;
+
+import com.farmatodo.product.domain.ReservationStatus;
+import com.farmatodo.product.domain.StockReservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, String> {
+
+    /** Cambio de estado condicional: solo una de confirm/release/expire gana sobre una misma reserva. */
+    @Modifying(clearAutomatically = true)
+    @Query("update StockReservation r set r.status = :to where r.id = :id and r.status = :from")
+    int transition(@Param("id") String id, @Param("from") ReservationStatus from, @Param("to") ReservationStatus to);
+
+    /** Hold vivo de una referencia: hay a lo sumo uno (uk_reservation_reference_held, índice parcial). */
+    Optional<StockReservation> findByReferenceAndStatus(String reference, ReservationStatus status);
+
+    /** Historial de reservas de una referencia (idx_reservation_reference), la más reciente primero. */
+    List<StockReservation> findByReferenceOrderByCreatedAtDesc(String reference);
+
+    @Query("select r.id from StockReservation r where r.status = :status and r.expiresAt < :now order by r.expiresAt")
+    List<String> findDueIds(@Param("status") ReservationStatus status, @Param("now") Instant now, Pageable page);
+}
@@ -0,0 +1,40 @@
+package com.farmatodo.product.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/** Lecturas en bloque para reconstruir el índice de sugerencias (sin pasar por entidades JPA). */
+@Repository
+@RequiredArgsConstructor
+public class SuggestSourceRepository {
+
+    private final JdbcTemplate jdbc;
+
+    public void forEachVisibleProduct(int minStock, BiConsumer<Long, String> consumer) {
+        jdbc.query("SELECT id, name FROM products WHERE stock >= ?",
+                rs -> { consumer.accept(rs.getLong(1), rs.getString(2)); }, minStock);
+    }
+
+    /**
+     * Términos más buscados desde {@code since} (redondeado a la hora), ya normalizados: suma los buckets
+     * HOUR de search_query_rollups en vez de agrupar las filas crudas de search_logs.
+     */
+    public Map<String, Long> topSearchTerms(Instant since, int limit) {
+        Map<String, Long> terms = new LinkedHashMap<>();
+        jdbc.query("""
+                SELECT term, sum(hits) AS n FROM search_query_rollups
+                WHERE granularity = 'HOUR' AND bucket_start >= ?
+                GROUP BY term ORDER BY n DESC, term LIMIT ?
+                """, rs -> { terms.put(rs.getString(1), rs.getLong(2)); },
+                Timestamp.from(since.truncatedTo(ChronoUnit.HOURS)), limit);
+        return terms;
+    }
+}
@@ -0,0 +1,53 @@
+package com.farmatodo.product.service;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch: frecuencias aproximadas en memoria fija (depth x width contadores).
+ * La estimación nunca subestima; sobreestima como mucho ~ total/width con alta probabilidad.
+ * No es thread-safe.
+ */
+final class CountMinSketch {
+
+    private final long[][] table;
+    private final int width;
+
+    CountMinSketch(int depth, int width) {
+        this.table = new long[depth][width];
+        this.width = width;
+    }
+
+    /** @return estimación del término después de sumar */
+    long add(String key) {
+        long min = Long.MAX_VALUE;
+        int h1 = key.hashCode();
+        int h2 = spread(h1);
+        for (int row = 0; row < table.length; row++) {
+            int idx = Math.floorMod(h1 + row * h2, width);
+            min = Math.min(min, ++table[row][idx]);
+        }
+        return min;
+    }
+
+    long estimate(String key) {
+        long min = Long.MAX_VALUE;
+        int h1 = key.hashCode();
+        int h2 = spread(h1);
+        for (int row = 0; row < table.length; row++) {
+            min = Math.min(min, table[row][Math.floorMod(h1 + row * h2, width)]);
+        }
+        return min;
+    }
+
+    void clear() {
+        for (long[] row : table) Arrays.fill(row, 0L);
+    }
+
+    // Segundo hash (doble hashing): mezcla de bits tipo murmur, forzado impar
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h | 1;
+    }
+}
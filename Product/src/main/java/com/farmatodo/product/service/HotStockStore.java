@@ -0,0 +1,223 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.domain.HotStockCheckpoint;
+import com.farmatodo.product.repository.HotStockCheckpointRepository;
+import com.farmatodo.product.repository.StockJdbcRepository;
+import com.farmatodo.product.repository.StockJournal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Modo "hot SKU": el stock de los productos en {@code product.hot-sku.ids} vive en memoria.
+ * <ul>
+ *   <li>available (AtomicLong): se valida y descuenta con CAS, sin locks ni fila en DB.</li>
+ *   <li>pending (LongAdder): lo vendido desde el último flush, acumulado sin contención.</li>
+ *   <li>Cada movimiento se escribe en el {@link StockJournal} (con fsync en grupo) antes de responder.</li>
+ *   <li>El flush rota el segmento, aplica los deltas en un batch JDBC y guarda el checkpoint
+ *       en la misma transacción; al arrancar se re-aplican los segmentos posteriores al checkpoint.</li>
+ * </ul>
+ * Requiere un único nodo escritor para esos SKUs (el contador no se comparte entre instancias).
+ * Sin ids configurados el modo queda apagado y todo va por UPDATE condicional.
+ */
+@Component
+@RequiredArgsConstructor
+public class HotStockStore {
+
+    private final StockJdbcRepository stockRepo;
+    private final HotStockCheckpointRepository checkpoints;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${product.hot-sku.ids:}")
+    private List<Long> hotIds;
+
+    @Value("${product.hot-sku.journal-dir:./data/stock-journal}")
+    private String journalDir;
+
+    @Value("${product.hot-sku.node-id:local}")
+    private String nodeId;
+
+    /** false: el fsync ocurre solo en cada flush (se pierde a lo sumo un intervalo si cae el proceso). */
+    @Value("${product.hot-sku.fsync:true}")
+    private boolean fsync;
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    /** read: movimientos (concurrentes entre sí); write: flush, para cortar segmento y pending juntos. */
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+    private StockJournal journal;
+
+    private static final class Counter {
+        final AtomicLong available;
+        final LongAdder pending = new LongAdder();
+        Counter(long stock) { available = new AtomicLong(stock); }
+
+        boolean tryTake(int qty) {
+            for (;;) {
+                long cur = available.get();
+                if (cur < qty) return false;
+                if (available.compareAndSet(cur, cur - qty)) return true;
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (hotIds == null || hotIds.isEmpty()) return;
+        var dir = Path.of(journalDir);
+        long checkpoint = checkpoints.findById(nodeId).map(HotStockCheckpoint::getLastSegment).orElse(0L);
+        var onDisk = StockJournal.segmentsIn(dir);
+
+        // Recuperación: lo que quedó en disco sin checkpoint se aplica ahora (una transacción por segmento)
+        long last = checkpoint;
+        for (long seg : onDisk) {
+            if (seg > checkpoint) {
+                var deltas = StockJournal.readSegment(dir, seg);
+                applyAndCheckpoint(deltas, seg);
+                System.out.printf("[HOT-STOCK] replay segment=%d products=%d%n", seg, deltas.size());
+            }
+            last = Math.max(last, seg);
+        }
+        onDisk.forEach(seg -> StockJournal.deleteSegment(dir, seg));
+
+        journal = new StockJournal(dir, last + 1);
+        stockRepo.findStock(new HashSet<>(hotIds)).forEach((id, stock) -> counters.put(id, new Counter(stock)));
+        System.out.printf("[HOT-STOCK] enabled ids=%s%n", counters.keySet());
+    }
+
+    public boolean isHot(Long productId) {
+        return counters.containsKey(productId);
+    }
+
+    /** Ids con contador en memoria (vacío si el modo está apagado). */
+    public Set<Long> hotIds() {
+        return Set.copyOf(counters.keySet());
+    }
+
+    /** Stock vigente en memoria; null si el producto no es caliente. */
+    public Integer available(Long productId) {
+        var c = counters.get(productId);
+        return c == null ? null : (int) c.available.get();
+    }
+
+    /**
+     * Descuenta todos o ninguno (solo ids calientes).
+     * @return ids sin stock suficiente; vacío si se aplicó
+     */
+    public List<Long> tryDecrementAll(Map<Long, Integer> qtyByProduct) {
+        if (qtyByProduct.isEmpty()) return List.of();
+        long pos;
+        segmentLock.readLock().lock();
+        try {
+            List<Long> failed = new ArrayList<>();
+            List<Map.Entry<Long, Integer>> taken = new ArrayList<>();
+            for (var e : qtyByProduct.entrySet()) {
+                if (counters.get(e.getKey()).tryTake(e.getValue())) taken.add(e);
+                else failed.add(e.getKey());
+            }
+            if (!failed.isEmpty()) {
+                taken.forEach(e -> counters.get(e.getKey()).available.addAndGet(e.getValue()));
+                return failed;
+            }
+            pos = record(qtyByProduct, 1);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        if (fsync) journal.awaitDurable(pos);
+        return List.of();
+    }
+
+    /** Devuelve unidades (release, expiración o compensación de un rollback). */
+    public void incrementAll(Map<Long, Integer> qtyByProduct) {
+        if (qtyByProduct.isEmpty()) return;
+        long pos;
+        segmentLock.readLock().lock();
+        try {
+            qtyByProduct.forEach((id, qty) -> counters.get(id).available.addAndGet(qty));
+            pos = record(qtyByProduct, -1);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        if (fsync) journal.awaitDurable(pos);
+    }
+
+    /** Ajuste absoluto (PUT del producto): se journalea como delta contra el valor en memoria. */
+    public void set(Long productId, int stock) {
+        long pos;
+        segmentLock.readLock().lock();
+        try {
+            var c = counters.get(productId);
+            long delta = c.available.getAndSet(stock) - stock;
+            pos = journal.append(productId, delta);
+            c.pending.add(delta);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        if (fsync) journal.awaitDurable(pos);
+    }
+
+    @Scheduled(fixedDelayString = "${product.hot-sku.flush-interval-ms:200}")
+    public void flush() {
+        if (journal == null) return;
+        long closed;
+        Map<Long, Long> deltas = new TreeMap<>();
+        segmentLock.writeLock().lock();
+        try {
+            closed = journal.rotate();
+            counters.forEach((id, c) -> {
+                long d = c.pending.sumThenReset();
+                if (d != 0) deltas.put(id, d);
+            });
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+
+        try {
+            if (!deltas.isEmpty()) applyAndCheckpoint(deltas, closed);
+        } catch (RuntimeException e) {
+            // Se reintenta en el próximo flush; el segmento queda en disco por si el proceso cae antes
+            deltas.forEach((id, d) -> counters.get(id).pending.add(d));
+            System.out.printf("[HOT-STOCK] flush failed segment=%d: %s%n", closed, e.getMessage());
+            return;
+        }
+        journal.closedSegments().stream().filter(s -> s <= closed).forEach(journal::delete);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (journal == null) return;
+        flush();
+        journal.close();
+    }
+
+    private long record(Map<Long, Integer> qtyByProduct, int sign) {
+        long pos = 0;
+        for (var e : qtyByProduct.entrySet()) {
+            long delta = (long) sign * e.getValue();
+            pos = journal.append(e.getKey(), delta);
+            counters.get(e.getKey()).pending.add(delta);
+        }
+        return pos;
+    }
+
+    private void applyAndCheckpoint(Map<Long, Long> deltas, long segment) {
+        new TransactionTemplate(txManager).executeWithoutResult(tx -> {
+            stockRepo.applyDeltas(deltas);
+            checkpoints.save(HotStockCheckpoint.builder()
+                    .node(nodeId).lastSegment(segment).updatedAt(Instant.now()).build());
+        });
+    }
+}
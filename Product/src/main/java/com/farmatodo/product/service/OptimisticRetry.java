@@ -0,0 +1,67 @@
+package com.farmatodo.product.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.ErrorResponseException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Reintento acotado para escrituras con @Version: cada intento corre en su propia transacción
+ * (vuelve a leer la fila) y entre intentos hay un backoff corto con jitter para que los
+ * competidores no vuelvan a chocar. Agotados los intentos → 409.
+ * <p>
+ * Si ya hay una transacción abierta no se reintenta (el conflicto saltaría recién en el commit de afuera).
+ * Métrica product.optimistic.conflicts{op, outcome=retried|exhausted}.
+ */
+@Component
+@RequiredArgsConstructor
+public class OptimisticRetry {
+
+    private final PlatformTransactionManager txManager;
+    private final MeterRegistry registry;
+
+    @Value("${product.optimistic-retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${product.optimistic-retry.backoff-ms:20}")
+    private long backoffMs;
+
+    public <T> T run(String op, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) return work.get();
+        var tx = new TransactionTemplate(txManager);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tx.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    registry.counter("product.optimistic.conflicts", "op", op, "outcome", "exhausted").increment();
+                    var ex = new ErrorResponseException(HttpStatus.CONFLICT);
+                    ex.setDetail("Concurrent modification, please retry");
+                    throw ex;
+                }
+                registry.counter("product.optimistic.conflicts", "op", op, "outcome", "retried").increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(backoffMs * attempt + ThreadLocalRandom.current().nextLong(backoffMs + 1));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            var ex = new ErrorResponseException(HttpStatus.SERVICE_UNAVAILABLE);
+            ex.setDetail("Interrupted while retrying");
+            throw ex;
+        }
+    }
+}
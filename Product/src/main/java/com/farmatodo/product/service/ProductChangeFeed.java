@@ -0,0 +1,48 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.ProductChangesResponse;
+import com.farmatodo.product.repository.ProductChangeJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static com.farmatodo.product.repository.ProductChangeJdbcRepository.fromMicros;
+import static com.farmatodo.product.repository.ProductChangeJdbcRepository.micros;
+
+/**
+ * Feed de cambios de productos para que Orders/Cart invaliden su cache, leído de la base
+ * (updated_at de products y bajas de product_tombstones): cualquier instancia detrás del balanceador
+ * responde lo mismo y el cursor sobrevive a reinicios. El cursor es la hora de la base (µs) del
+ * snapshot menos overlap-ms, así una escritura estampada antes pero confirmada después no se pierde;
+ * a cambio un cambio puede llegar más de una vez (invalidar dos veces es inocuo).
+ * Un epoch desconocido (primer poll, formato anterior) o más de limit cambios pendientes se
+ * responden con resync.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductChangeFeed {
+
+    /** Fijo: el cursor no depende de la instancia ni del arranque. */
+    static final String EPOCH = "db-v1";
+
+    private final ProductChangeJdbcRepository changes;
+
+    /** Mayor que la transacción de escritura más larga más el desfase entre reloj de la app y de la base. */
+    @Value("${product.changes.overlap-ms:5000}")
+    private long overlapMs;
+
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public ProductChangesResponse since(String clientEpoch, long cursor, int limit) {
+        // Primera sentencia: fija el snapshot del que se leen los cambios
+        long next = micros(changes.now().minusMillis(overlapMs));
+        if (!EPOCH.equals(clientEpoch) || cursor > next) return new ProductChangesResponse(EPOCH, next, true, List.of());
+
+        var page = changes.changedSince(fromMicros(cursor), limit + 1);
+        if (page.size() > limit) return new ProductChangesResponse(EPOCH, next, true, List.of());
+        return new ProductChangesResponse(EPOCH, next, false, page);
+    }
+}
@@ -0,0 +1,106 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.ProductDTO;
+import com.farmatodo.product.dto.ProductTombstoneDTO;
+import com.farmatodo.product.repository.ProductRepository;
+import com.farmatodo.product.repository.ProductTombstoneJdbcRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.ErrorResponseException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.function.Consumer;
+
+/**
+ * Export del catálogo en NDJSON (un producto por línea) para jobs de pricing/almacén.
+ * Lee con cursor del servidor y escribe fila a fila: la memoria no depende del tamaño del catálogo.
+ * <p>
+ * El cursor del próximo incremental sale de la base dentro del mismo snapshot (REPEATABLE READ) menos
+ * un solapamiento: updated_at se estampa al empezar cada transacción de escritura (o con el reloj de la
+ * app en los PUT), así que una fila estampada antes del cursor puede confirmarse después del snapshot.
+ * Con el solapamiento esa fila sale en el próximo export; los repetidos se aplican por id.
+ * Los incrementales terminan con una línea {"id":N,"deleted":true} por cada producto borrado.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductExportService {
+
+    private static final int FLUSH_EVERY = 500;
+
+    private final ProductRepository repo;
+    private final ProductTombstoneJdbcRepository tombstones;
+    private final HotStockStore hotStock;
+    private final ObjectMapper mapper;
+
+    /** Mayor que la transacción de escritura más larga más el desfase entre reloj de la app y de la base. */
+    @Value("${product.export.cursor-overlap-ms:60000}")
+    private long cursorOverlapMs;
+
+    @Value("${product.export.tombstone-retention-days:30}")
+    private long tombstoneRetentionDays;
+
+    /** Un incremental más viejo que las bajas retenidas podría perder DELETE: se pide un export completo. */
+    public void requireIncrementalWindow(Instant updatedSince) {
+        if (updatedSince != null && updatedSince.isBefore(Instant.now().minus(tombstoneRetentionDays, ChronoUnit.DAYS))) {
+            var ex = new ErrorResponseException(HttpStatus.GONE);
+            ex.setDetail("updatedSince is older than the " + tombstoneRetentionDays + " day(s) of retained deletions; run a full export");
+            throw ex;
+        }
+    }
+
+    /**
+     * @param updatedSince null = catálogo completo
+     * @param onCursor recibe el updatedSince del próximo incremental, antes de escribir la primera línea
+     * @return productos escritos (sin contar las bajas)
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public long exportNdjson(Instant updatedSince, OutputStream out, Consumer<Instant> onCursor) {
+        // Primera sentencia de la transacción: fija el snapshot del que se lee todo lo demás
+        onCursor.accept(tombstones.now().minusMillis(cursorOverlapMs));
+
+        ObjectWriter writer = mapper.writerFor(ProductDTO.class);
+        long count = 0;
+        try (var rows = updatedSince == null ? repo.streamAll() : repo.streamUpdatedSince(updatedSince)) {
+            for (var it = rows.iterator(); it.hasNext(); ) {
+                var d = it.next();
+                if (hotStock.isHot(d.id())) d = new ProductDTO(d.id(), d.name(), d.price(), hotStock.available(d.id()));
+                out.write(writer.writeValueAsBytes(d));
+                out.write('\n');
+                if (++count % FLUSH_EVERY == 0) out.flush();
+            }
+            if (updatedSince != null) {
+                ObjectWriter deleted = mapper.writerFor(ProductTombstoneDTO.class);
+                for (Long id : tombstones.deletedSince(updatedSince)) {
+                    out.write(deleted.writeValueAsBytes(new ProductTombstoneDTO(id)));
+                    out.write('\n');
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Cliente desconectado: se corta el stream y se libera el cursor
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+
+    @Scheduled(fixedDelayString = "${product.export.tombstone-purge-delay-ms:3600000}")
+    public void purgeTombstones() {
+        try {
+            int n = tombstones.deleteOlderThan(Instant.now().minus(tombstoneRetentionDays, ChronoUnit.DAYS));
+            if (n > 0) System.out.printf("[EXPORT] bajas vencidas borradas=%d%n", n);
+        } catch (Exception e) {
+            System.out.printf("[EXPORT] purge failed: %s%n", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.CreateProductRequest;
+import com.farmatodo.product.dto.ImportResultDTO;
+import com.farmatodo.product.repository.ProductImportJdbcRepository;
+import com.farmatodo.product.repository.ProductImportJdbcRepository.Row;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Carga masiva del catálogo (CSV con encabezado name,price,stock o NDJSON con CreateProductRequest).
+ * <p>
+ * Se parsea a medida que llega el body y se hace upsert por nombre en batches de batch-size filas,
+ * cada uno en su propia transacción: la memoria no depende del tamaño del archivo y un import
+ * interrumpido se puede repetir (las filas sin cambios no se reescriben). Las filas inválidas se
+ * rechazan una a una sin frenar el resto; un CSV mal formado corta el import en esa línea.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final CsvMapper CSV = new CsvMapper();
+
+    private final ProductImportJdbcRepository importRepo;
+    private final HotStockStore hotStock;
+    private final ApplicationEventPublisher events;
+    private final Validator validator;
+    private final ObjectMapper mapper;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${product.import.batch-size:1000}")
+    private int batchSize;
+
+    public ImportResultDTO importProducts(Format format, InputStream in) {
+        long t0 = System.nanoTime();
+        var run = new Run();
+        try {
+            if (format == Format.CSV) readCsv(in, run);
+            else readNdjson(in, run);
+        } catch (IOException e) {
+            // Cliente desconectado a mitad del body: lo ya confirmado queda, el resto no se procesa
+            throw new UncheckedIOException(e);
+        }
+        run.flush();
+        long tookMs = (System.nanoTime() - t0) / 1_000_000;
+        System.out.printf("[IMPORT] %s received=%d upserted=%d rejected=%d in %d ms%n",
+                format, run.received, run.upserted, run.rejected, tookMs);
+        return new ImportResultDTO(run.received, run.upserted, run.rejected, run.errors, tookMs);
+    }
+
+    private void readCsv(InputStream in, Run run) throws IOException {
+        MappingIterator<Map<String, String>> rows = CSV.readerFor(Map.class)
+                .with(CsvSchema.emptySchema().withHeader())
+                .readValues(in);
+        long line = 1; // encabezado
+        while (true) {
+            line++;
+            Map<String, String> row;
+            try {
+                if (!rows.hasNextValue()) break;
+                row = rows.nextValue();
+            } catch (JsonProcessingException e) {
+                run.reject(line, "Malformed CSV, import stopped: " + e.getOriginalMessage());
+                break;
+            }
+            CreateProductRequest req;
+            try {
+                req = mapper.convertValue(row, CreateProductRequest.class);
+            } catch (IllegalArgumentException e) {
+                run.reject(line, "Invalid row: " + e.getMessage());
+                continue;
+            }
+            run.accept(line, req);
+        }
+    }
+
+    private void readNdjson(InputStream in, Run run) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        var json = mapper.readerFor(CreateProductRequest.class);
+        long line = 0;
+        for (String s; (s = reader.readLine()) != null; ) {
+            line++;
+            if (s.isBlank()) continue;
+            try {
+                run.accept(line, json.readValue(s));
+            } catch (JsonProcessingException e) {
+                run.reject(line, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    /** Estado de un import: batch pendiente por lower(name) (sin repetidos, gana la última fila) y contadores. */
+    private final class Run {
+        final Map<String, CreateProductRequest> pending = new LinkedHashMap<>();
+        final List<ImportResultDTO.RowError> errors = new ArrayList<>();
+        long received, upserted, rejected;
+
+        void accept(long line, CreateProductRequest req) {
+            received++;
+            var violations = validator.validate(req);
+            if (!violations.isEmpty()) {
+                rejected++;
+                addError(line, violations.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+                return;
+            }
+            pending.put(req.name().toLowerCase(Locale.ROOT), req);
+            if (pending.size() >= batchSize) flush();
+        }
+
+        void reject(long line, String message) {
+            received++;
+            rejected++;
+            addError(line, message);
+        }
+
+        private void addError(long line, String message) {
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new ImportResultDTO.RowError(line, message));
+        }
+
+        void flush() {
+            if (pending.isEmpty()) return;
+            long[] ids = importRepo.allocateIds(pending.size());
+            List<Row> rows = new ArrayList<>(pending.size());
+            int i = 0;
+            for (var r : pending.values()) rows.add(new Row(ids[i++], r.name(), r.price(), r.stock()));
+
+            var hot = hotStock.hotIds();
+            Map<Long, Integer> hotStockById = new HashMap<>();
+            List<Long> changed = new TransactionTemplate(txManager).execute(tx -> {
+                var written = importRepo.upsertBatch(rows, hot);
+                if (!hot.isEmpty()) {
+                    importRepo.findIdsByLowerName(pending.keySet()).forEach((name, id) -> {
+                        var r = pending.get(name);
+                        if (r != null && hot.contains(id)) hotStockById.put(id, r.stock());
+                    });
+                }
+                // solo lo que se escribió: las filas sin cambios no invalidan la cache de búsqueda
+                if (!written.isEmpty()) events.publishEvent(new ProductsChangedEvent(written, ProductsChangedEvent.UPDATED));
+                return written;
+            });
+            // SKU caliente: el stock importado va al contador en memoria (como en PUT), solo si hubo commit
+            hotStockById.forEach(hotStock::set);
+            upserted += changed.size();
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.ProductDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache de resultados de búsqueda por término normalizado + piso de stock + página.
+ * <ul>
+ *   <li>Resultados vacíos se cachean también, con TTL más corto (negative caching).</li>
+ *   <li>Cargas concurrentes de una misma clave ejecutan un solo SELECT.</li>
+ *   <li>Tras el commit: alta/edición/baja limpian todo (el nombre define qué coincide);
+ *       un cambio de stock solo saca las páginas que contienen esos productos, que se ubican por un
+ *       índice inverso productId → claves (sin recorrer la cache en el hilo del commit).</li>
+ * </ul>
+ * Un producto repuesto que vuelve a ser visible aparece en páginas ya cacheadas al vencer el TTL.
+ * Métricas: cache.gets{cache=products.search,result=hit|miss} y products.search.cache.hit.ratio.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductSearchCache {
+
+    record Key(String term, int minStock, int page, int size) {}
+
+    private final MeterRegistry registry;
+
+    @Value("${product.search-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${product.search-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${product.search-cache.negative-ttl-seconds:10}")
+    private long negativeTtlSeconds;
+
+    private Cache<Key, List<ProductDTO>> cache;
+
+    /** Páginas cacheadas que contienen cada producto; se mantiene dentro del cómputo de cada clave. */
+    private final ConcurrentHashMap<Long, Set<Key>> keysByProduct = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        var ttl = Duration.ofSeconds(ttlSeconds);
+        var negativeTtl = Duration.ofSeconds(negativeTtlSeconds);
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.<Key, List<ProductDTO>>creating((k, v) -> v.isEmpty() ? negativeTtl : ttl))
+                .evictionListener((Key k, List<ProductDTO> v, RemovalCause cause) -> { if (v != null) unindex(k, v); })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "products.search");
+        Gauge.builder("products.search.cache.hit.ratio", cache, c -> c.stats().hitRate()).register(registry);
+    }
+
+    public List<ProductDTO> get(String term, int minStock, int page, int size, Supplier<List<ProductDTO>> loader) {
+        return cache.get(new Key(term, minStock, page, size), k -> {
+            var result = loader.get();
+            for (var p : result) keysByProduct.computeIfAbsent(p.id(), id -> ConcurrentHashMap.newKeySet()).add(k);
+            return result;
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void on(ProductsChangedEvent event) {
+        if (!ProductsChangedEvent.STOCK.equals(event.type())) {
+            keysByProduct.clear(); // antes que la cache: una carga en el medio queda indexada de más, nunca de menos
+            cache.invalidateAll();
+            return;
+        }
+        var keys = new HashSet<Key>();
+        for (Long id : event.productIds()) {
+            var pages = keysByProduct.get(id);
+            if (pages != null) keys.addAll(pages);
+        }
+        // computeIfPresent: la baja y su des-indexado son atómicos respecto de una recarga de la misma clave
+        for (Key k : keys) cache.asMap().computeIfPresent(k, (key, page) -> { unindex(key, page); return null; });
+    }
+
+    private void unindex(Key k, List<ProductDTO> page) {
+        for (var p : page) {
+            keysByProduct.computeIfPresent(p.id(), (id, pages) -> {
+                pages.remove(k);
+                return pages.isEmpty() ? null : pages;
+            });
+        }
+    }
+
+    int indexedProducts() {
+        return keysByProduct.size();
+    }
+}
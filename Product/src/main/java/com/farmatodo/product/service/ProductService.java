@@ -2,38 +2,61 @@ package com.farmatodo.product.service;
 
 import com.farmatodo.product.domain.Product;
 import com.farmatodo.product.dto.CreateProductRequest;
+import com.farmatodo.product.dto.PageResponse;
 import com.farmatodo.product.dto.UpdateProductRequest;
+import com.farmatodo.product.dto.Versioned;
 import com.farmatodo.product.dto.ProductDTO;
 import com.farmatodo.product.repository.ProductRepository;
+import com.farmatodo.product.repository.ProductTombstoneJdbcRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.ErrorResponseException;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
 
     private final ProductRepository repo;
+    private final HotStockStore hotStock;
+    private final ApplicationEventPublisher events;
+    private final ProductSearchCache searchCache;
+    private final OptimisticRetry retry;
+    private final StockService stock;
+    private final ProductTombstoneJdbcRepository tombstones;
+
+    private static final int MIN_CONTAINS_LENGTH = 3;
 
     @Value("${product.min-stock-visible:1}")
     private int minStockVisible;
 
+    /** Tope de coincidencias "contiene" (no prefijo) que se rankean por búsqueda. */
+    @Value("${product.search.max-candidates:1000}")
+    private int maxCandidates;
+
     /** -------- CREATE -------- */
     @Transactional
     public ProductDTO create(CreateProductRequest req) {
-        //  validar duplicado por nombre
-        if (repo.existsByNameIgnoreCase(req.name())) throw conflict("Product name already exists");
-
-        Product p = repo.save(Product.builder()
+        // Sin pre-chequeo de duplicado: el índice único sobre lower(name) lo resuelve en el mismo INSERT
+        Product p = saveUniqueName(Product.builder()
                 .name(req.name())
                 .price(req.price())
                 .stock(req.stock())
                 .build());
+        events.publishEvent(new ProductsChangedEvent(List.of(p.getId()), ProductsChangedEvent.CREATED));
         return map(p);
     }
 
@@ -44,19 +67,47 @@ public class ProductService {
         return map(p);
     }
 
+    /** Igual que getById, con ETag: versión de la fila y, si es SKU caliente, el stock en memoria. */
+    @Transactional(readOnly = true)
+    public Versioned<ProductDTO> getVersioned(Long id){
+        var p = repo.findById(id).orElseThrow(() -> notFound("Product not found"));
+        var dto = map(p);
+        String etag = hotStock.isHot(id) ? p.getVersion() + "-" + dto.stock() : String.valueOf(p.getVersion());
+        return new Versioned<>(dto, etag);
+    }
+
+    /** Lote por ids en una sola consulta; los ids inexistentes simplemente no aparecen. */
+    @Transactional(readOnly = true)
+    public List<ProductDTO> getByIds(Collection<Long> ids){
+        return repo.findAllById(ids).stream().map(this::map).toList();
+    }
+
+    /** Listado por keyset (id ascendente): se pide un registro extra para saber si hay otra página. */
     @Transactional(readOnly = true)
-    public List<ProductDTO> list(){
-        return repo.findAll().stream().map(this::map).toList();
+    public PageResponse<ProductDTO> list(String cursor, int size){
+        var rows = repo.findPageAfter(PageCursor.decode(cursor), Limit.of(size + 1));
+        boolean more = rows.size() > size;
+        var items = (more ? rows.subList(0, size) : rows).stream().map(this::withHotStock).toList();
+        return new PageResponse<>(items, more ? PageCursor.encode(items.get(size - 1).id()) : null);
     }
 
     /** -------- UPDATE (PUT) -------- */
-    @Transactional
+    // Sin @Transactional: cada intento de OptimisticRetry abre la suya (conflicto de @Version → se relee y reintenta)
     public ProductDTO update(Long id, UpdateProductRequest req) {
-        var p = repo.findById(id).orElseThrow(() -> notFound("Product not found"));
-        p.setName(req.name());
-        p.setPrice(req.price());
-        p.setStock(req.stock());
-        return map(repo.save(p));
+        return retry.run("update", () -> {
+            var p = repo.findById(id).orElseThrow(() -> notFound("Product not found"));
+            p.setName(req.name());
+            p.setPrice(req.price());
+            // SKU caliente: el stock lo lleva el contador en memoria y llega a la fila por write-behind.
+            // El contador no participa del rollback: se ajusta recién cuando la fila confirma (409, reintento agotado)
+            boolean hot = hotStock.isHot(id);
+            if (!hot) p.setStock(req.stock());
+            var saved = saveUniqueName(p);
+            if (hot) afterCommit(() -> hotStock.set(id, req.stock()));
+            events.publishEvent(new ProductsChangedEvent(List.of(id), ProductsChangedEvent.UPDATED));
+            var dto = map(saved);
+            return hot ? new ProductDTO(dto.id(), dto.name(), dto.price(), req.stock()) : dto;
+        });
     }
 
     /** -------- DELETE -------- */
@@ -64,28 +115,69 @@ public class ProductService {
     public void delete(Long id) {
         if (!repo.existsById(id)) throw notFound("Product not found");
         repo.deleteById(id);
+        tombstones.record(id); // el export incremental propaga la baja
+        events.publishEvent(new ProductsChangedEvent(List.of(id), ProductsChangedEvent.DELETED));
     }
 
+    /**
+     * UPDATE condicional (o contador en memoria si es SKU caliente) en vez de leer y guardar la entidad:
+     * checkouts concurrentes no chocan entre sí, y como sube la versión, un PUT en paralelo reintenta.
+     */
     @Transactional
     public void decrement(Long id, int qty){
-        var p = repo.findById(id).orElseThrow(() -> notFound("Product not found"));
         if (qty <= 0) throw badRequest("qty must be > 0");
-        if (p.getStock() < qty) throw conflict("Insufficient stock");
-        p.setStock(p.getStock() - qty);
-        repo.save(p);
+        if (!stock.tryDecrement(Map.of(id, qty)).isEmpty()) {
+            throw repo.existsById(id) ? conflict("Insufficient stock") : notFound("Product not found");
+        }
     }
 
+    /**
+     * Búsqueda paginada por nombre: primero los que empiezan con el término (en orden de nombre, del
+     * índice de prefijos) y, con 3+ caracteres, después los que lo contienen (índice de trigramas),
+     * rankeados solo entre los primeros {@code search.max-candidates}. Con 1-2 caracteres solo prefijo.
+     * Los términos repetidos se sirven desde {@link ProductSearchCache}.
+     */
     @Transactional(readOnly = true)
-    public List<ProductDTO> search(String q){
-        String s = (q==null? "" : q);
-        return repo.findByNameContainingIgnoreCaseAndStockGreaterThanEqual(s, minStockVisible)
-                .stream().map(this::map).toList();
+    public List<ProductDTO> search(String q, int page, int size){
+        String term = (q==null? "" : q.trim().toLowerCase(Locale.ROOT));
+        String escaped = term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        boolean contains = term.length() >= MIN_CONTAINS_LENGTH;
+        return searchCache.get(term, minStockVisible, page, size, () ->
+                repo.search(term, escaped + "%", "%" + escaped + "%", contains, minStockVisible, maxCandidates,
+                        size, (long) page * size).stream().map(this::map).toList());
     }
 
     /** -------- helpers -------- */
-    private ProductDTO map(Product p){ return new ProductDTO(p.getId(), p.getName(), p.getPrice(), p.getStock()); }
+    private static void afterCommit(Runnable action){
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) { action.run(); return; }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCommit() { action.run(); }
+        });
+    }
+
+    private ProductDTO withHotStock(ProductDTO d){
+        return hotStock.isHot(d.id()) ? new ProductDTO(d.id(), d.name(), d.price(), hotStock.available(d.id())) : d;
+    }
+
+    private ProductDTO map(Product p){
+        int stock = hotStock.isHot(p.getId()) ? hotStock.available(p.getId()) : p.getStock();
+        return new ProductDTO(p.getId(), p.getName(), p.getPrice(), stock);
+    }
 
     private ErrorResponseException notFound(String m){ var ex=new ErrorResponseException(HttpStatus.NOT_FOUND); ex.setDetail(m); return ex; }
+    /** Flush inmediato para que el choque con {@link Product#UK_NAME_LOWER} se vea aquí (409) y no en el commit. */
+    private Product saveUniqueName(Product p) {
+        try {
+            return repo.saveAndFlush(p);
+        } catch (DataIntegrityViolationException e) {
+            if (e.getCause() instanceof ConstraintViolationException cv
+                    && Product.UK_NAME_LOWER.equalsIgnoreCase(cv.getConstraintName())) {
+                throw conflict("Product name already exists");
+            }
+            throw e;
+        }
+    }
+
     private ErrorResponseException badRequest(String m){ var ex=new ErrorResponseException(HttpStatus.BAD_REQUEST); ex.setDetail(m); return ex; }
     private ErrorResponseException conflict(String m){ var ex=new ErrorResponseException(HttpStatus.CONFLICT); ex.setDetail(m); return ex; }
 }
@@ -0,0 +1,15 @@
+package com.farmatodo.product.service;
+
+import java.util.Collection;
+
+/**
+ * Se publica dentro de la transacción; {@link ProductSearchCache} lo recibe al hacer commit y descarta
+ * las páginas afectadas (STOCK: solo las que contienen esos productos; el resto: toda la cache).
+ * El feed de cambios no lo usa: lee updated_at y las bajas de la base.
+ */
+public record ProductsChangedEvent(Collection<Long> productIds, String type) {
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String DELETED = "DELETED";
+    public static final String STOCK = "STOCK";
+}
@@ -0,0 +1,162 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.domain.ReservationLine;
+import com.farmatodo.product.domain.ReservationStatus;
+import com.farmatodo.product.domain.StockReservation;
+import com.farmatodo.product.dto.ReservationResponse;
+import com.farmatodo.product.dto.ReserveStockRequest;
+import com.farmatodo.product.dto.StockItemsRequest;
+import com.farmatodo.product.repository.StockReservationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.ErrorResponseException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Reserva en dos fases: reserve descuenta el stock y deja un hold con vencimiento;
+ * confirm lo vuelve definitivo y release/expire lo devuelve. Cada paso es un cambio
+ * de estado condicional sobre HELD, así confirm, release y el sweeper nunca aplican dos veces.
+ * reserve es idempotente por reference: mientras haya un hold vivo se devuelve ese.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReservationService {
+
+    private final StockReservationRepository reservations;
+    private final StockService stock;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${product.reservation.ttl-seconds:300}")
+    private int defaultTtlSeconds;
+
+    // Sin @Transactional: si otro reserve con la misma referencia gana el índice único, esta
+    // transacción se deshace (stock incluido) y se responde con el hold ganador en una nueva
+    public ReservationResponse reserve(ReserveStockRequest req) {
+        Map<Long, Integer> qtyByProduct = stock.merge(req.items());
+        var tx = new TransactionTemplate(txManager);
+        try {
+            return tx.execute(s -> heldOrReserve(req, qtyByProduct));
+        } catch (DataIntegrityViolationException e) {
+            if (req.reference() == null) throw e;
+            return tx.execute(s -> reservations.findByReferenceAndStatus(req.reference(), ReservationStatus.HELD)
+                    .map(r -> replay(r, qtyByProduct))
+                    .orElseThrow(() -> e));
+        }
+    }
+
+    private ReservationResponse heldOrReserve(ReserveStockRequest req, Map<Long, Integer> qtyByProduct) {
+        if (req.reference() != null) {
+            var held = reservations.findByReferenceAndStatus(req.reference(), ReservationStatus.HELD).orElse(null);
+            if (held != null) {
+                if (held.getExpiresAt().isAfter(Instant.now())) return replay(held, qtyByProduct);
+                // Vencido pero el sweeper todavía no pasó: devuelve su stock y se reserva de nuevo
+                expire(held.getId());
+            }
+        }
+
+        var failed = stock.tryDecrement(qtyByProduct);
+        if (!failed.isEmpty()) throw conflict("Insufficient stock or product not found: " + failed);
+
+        int ttl = req.ttlSeconds() != null ? req.ttlSeconds() : defaultTtlSeconds;
+        var r = StockReservation.builder()
+                .id(UUID.randomUUID().toString())
+                .reference(req.reference())
+                .status(ReservationStatus.HELD)
+                .expiresAt(Instant.now().plusSeconds(ttl))
+                .items(qtyByProduct.entrySet().stream()
+                        .map(e -> new ReservationLine(e.getKey(), e.getValue()))
+                        .collect(Collectors.toCollection(ArrayList::new)))
+                .build();
+        return toResponse(reservations.saveAndFlush(r));
+    }
+
+    /** Reintento de un reserve ya aplicado; la misma referencia con otros ítems es un error del cliente. */
+    private ReservationResponse replay(StockReservation held, Map<Long, Integer> qtyByProduct) {
+        if (!toMap(held.getItems()).equals(qtyByProduct))
+            throw conflict("Reference already holds a reservation with different items");
+        return toResponse(held);
+    }
+
+    /** Idempotente: confirmar una reserva ya confirmada devuelve el mismo resultado. */
+    @Transactional
+    public ReservationResponse confirm(String id) {
+        var r = find(id);
+        if (r.getStatus() == ReservationStatus.HELD && r.getExpiresAt().isAfter(Instant.now())
+                && reservations.transition(id, ReservationStatus.HELD, ReservationStatus.CONFIRMED) == 1) {
+            return toResponse(find(id));
+        }
+        r = find(id);
+        if (r.getStatus() == ReservationStatus.CONFIRMED) return toResponse(r);
+        throw conflict("Reservation is " + (r.getStatus() == ReservationStatus.HELD ? "EXPIRED" : r.getStatus()));
+    }
+
+    /** Idempotente: liberar una reserva ya liberada o vencida no vuelve a sumar stock. */
+    @Transactional
+    public ReservationResponse release(String id) {
+        var r = find(id);
+        if (reservations.transition(id, ReservationStatus.HELD, ReservationStatus.RELEASED) == 1) {
+            stock.increment(toMap(r.getItems()));
+            return toResponse(find(id));
+        }
+        r = find(id);
+        if (r.getStatus() == ReservationStatus.CONFIRMED) throw conflict("Reservation already confirmed");
+        return toResponse(r);
+    }
+
+    /** Vence un hold individual; lo invoca el sweeper, una transacción por reserva. */
+    @Transactional
+    public boolean expire(String id) {
+        var r = reservations.findById(id).orElse(null);
+        if (r == null || reservations.transition(id, ReservationStatus.HELD, ReservationStatus.EXPIRED) == 0) return false;
+        stock.increment(toMap(r.getItems()));
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    public List<String> findDue(int limit) {
+        return reservations.findDueIds(ReservationStatus.HELD, Instant.now(), PageRequest.of(0, limit));
+    }
+
+    @Transactional(readOnly = true)
+    public ReservationResponse get(String id) {
+        return toResponse(find(id));
+    }
+
+    /** Reservas de una referencia (ORD-<id>) en cualquier estado: así el llamador sabe si ya se confirmó. */
+    @Transactional(readOnly = true)
+    public List<ReservationResponse> findByReference(String reference) {
+        return reservations.findByReferenceOrderByCreatedAtDesc(reference).stream().map(this::toResponse).toList();
+    }
+
+    private StockReservation find(String id) {
+        return reservations.findById(id).orElseThrow(() -> notFound("Reservation not found"));
+    }
+
+    private Map<Long, Integer> toMap(List<ReservationLine> lines) {
+        Map<Long, Integer> m = new TreeMap<>();
+        for (var l : lines) m.merge(l.getProductId(), l.getQty(), Integer::sum);
+        return m;
+    }
+
+    private ReservationResponse toResponse(StockReservation r) {
+        return new ReservationResponse(r.getId(), r.getReference(), r.getStatus().name(), r.getExpiresAt(),
+                r.getItems().stream().map(l -> new StockItemsRequest.Item(l.getProductId(), l.getQty())).toList());
+    }
+
+    private ErrorResponseException notFound(String m){ var ex=new ErrorResponseException(HttpStatus.NOT_FOUND); ex.setDetail(m); return ex; }
+    private ErrorResponseException conflict(String m){ var ex=new ErrorResponseException(HttpStatus.CONFLICT); ex.setDetail(m); return ex; }
+}
@@ -0,0 +1,30 @@
+package com.farmatodo.product.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/** Devuelve al stock los holds vencidos (órdenes que nunca confirmaron ni liberaron). */
+@Component
+@RequiredArgsConstructor
+public class ReservationSweeper {
+
+    private final ReservationService service;
+
+    @Value("${product.reservation.sweep-batch-size:200}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${product.reservation.sweep-delay-ms:5000}")
+    public void sweep() {
+        int expired = 0;
+        for (String id : service.findDue(batchSize)) {
+            try {
+                if (service.expire(id)) expired++;
+            } catch (Exception e) {
+                System.out.printf("[RESERVATION] expire failed id=%s: %s%n", id, e.getMessage());
+            }
+        }
+        if (expired > 0) System.out.printf("[RESERVATION] expired=%d%n", expired);
+    }
+}
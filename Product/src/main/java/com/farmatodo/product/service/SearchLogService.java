@@ -1,20 +1,135 @@
 package com.farmatodo.product.service;
 
-import com.farmatodo.product.domain.SearchLog;
-import com.farmatodo.product.repository.SearchLogRepository;
+import com.farmatodo.product.repository.SearchLogJdbcRepository;
+import com.farmatodo.product.repository.SearchLogJdbcRepository.Entry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registro de búsquedas desacoplado de la latencia del search:
+ * logAsync solo encola en una cola acotada (nunca bloquea ni toca la DB) y un hilo propio
+ * la vacía cada flush-interval-ms en batches JDBC.
+ * <p>
+ * Cola llena → política de overflow:
+ * <ul>
+ *   <li>DROP_OLDEST: se descarta la entrada más vieja para hacer lugar.</li>
+ *   <li>SAMPLE: desde la mitad de la cola solo entra 1 de cada sample-every; si se llena, se descarta la nueva.</li>
+ * </ul>
+ * Cada batch drenado pasa también por {@link SearchTrendService} (rollups de términos en tendencia).
+ * Métrica search.log.entries{outcome=flushed|dropped|sampled|failed} y gauge search.log.queue.
+ */
 @Service
 @RequiredArgsConstructor
 public class SearchLogService {
-    private final SearchLogRepository repo;
 
-    @Async
-    public void logAsync(String q){
-        try {
-            repo.save(SearchLog.builder().q(q).build());
-        } catch (Exception ignored) {}
+    public enum Overflow { DROP_OLDEST, SAMPLE }
+
+    /** Largo de la columna q: un término más largo haría fallar el batch completo. */
+    private static final int MAX_Q_LENGTH = 255;
+
+    private final SearchLogJdbcRepository repo;
+    private final SearchTrendService trends;
+    private final MeterRegistry registry;
+
+    @Value("${product.search-log.capacity:10000}")
+    private int capacity;
+
+    @Value("${product.search-log.batch-size:500}")
+    private int batchSize;
+
+    @Value("${product.search-log.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${product.search-log.overflow:DROP_OLDEST}")
+    private Overflow overflow;
+
+    @Value("${product.search-log.sample-every:10}")
+    private int sampleEvery;
+
+    private BlockingQueue<Entry> queue;
+    private final AtomicLong sampleSeq = new AtomicLong();
+    private Counter flushed, dropped, sampled, failed;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        flushed = counter("flushed");
+        dropped = counter("dropped");
+        sampled = counter("sampled");
+        failed = counter("failed");
+        Gauge.builder("search.log.queue", queue, BlockingQueue::size).register(registry);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "search-log-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void logAsync(String q) {
+        if (q == null) return;
+        var e = new Entry(q.length() > MAX_Q_LENGTH ? q.substring(0, MAX_Q_LENGTH) : q, Instant.now());
+
+        if (overflow == Overflow.SAMPLE && queue.size() >= capacity / 2
+                && sampleSeq.getAndIncrement() % sampleEvery != 0) {
+            sampled.increment();
+            return;
+        }
+        while (!queue.offer(e)) {
+            if (overflow == Overflow.SAMPLE) {
+                dropped.increment();
+                return;
+            }
+            if (queue.poll() != null) dropped.increment();
+        }
+    }
+
+    /** Vacía la cola en batches de batch-size; un batch que falla se descarta y se cuenta. */
+    public synchronized int flush() {
+        int written = 0;
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            trends.record(batch);
+            try {
+                repo.insertBatch(batch);
+                flushed.increment(batch.size());
+                written += batch.size();
+            } catch (RuntimeException ex) {
+                failed.increment(batch.size());
+                System.out.printf("[SEARCH-LOG] batch of %d failed: %s%n", batch.size(), ex.getMessage());
+            }
+            batch.clear();
+        }
+        trends.roll(Instant.now());
+        return written;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    private Counter counter(String outcome) {
+        return Counter.builder("search.log.entries").tag("outcome", outcome).register(registry);
     }
 }
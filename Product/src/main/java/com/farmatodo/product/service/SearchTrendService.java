@@ -0,0 +1,115 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.domain.SearchQueryRollup.Granularity;
+import com.farmatodo.product.dto.TopSearchDTO;
+import com.farmatodo.product.repository.SearchLogJdbcRepository.Entry;
+import com.farmatodo.product.repository.SearchRollupJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Búsquedas en tendencia sin escanear search_logs.
+ * <p>
+ * Etapa de agregación del pipeline de search-log: el flusher le pasa cada batch y aquí se cuenta
+ * por término normalizado en un {@link CountMinSketch} del minuto en curso, guardando solo los
+ * top-terms más frecuentes como candidatos (memoria acotada aunque haya millones de términos).
+ * Al cerrar el minuto los candidatos se suman por upsert al bucket MINUTE y al HOUR.
+ * <p>
+ * record/roll corren solo en el hilo del flusher; top() solo lee la DB (lo cerrado hasta el último minuto).
+ */
+@Service
+@RequiredArgsConstructor
+public class SearchTrendService {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 4096;
+    /** Ventanas hasta este largo se responden con buckets de minuto; más largas, con los de hora. */
+    static final int MAX_MINUTE_WINDOW = 180;
+
+    private final SearchRollupJdbcRepository rollups;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${product.search-trends.top-terms:1000}")
+    private int topTerms;
+
+    @Value("${product.search-trends.minute-retention-hours:48}")
+    private int minuteRetentionHours;
+
+    private final CountMinSketch sketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final Map<String, Long> candidates = new HashMap<>();
+    private long minCandidate;
+    private Instant window;
+
+    public void record(List<Entry> entries) {
+        for (var e : entries) {
+            var minute = e.createdAt().truncatedTo(ChronoUnit.MINUTES);
+            if (window != null && minute.isAfter(window)) persistWindow();
+            if (window == null) window = minute;
+            String term = SuggestTrie.normalize(e.q());
+            if (!term.isEmpty()) add(term);
+        }
+    }
+
+    /** Cierra el minuto en curso si ya pasó (se llama en cada flush, haya o no búsquedas nuevas). */
+    public void roll(Instant now) {
+        if (window != null && now.truncatedTo(ChronoUnit.MINUTES).isAfter(window)) persistWindow();
+    }
+
+    public List<TopSearchDTO> top(int minutes, int limit) {
+        var since = Instant.now().minus(Duration.ofMinutes(minutes));
+        return minutes <= MAX_MINUTE_WINDOW
+                ? rollups.top(Granularity.MINUTE, since.truncatedTo(ChronoUnit.MINUTES), limit)
+                : rollups.top(Granularity.HOUR, since.truncatedTo(ChronoUnit.HOURS), limit);
+    }
+
+    private void add(String term) {
+        long est = sketch.add(term);
+        if (candidates.containsKey(term) || candidates.size() < topTerms) {
+            candidates.put(term, est);
+            return;
+        }
+        if (est <= minCandidate) return;
+        // Reemplaza al candidato menos frecuente y recalcula el umbral
+        String weakest = null;
+        long weakestCount = Long.MAX_VALUE;
+        for (var c : candidates.entrySet()) {
+            if (c.getValue() < weakestCount) { weakest = c.getKey(); weakestCount = c.getValue(); }
+        }
+        candidates.remove(weakest);
+        candidates.put(term, est);
+        minCandidate = candidates.values().stream().mapToLong(Long::longValue).min().orElse(0L);
+    }
+
+    private void persistWindow() {
+        Map<String, Long> hits = new HashMap<>();
+        candidates.keySet().forEach(t -> hits.put(t, sketch.estimate(t)));
+        var minute = window;
+        var hour = minute.truncatedTo(ChronoUnit.HOURS);
+        try {
+            new TransactionTemplate(txManager).executeWithoutResult(tx -> {
+                rollups.addAll(Granularity.MINUTE, minute, hits);
+                rollups.addAll(Granularity.HOUR, hour, hits);
+                // Al empezar una hora nueva se podan los buckets de minuto viejos
+                if (minute.equals(hour)) {
+                    rollups.deleteOlderThan(Granularity.MINUTE, hour.minus(Duration.ofHours(minuteRetentionHours)));
+                }
+            });
+        } catch (RuntimeException ex) {
+            System.out.printf("[SEARCH-TRENDS] rollup %s failed: %s%n", minute, ex.getMessage());
+        }
+        sketch.clear();
+        candidates.clear();
+        minCandidate = 0;
+        window = null;
+    }
+}
@@ -0,0 +1,86 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.StockItemsRequest;
+import com.farmatodo.product.repository.StockJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.ErrorResponseException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+@RequiredArgsConstructor
+public class StockService {
+
+    private final StockJdbcRepository stockRepo;
+    private final HotStockStore hotStock;
+    private final ApplicationEventPublisher events;
+
+    /**
+     * Descuenta el stock de todos los ítems de una orden en una transacción: o se aplican todos o ninguno.
+     * Los ids repetidos se suman y se actualizan en orden ascendente para evitar deadlocks entre órdenes.
+     */
+    @Transactional
+    public void decrementAll(List<StockItemsRequest.Item> items) {
+        var failed = tryDecrement(merge(items));
+        if (!failed.isEmpty()) throw conflict("Insufficient stock or product not found: " + failed);
+    }
+
+    /**
+     * Separa SKUs calientes (contador en memoria) del resto (UPDATE condicional) y aplica ambos.
+     * Si la transacción que lo envuelve hace rollback, la parte en memoria se devuelve.
+     * @return ids que no se pudieron descontar; vacío si se aplicó todo
+     */
+    public List<Long> tryDecrement(Map<Long, Integer> qtyByProduct) {
+        Map<Long, Integer> hot = new TreeMap<>();
+        Map<Long, Integer> cold = new TreeMap<>();
+        qtyByProduct.forEach((id, qty) -> (hotStock.isHot(id) ? hot : cold).put(id, qty));
+
+        var failed = hotStock.tryDecrementAll(hot);
+        if (!failed.isEmpty()) return failed;
+
+        failed = stockRepo.decrementAll(cold);
+        if (!failed.isEmpty()) {
+            hotStock.incrementAll(hot);
+            return failed;
+        }
+        if (!hot.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) hotStock.incrementAll(hot);
+                }
+            });
+        }
+        events.publishEvent(new ProductsChangedEvent(List.copyOf(qtyByProduct.keySet()), ProductsChangedEvent.STOCK));
+        return List.of();
+    }
+
+    public void increment(Map<Long, Integer> qtyByProduct) {
+        Map<Long, Integer> hot = new TreeMap<>();
+        Map<Long, Integer> cold = new TreeMap<>();
+        qtyByProduct.forEach((id, qty) -> (hotStock.isHot(id) ? hot : cold).put(id, qty));
+        stockRepo.incrementAll(cold);
+        hotStock.incrementAll(hot);
+        events.publishEvent(new ProductsChangedEvent(List.copyOf(qtyByProduct.keySet()), ProductsChangedEvent.STOCK));
+    }
+
+    /** Suma ids repetidos; TreeMap deja los UPDATE en orden de id. */
+    public Map<Long, Integer> merge(List<StockItemsRequest.Item> items) {
+        Map<Long, Integer> qtyByProduct = new TreeMap<>();
+        for (var it : items) {
+            if (it.qty() <= 0) throw badRequest("qty must be > 0");
+            qtyByProduct.merge(it.productId(), it.qty(), Integer::sum);
+        }
+        return qtyByProduct;
+    }
+
+    private ErrorResponseException badRequest(String m){ var ex=new ErrorResponseException(HttpStatus.BAD_REQUEST); ex.setDetail(m); return ex; }
+    private ErrorResponseException conflict(String m){ var ex=new ErrorResponseException(HttpStatus.CONFLICT); ex.setDetail(m); return ex; }
+}
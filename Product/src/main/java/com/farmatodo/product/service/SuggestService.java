@@ -0,0 +1,62 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.SuggestionDTO;
+import com.farmatodo.product.repository.SuggestSourceRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Autocompletado sin DB por tecla: responde desde un {@link SuggestTrie} en memoria.
+ * El trie se reconstruye en segundo plano (productos visibles + popularidad de los rollups por hora)
+ * y se reemplaza de una vez; las consultas siempre ven un snapshot completo.
+ */
+@Service
+@RequiredArgsConstructor
+public class SuggestService {
+
+    private final SuggestSourceRepository source;
+
+    @Value("${product.min-stock-visible:1}")
+    private int minStockVisible;
+
+    @Value("${product.suggest.top-k:10}")
+    private int topK;
+
+    @Value("${product.suggest.popularity-days:30}")
+    private int popularityDays;
+
+    @Value("${product.suggest.popular-terms:5000}")
+    private int popularTerms;
+
+    private volatile SuggestTrie snapshot = SuggestTrie.EMPTY;
+
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        return snapshot.suggest(prefix, Math.min(limit, topK));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${product.suggest.rebuild-ms:60000}", fixedDelayString = "${product.suggest.rebuild-ms:60000}")
+    public void rebuild() {
+        try {
+            long t0 = System.nanoTime();
+            List<SuggestTrie.Entry> products = new ArrayList<>();
+            source.forEachVisibleProduct(minStockVisible, (id, name) -> products.add(new SuggestTrie.Entry(id, name)));
+            var terms = source.topSearchTerms(Instant.now().minus(Duration.ofDays(popularityDays)), popularTerms);
+            snapshot = SuggestTrie.build(products, terms, topK);
+            System.out.printf("[SUGGEST] rebuilt products=%d terms=%d in %d ms%n",
+                    products.size(), terms.size(), (System.nanoTime() - t0) / 1_000_000);
+        } catch (Exception e) {
+            // se mantiene el snapshot anterior
+            System.out.printf("[SUGGEST] rebuild failed: %s%n", e.getMessage());
+        }
+    }
+}
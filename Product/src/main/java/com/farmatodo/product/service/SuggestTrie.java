@@ -0,0 +1,258 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.SuggestionDTO;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trie inmutable para autocompletar nombres de producto.
+ * <p>
+ * Se indexa cada comienzo de palabra del nombre normalizado (minúsculas, sin tildes), así
+ * "gel" sugiere tanto "Gel Fijador" como "Shampoo Gel". Los nodos viven en arreglos paralelos
+ * (sin objetos por nodo) y cada nodo guarda su top-K ya rankeado: consultar es recorrer el
+ * prefijo y copiar a lo sumo K resultados. Un nodo con un solo hijo y sin productos propios
+ * comparte el top-K del hijo, así las cadenas largas no ocupan memoria extra.
+ * <p>
+ * Ranking: suma de búsquedas (rollups por hora) cuyo término es prefijo de alguna palabra del nombre;
+ * empate → nombre más corto, luego id.
+ */
+final class SuggestTrie {
+
+    record Entry(long id, String name) {}
+
+    /** Largo máximo indexado por clave; prefijos más largos se filtran contra el nombre. */
+    static final int MAX_KEY_LENGTH = 24;
+    /** Palabras del nombre que se indexan como comienzo de clave. */
+    static final int MAX_WORDS = 4;
+
+    static final SuggestTrie EMPTY = build(List.of(), Map.of(), 1);
+
+    private final char[] label;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] topStart;
+    private final int[] topLen;
+    private final int[] topPool;
+    private final long[] ids;
+    private final String[] names;
+    private final String[] normalized;
+
+    private SuggestTrie(char[] label, int[] firstChild, int[] nextSibling, int[] topStart, int[] topLen,
+                        int[] topPool, long[] ids, String[] names, String[] normalized) {
+        this.label = label;
+        this.firstChild = firstChild;
+        this.nextSibling = nextSibling;
+        this.topStart = topStart;
+        this.topLen = topLen;
+        this.topPool = topPool;
+        this.ids = ids;
+        this.names = names;
+        this.normalized = normalized;
+    }
+
+    int size() { return ids.length; }
+
+    List<SuggestionDTO> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) return List.of();
+        boolean truncated = key.length() > MAX_KEY_LENGTH;
+        String walk = truncated ? key.substring(0, MAX_KEY_LENGTH) : key;
+
+        int node = 0;
+        for (int i = 0; i < walk.length() && node >= 0; i++) node = child(node, walk.charAt(i));
+        if (node < 0) return List.of();
+
+        List<SuggestionDTO> out = new ArrayList<>(Math.min(limit, topLen[node]));
+        for (int i = 0; i < topLen[node] && out.size() < limit; i++) {
+            int p = topPool[topStart[node] + i];
+            if (truncated && !startsAnyWord(normalized[p], key)) continue;
+            out.add(new SuggestionDTO(ids[p], names[p]));
+        }
+        return out;
+    }
+
+    private int child(int node, char c) {
+        for (int ch = firstChild[node]; ch >= 0; ch = nextSibling[ch]) {
+            if (label[ch] == c) return ch;
+        }
+        return -1;
+    }
+
+    static String normalize(String s) {
+        if (s == null) return "";
+        String n = Normalizer.normalize(s.trim().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return n.replaceAll("\\p{M}", "").replaceAll("\\s+", " ");
+    }
+
+    private static boolean startsAnyWord(String name, String key) {
+        for (int i = 0; i < name.length(); i++) {
+            if ((i == 0 || name.charAt(i - 1) == ' ') && name.startsWith(key, i)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param termCounts términos buscados (normalizados o no) → cantidad de búsquedas
+     * @param topK       sugerencias guardadas por nodo
+     */
+    static SuggestTrie build(List<Entry> products, Map<String, Long> termCounts, int topK) {
+        int np = products.size();
+        long[] ids = new long[np];
+        String[] names = new String[np];
+        String[] normalized = new String[np];
+        List<Key> keys = new ArrayList<>();
+        for (int p = 0; p < np; p++) {
+            ids[p] = products.get(p).id();
+            names[p] = products.get(p).name();
+            normalized[p] = normalize(names[p]);
+            String n = normalized[p];
+            int words = 0;
+            for (int i = 0; i < n.length() && words < MAX_WORDS; i++) {
+                if (n.charAt(i) == ' ' || (i > 0 && n.charAt(i - 1) != ' ')) continue;
+                keys.add(new Key(n.substring(i, Math.min(n.length(), i + MAX_KEY_LENGTH)), p));
+                words++;
+            }
+        }
+        keys.sort(Comparator.comparing(Key::key));
+
+        // 1) Trie desde claves ordenadas: los nodos quedan en preorden (padre < hijo)
+        var b = new Builder(Math.max(16, keys.size() * 4));
+        int[] path = new int[MAX_KEY_LENGTH + 1];
+        int[] keyNode = new int[keys.size()];
+        String prev = "";
+        for (int k = 0; k < keys.size(); k++) {
+            String key = keys.get(k).key();
+            int lcp = 0;
+            while (lcp < key.length() && lcp < prev.length() && key.charAt(lcp) == prev.charAt(lcp)) lcp++;
+            int node = path[lcp];
+            for (int i = lcp; i < key.length(); i++) {
+                node = b.addChild(node, key.charAt(i));
+                path[i + 1] = node;
+            }
+            keyNode[k] = path[key.length()];
+            prev = key;
+        }
+        int n = b.size;
+
+        // 2) Popularidad: cada término suma en su nodo; el score de una clave es lo acumulado en su camino
+        long[] pathBoost = new long[n];
+        termCounts.forEach((term, count) -> {
+            String t = normalize(term);
+            if (t.isEmpty() || t.length() > MAX_KEY_LENGTH) return;
+            int node = 0;
+            for (int i = 0; i < t.length() && node >= 0; i++) node = b.child(node, t.charAt(i));
+            if (node > 0) pathBoost[node] += count;
+        });
+        for (int i = 1; i < n; i++) pathBoost[i] += pathBoost[b.parent[i]];
+
+        long[] score = new long[np];
+        int[] ownHead = new int[n];
+        Arrays.fill(ownHead, -1);
+        int[] ownNext = new int[keys.size()];
+        for (int k = 0; k < keys.size(); k++) {
+            int p = keys.get(k).product();
+            score[p] = Math.max(score[p], pathBoost[keyNode[k]]);
+            ownNext[k] = ownHead[keyNode[k]];
+            ownHead[keyNode[k]] = k;
+        }
+
+        Comparator<Integer> rank = Comparator.<Integer>comparingLong(p -> -score[p])
+                .thenComparingInt(p -> names[p].length())
+                .thenComparingLong(p -> ids[p]);
+
+        // 3) Top-K de abajo hacia arriba (índices mayores primero = hijos antes que padres)
+        int[] topStart = new int[n];
+        int[] topLen = new int[n];
+        var pool = new IntList(n);
+        List<Integer> cand = new ArrayList<>();
+        for (int node = n - 1; node >= 0; node--) {
+            int only = b.firstChild[node];
+            if (ownHead[node] < 0 && only >= 0 && b.nextSibling[only] < 0) {
+                topStart[node] = topStart[only];
+                topLen[node] = topLen[only];
+                continue;
+            }
+            cand.clear();
+            for (int k = ownHead[node]; k >= 0; k = ownNext[k]) cand.add(keys.get(k).product());
+            for (int ch = b.firstChild[node]; ch >= 0; ch = b.nextSibling[ch]) {
+                for (int i = 0; i < topLen[ch]; i++) cand.add(pool.get(topStart[ch] + i));
+            }
+            List<Integer> top = cand.stream().distinct().sorted(rank).limit(topK).toList();
+            topStart[node] = pool.size;
+            topLen[node] = top.size();
+            top.forEach(pool::add);
+        }
+
+        return new SuggestTrie(Arrays.copyOf(b.label, n), Arrays.copyOf(b.firstChild, n),
+                Arrays.copyOf(b.nextSibling, n), topStart, topLen, pool.toArray(), ids, names, normalized);
+    }
+
+    private record Key(String key, int product) {}
+
+    /** Arreglos crecientes usados solo durante el build. */
+    private static final class Builder {
+        char[] label;
+        int[] firstChild, lastChild, nextSibling, parent;
+        int size = 1; // nodo 0 = raíz
+
+        Builder(int capacity) {
+            label = new char[capacity];
+            firstChild = new int[capacity];
+            lastChild = new int[capacity];
+            nextSibling = new int[capacity];
+            parent = new int[capacity];
+            firstChild[0] = lastChild[0] = nextSibling[0] = -1;
+        }
+
+        // Las claves llegan ordenadas: un hijo nuevo siempre va al final de la lista de hermanos
+        int addChild(int node, char c) {
+            if (size == label.length) grow();
+            int idx = size++;
+            label[idx] = c;
+            firstChild[idx] = lastChild[idx] = nextSibling[idx] = -1;
+            parent[idx] = node;
+            if (lastChild[node] < 0) firstChild[node] = idx;
+            else nextSibling[lastChild[node]] = idx;
+            lastChild[node] = idx;
+            return idx;
+        }
+
+        int child(int node, char c) {
+            for (int ch = firstChild[node]; ch >= 0; ch = nextSibling[ch]) {
+                if (label[ch] == c) return ch;
+            }
+            return -1;
+        }
+
+        private void grow() {
+            int cap = label.length * 2;
+            label = Arrays.copyOf(label, cap);
+            firstChild = Arrays.copyOf(firstChild, cap);
+            lastChild = Arrays.copyOf(lastChild, cap);
+            nextSibling = Arrays.copyOf(nextSibling, cap);
+            parent = Arrays.copyOf(parent, cap);
+        }
+    }
+
+    private static final class IntList {
+        int[] a;
+        int size;
+
+        IntList(int capacity) { a = new int[Math.max(16, capacity)]; }
+
+        void add(int v) {
+            if (size == a.length) a = Arrays.copyOf(a, size * 2);
+            a[size++] = v;
+        }
+
+        int get(int i) { return a[i]; }
+
+        int[] toArray() { return Arrays.copyOf(a, size); }
+    }
+}
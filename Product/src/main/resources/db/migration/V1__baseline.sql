@@ -0,0 +1,85 @@
+-- Esquema base de products: lo que antes generaba ddl-auto: update.
+-- Idempotente: en bases ya creadas por Hibernate (baseline-on-migrate, versión 0) solo completa lo que falte.
+
+-- ---------- Catálogo ----------
+CREATE SEQUENCE IF NOT EXISTS products_seq INCREMENT BY 50;   -- = Product.ID_ALLOCATION_SIZE
+
+CREATE TABLE IF NOT EXISTS products (
+    id         bigint       NOT NULL PRIMARY KEY,
+    name       varchar(255) NOT NULL,
+    price      bigint       NOT NULL,
+    stock      integer      NOT NULL,
+    version    bigint       NOT NULL DEFAULT 0,
+    updated_at timestamp(6) with time zone,
+    CONSTRAINT uk_products_name UNIQUE (name)
+);
+
+-- Bases de cuando la PK era IDENTITY: los ids pasan a salir de products_seq, adelantada al max(id)
+ALTER TABLE products ALTER COLUMN id DROP IDENTITY IF EXISTS;
+SELECT setval('products_seq', greatest(m.max_id, s.last_value))
+FROM products_seq s, (SELECT coalesce(max(id), 1) AS max_id FROM products) m
+WHERE NOT s.is_called OR s.last_value < m.max_id;
+
+CREATE INDEX IF NOT EXISTS idx_products_updated_at ON products (updated_at);
+
+-- Búsqueda por nombre: trigramas (GIN) para "contiene" y text_pattern_ops para prefijos.
+-- Sin permiso para pg_trgm la búsqueda sigue funcionando, solo sin ese índice.
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+EXCEPTION WHEN OTHERS THEN
+    RAISE NOTICE 'pg_trgm no disponible: %', SQLERRM;
+END $$;
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+        CREATE INDEX IF NOT EXISTS idx_products_name_trgm ON products USING gin (lower(name) gin_trgm_ops);
+    END IF;
+END $$;
+
+CREATE INDEX IF NOT EXISTS idx_products_name_prefix ON products (lower(name) text_pattern_ops);
+
+-- ---------- Reservas de stock ----------
+CREATE TABLE IF NOT EXISTS stock_reservations (
+    id         varchar(36)  NOT NULL PRIMARY KEY,
+    reference  varchar(80),
+    status     varchar(16)  NOT NULL CHECK (status IN ('HELD', 'CONFIRMED', 'RELEASED', 'EXPIRED')),
+    expires_at timestamp(6) with time zone NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_reservation_status_expires ON stock_reservations (status, expires_at);
+
+CREATE TABLE IF NOT EXISTS stock_reservation_items (
+    reservation_id varchar(36) NOT NULL REFERENCES stock_reservations (id),
+    product_id     bigint      NOT NULL,
+    qty            integer     NOT NULL
+);
+
+-- ---------- SKUs calientes ----------
+CREATE TABLE IF NOT EXISTS hot_stock_checkpoints (
+    node         varchar(64)  NOT NULL PRIMARY KEY,
+    last_segment bigint       NOT NULL,
+    updated_at   timestamp(6) with time zone NOT NULL
+);
+
+-- ---------- Búsquedas ----------
+CREATE TABLE IF NOT EXISTS search_logs (
+    id         bigint       GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    q          varchar(255) NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_search_q ON search_logs (q);
+
+CREATE TABLE IF NOT EXISTS search_query_rollups (
+    id           bigint       GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    granularity  varchar(8)   NOT NULL CHECK (granularity IN ('MINUTE', 'HOUR')),
+    bucket_start timestamp(6) with time zone NOT NULL,
+    term         varchar(255) NOT NULL,
+    hits         bigint       NOT NULL,
+    CONSTRAINT uk_search_rollup UNIQUE (granularity, bucket_start, term)
+);
+
+CREATE INDEX IF NOT EXISTS idx_search_rollup_bucket ON search_query_rollups (granularity, bucket_start);
@@ -0,0 +1,6 @@
+-- Nombre único sin distinguir mayúsculas: reemplaza el pre-chequeo existsByNameIgnoreCase y el
+-- uk_products_name case-sensitive. El INSERT que choca devuelve la violación y la API responde 409.
+-- Si ya existen nombres que solo difieren en mayúsculas la migración falla: resolverlos antes de desplegar.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_products_name_lower ON products (lower(name));
+
+ALTER TABLE products DROP CONSTRAINT IF EXISTS uk_products_name;
@@ -0,0 +1,14 @@
+-- Índices según las consultas reales de products.
+
+-- Las líneas de una reserva se cargan por reservation_id (colección EAGER) en cada
+-- confirm/release/expire; PostgreSQL no indexa las FK por sí solo.
+CREATE INDEX IF NOT EXISTS idx_reservation_items_reservation ON stock_reservation_items (reservation_id);
+
+-- search_logs es el registro crudo: tendencias y popularidad de sugerencias se leen de
+-- search_query_rollups. Solo se consulta por ventana de tiempo; ninguna consulta filtra por q
+-- y ese índice encarecía cada batch de INSERT del flusher.
+CREATE INDEX IF NOT EXISTS idx_search_logs_created_at ON search_logs (created_at);
+DROP INDEX IF EXISTS idx_search_q;
+
+-- (granularity, bucket_start) es prefijo de uk_search_rollup: ese índice ya sirve top() y la poda.
+DROP INDEX IF EXISTS idx_search_rollup_bucket;
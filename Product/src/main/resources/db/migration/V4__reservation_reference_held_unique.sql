@@ -0,0 +1,21 @@
+-- Un solo hold vivo por referencia (ORD-<id>): reserve es idempotente y el reintento de la saga
+-- recibe el mismo hold en vez de retener stock otra vez. Confirmadas/liberadas/vencidas no cuentan.
+-- Holds duplicados previos: queda el más reciente; el resto se da por vencido y devuelve su stock.
+WITH dup AS (
+    SELECT id FROM (
+        SELECT id, row_number() OVER (PARTITION BY reference ORDER BY created_at DESC, id) AS rn
+        FROM stock_reservations
+        WHERE status = 'HELD' AND reference IS NOT NULL
+    ) d WHERE rn > 1
+), expired AS (
+    UPDATE stock_reservations r SET status = 'EXPIRED' FROM dup WHERE r.id = dup.id RETURNING r.id
+)
+UPDATE products p
+SET stock = p.stock + q.qty, updated_at = now(), version = p.version + 1
+FROM (SELECT i.product_id, sum(i.qty) AS qty
+      FROM stock_reservation_items i JOIN expired e ON e.id = i.reservation_id
+      GROUP BY i.product_id) q
+WHERE p.id = q.product_id;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_reservation_reference_held
+    ON stock_reservations (reference) WHERE status = 'HELD';
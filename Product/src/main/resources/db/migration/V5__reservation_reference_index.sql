@@ -0,0 +1,3 @@
+-- Orders busca las reservas de una orden por referencia (ORD-<id>) al recuperarla, en cualquier
+-- estado: uk_reservation_reference_held solo cubre los HELD.
+CREATE INDEX IF NOT EXISTS idx_reservation_reference ON stock_reservations (reference);
@@ -0,0 +1,8 @@
+-- Bajas de productos para el export incremental: la fila se borra de products, acá queda su id.
+-- Se purgan pasado product.export.tombstone-retention-days (un updatedSince más viejo → 410, export completo).
+CREATE TABLE IF NOT EXISTS product_tombstones (
+    product_id bigint                      NOT NULL PRIMARY KEY,
+    deleted_at timestamp(6) with time zone NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_product_tombstones_deleted_at ON product_tombstones (deleted_at);
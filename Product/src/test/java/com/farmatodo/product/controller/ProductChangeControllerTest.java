@@ -0,0 +1,41 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.dto.ProductChangesResponse;
+import com.farmatodo.product.service.ProductChangeFeed;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests de capa web del ProductChangeController
+ */
+@WebMvcTest(controllers = ProductChangeController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class ProductChangeControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    ProductChangeFeed feed;
+
+    @Test
+    void changes_since_cursor() throws Exception {
+        Mockito.when(feed.since("e1", 4L, 500)).thenReturn(new ProductChangesResponse("e1", 5L, false,
+                List.of(new ProductChangesResponse.Change(5L, 7L, "UPDATED"))));
+
+        mvc.perform(get("/api/v1/products/changes").param("epoch", "e1").param("since", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value(5))
+                .andExpect(jsonPath("$.changes[0].productId").value(7));
+    }
+}
@@ -1,8 +1,10 @@
 package com.farmatodo.product.controller;
 
 import com.farmatodo.product.dto.CreateProductRequest;
+import com.farmatodo.product.dto.PageResponse;
 import com.farmatodo.product.dto.ProductDTO;
 import com.farmatodo.product.dto.UpdateProductRequest;
+import com.farmatodo.product.dto.Versioned;
 import com.farmatodo.product.service.ProductService;
 import com.farmatodo.product.service.SearchLogService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -59,26 +61,66 @@ class ProductControllerTest {
 
     @Test
     void getById_ok() throws Exception {
-        Mockito.when(service.getById(5L)).thenReturn(new ProductDTO(5L, "Gel", 1500L, 2));
+        Mockito.when(service.getVersioned(5L)).thenReturn(new Versioned<>(new ProductDTO(5L, "Gel", 1500L, 2), "3"));
 
         mvc.perform(get("/api/v1/products/5"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
                 .andExpect(jsonPath("$.id").value(5))
                 .andExpect(jsonPath("$.name").value("Gel"));
     }
 
+    @Test
+    void getById_if_none_match_304_without_body() throws Exception {
+        Mockito.when(service.getVersioned(5L)).thenReturn(new Versioned<>(new ProductDTO(5L, "Gel", 1500L, 2), "3"));
+
+        mvc.perform(get("/api/v1/products/5").header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(content().string(""));
+    }
+
     @Test
     void list_ok() throws Exception {
-        Mockito.when(service.list()).thenReturn(List.of(
+        Mockito.when(service.list("abc", 2)).thenReturn(new PageResponse<>(List.of(
+                new ProductDTO(1L, "A", 100L, 1),
+                new ProductDTO(2L, "B", 200L, 2)
+        ), "next"));
+
+        mvc.perform(get("/api/v1/products").param("cursor", "abc").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void list_size_over_cap_400() throws Exception {
+        mvc.perform(get("/api/v1/products").param("size", "500"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batch_ok() throws Exception {
+        Mockito.when(service.getByIds(List.of(1L, 2L))).thenReturn(List.of(
                 new ProductDTO(1L, "A", 100L, 1),
                 new ProductDTO(2L, "B", 200L, 2)
         ));
 
-        mvc.perform(get("/api/v1/products"))
+        mvc.perform(post("/api/v1/products/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[1,2]}"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(2)));
     }
 
+    @Test
+    void batch_empty_ids_400() throws Exception {
+        mvc.perform(post("/api/v1/products/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void update_ok() throws Exception {
         var req = new UpdateProductRequest("Nuevo", 200L, 4);
@@ -111,7 +153,7 @@ class ProductControllerTest {
 
     @Test
     void search_ok() throws Exception {
-        Mockito.when(service.search("gel"))
+        Mockito.when(service.search("gel", 0, 20))
                 .thenReturn(List.of(
                         new ProductDTO(1L, "GEL FIX", 1000L, 2),
                         new ProductDTO(2L, "GEL POWER", 1200L, 5)
@@ -122,4 +164,11 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$", hasSize(2)));
         Mockito.verify(searchLogService).logAsync("gel");
     }
+
+    @Test
+    void search_page_size_capped() throws Exception {
+        mvc.perform(get("/api/v1/products/search").param("q", "gel").param("size", "500"))
+                .andExpect(status().isBadRequest());
+        Mockito.verify(service, Mockito.never()).search(any(), anyInt(), anyInt());
+    }
 }
@@ -0,0 +1,66 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.service.ProductExportService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.ErrorResponseException;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests de capa web del ProductExportController
+ */
+@WebMvcTest(controllers = ProductExportController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class ProductExportControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    ProductExportService service;
+
+    @Test
+    void export_streams_ndjson() throws Exception {
+        var since = Instant.parse("2026-05-01T10:00:00Z");
+        Mockito.when(service.exportNdjson(eq(since), any(), any())).thenAnswer(a -> {
+            a.<Consumer<Instant>>getArgument(2).accept(Instant.parse("2026-05-02T09:59:00Z"));
+            a.<OutputStream>getArgument(1).write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        var result = mvc.perform(get("/api/v1/products/export").param("updatedSince", "2026-05-01T10:00:00Z"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andExpect(header().string(ProductExportController.HDR_STARTED_AT, "2026-05-02T09:59:00Z"))
+                .andExpect(content().string("{\"id\":1}\n"));
+    }
+
+    @Test
+    void export_since_beyond_retained_deletions_is_410() throws Exception {
+        var ex = new ErrorResponseException(HttpStatus.GONE);
+        ex.setDetail("run a full export");
+        Mockito.doThrow(ex).when(service).requireIncrementalWindow(any());
+
+        mvc.perform(get("/api/v1/products/export").param("updatedSince", "2020-01-01T00:00:00Z"))
+                .andExpect(status().isGone());
+        Mockito.verify(service, Mockito.never()).exportNdjson(any(), any(), any());
+    }
+}
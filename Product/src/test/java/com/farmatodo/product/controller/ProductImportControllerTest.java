@@ -0,0 +1,60 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.dto.ImportResultDTO;
+import com.farmatodo.product.service.ProductImportService;
+import com.farmatodo.product.service.ProductImportService.Format;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests de capa web del ProductImportController
+ */
+@WebMvcTest(controllers = ProductImportController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class ProductImportControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    ProductImportService service;
+
+    @Test
+    void csv_body_goes_to_csv_import() throws Exception {
+        Mockito.when(service.importProducts(eq(Format.CSV), any()))
+                .thenReturn(new ImportResultDTO(2, 1, 1, List.of(new ImportResultDTO.RowError(3, "price: must not be null")), 5));
+
+        mvc.perform(post("/api/v1/products/import").contentType("text/csv").content("name,price,stock\nGel,100,5\nX,,1\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.upserted").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(3));
+    }
+
+    @Test
+    void ndjson_body_goes_to_ndjson_import() throws Exception {
+        Mockito.when(service.importProducts(eq(Format.NDJSON), any()))
+                .thenReturn(new ImportResultDTO(1, 1, 0, List.of(), 2));
+
+        mvc.perform(post("/api/v1/products/import").contentType("application/x-ndjson")
+                        .content("{\"name\":\"Gel\",\"price\":100,\"stock\":5}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(1));
+    }
+
+    @Test
+    void other_content_type_is_rejected() throws Exception {
+        mvc.perform(post("/api/v1/products/import").contentType("application/json").content("[]"))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+}
@@ -0,0 +1,48 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.dto.TopSearchDTO;
+import com.farmatodo.product.service.SearchTrendService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests de capa web del SearchTrendController
+ */
+@WebMvcTest(controllers = SearchTrendController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class SearchTrendControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    SearchTrendService service;
+
+    @Test
+    void top_ok() throws Exception {
+        Mockito.when(service.top(60, 10)).thenReturn(List.of(new TopSearchDTO("gel", 42), new TopSearchDTO("jabon", 7)));
+
+        mvc.perform(get("/api/v1/products/search/top"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].term").value("gel"))
+                .andExpect(jsonPath("$[0].hits").value(42));
+    }
+
+    @Test
+    void top_window_over_cap_400() throws Exception {
+        mvc.perform(get("/api/v1/products/search/top").param("minutes", "20000"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,90 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.dto.ReservationResponse;
+import com.farmatodo.product.dto.StockItemsRequest;
+import com.farmatodo.product.service.ReservationService;
+import com.farmatodo.product.service.StockService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests de capa web del StockController
+ */
+@WebMvcTest(controllers = StockController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class StockControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    StockService service;
+
+    @MockBean
+    ReservationService reservations;
+
+    @Test
+    void decrementBatch_returns_204() throws Exception {
+        mvc.perform(post("/api/v1/products/stock/decrement-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[{\"productId\":1,\"qty\":2},{\"productId\":2,\"qty\":1}]}"))
+                .andExpect(status().isNoContent());
+        Mockito.verify(service).decrementAll(argThat(items -> items.size() == 2));
+    }
+
+    @Test
+    void decrementBatch_invalid_qty_400() throws Exception {
+        mvc.perform(post("/api/v1/products/stock/decrement-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[{\"productId\":1,\"qty\":0}]}"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(service);
+    }
+
+    @Test
+    void reserve_returns_201_with_location() throws Exception {
+        Mockito.when(reservations.reserve(any())).thenReturn(new ReservationResponse(
+                "r1", "ORD-1", "HELD", Instant.now(), List.of(new StockItemsRequest.Item(1L, 2))));
+
+        mvc.perform(post("/api/v1/products/stock/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"reference\":\"ORD-1\",\"items\":[{\"productId\":1,\"qty\":2}]}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/v1/products/stock/reservations/r1"))
+                .andExpect(jsonPath("$.status").value("HELD"));
+    }
+
+    @Test
+    void findReservations_by_reference() throws Exception {
+        Mockito.when(reservations.findByReference("ORD-1")).thenReturn(List.of(new ReservationResponse(
+                "r1", "ORD-1", "CONFIRMED", Instant.now(), List.of())));
+
+        mvc.perform(get("/api/v1/products/stock/reservations").param("reference", "ORD-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("r1"))
+                .andExpect(jsonPath("$[0].status").value("CONFIRMED"));
+    }
+
+    @Test
+    void confirm_returns_reservation() throws Exception {
+        Mockito.when(reservations.confirm("r1")).thenReturn(new ReservationResponse(
+                "r1", "ORD-1", "CONFIRMED", Instant.now(), List.of()));
+
+        mvc.perform(post("/api/v1/products/stock/reservations/r1/confirm"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CONFIRMED"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.farmatodo.product.controller;
+
+import com.farmatodo.product.dto.SuggestionDTO;
+import com.farmatodo.product.service.SuggestService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests de capa web del SuggestController
+ */
+@WebMvcTest(controllers = SuggestController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class SuggestControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    SuggestService service;
+
+    @Test
+    void suggest_ok() throws Exception {
+        Mockito.when(service.suggest("ge", 5)).thenReturn(List.of(new SuggestionDTO(1L, "Gel"), new SuggestionDTO(2L, "Gelatina")));
+
+        mvc.perform(get("/api/v1/products/suggest").param("prefix", "ge").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name").value("Gel"));
+    }
+}
@@ -0,0 +1,142 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.domain.HotStockCheckpoint;
+import com.farmatodo.product.repository.HotStockCheckpointRepository;
+import com.farmatodo.product.repository.StockJdbcRepository;
+import com.farmatodo.product.repository.StockJournal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class HotStockStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private StockJdbcRepository stockRepo;
+    private HotStockCheckpointRepository checkpoints;
+
+    @BeforeEach
+    void setup() {
+        stockRepo = Mockito.mock(StockJdbcRepository.class);
+        checkpoints = Mockito.mock(HotStockCheckpointRepository.class);
+        Mockito.when(checkpoints.findById("test")).thenReturn(Optional.empty());
+        Mockito.when(stockRepo.findStock(any())).thenReturn(Map.of(1L, 100, 2L, 10));
+    }
+
+    @Test
+    void concurrent_decrements_never_oversell() throws Exception {
+        var store = newStore();
+        var sold = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < 300; i++) {
+            pool.submit(() -> { if (store.tryDecrementAll(Map.of(1L, 1)).isEmpty()) sold.incrementAndGet(); });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, sold.get());
+        assertEquals(0, store.available(1L));
+
+        store.flush();
+        Mockito.verify(stockRepo).applyDeltas(Map.of(1L, 100L));
+        Mockito.verify(checkpoints).save(argThat(c -> c.getNode().equals("test") && c.getLastSegment() == 1L));
+    }
+
+    @Test
+    void decrement_is_all_or_nothing() {
+        var store = newStore();
+
+        assertEquals(List.of(2L), store.tryDecrementAll(Map.of(1L, 5, 2L, 50)));
+
+        assertEquals(100, store.available(1L));
+        store.flush();
+        Mockito.verify(stockRepo, Mockito.never()).applyDeltas(any());
+    }
+
+    @Test
+    void unflushed_journal_is_replayed_on_restart() {
+        var crashed = newStore();
+        crashed.tryDecrementAll(Map.of(1L, 7, 2L, 3));
+        crashed.incrementAll(Map.of(2L, 1));
+        // sin flush ni shutdown: el proceso "cae" con los deltas solo en el journal
+
+        newStore();
+
+        Mockito.verify(stockRepo).applyDeltas(Map.of(1L, 7L, 2L, 2L));
+        assertTrue(StockJournal.segmentsIn(dir).stream().allMatch(s -> s == 2L));
+    }
+
+    @Test
+    void segments_already_checkpointed_are_not_applied_twice() {
+        var store = newStore();
+        store.tryDecrementAll(Map.of(1L, 4));
+        Mockito.when(checkpoints.findById("test")).thenReturn(Optional.of(
+                HotStockCheckpoint.builder().node("test").lastSegment(1L).build()));
+
+        newStore();
+
+        Mockito.verify(stockRepo, Mockito.never()).applyDeltas(any());
+    }
+
+    @Test
+    void failed_flush_keeps_deltas_for_next_round() {
+        var store = newStore();
+        store.tryDecrementAll(Map.of(1L, 5));
+        Mockito.doThrow(new RuntimeException("db down")).doNothing().when(stockRepo).applyDeltas(any());
+
+        store.flush();
+        store.tryDecrementAll(Map.of(1L, 2));
+        store.flush();
+
+        Mockito.verify(stockRepo).applyDeltas(Map.of(1L, 7L));
+        assertEquals(93, store.available(1L));
+    }
+
+    @Test
+    void disabled_without_ids() {
+        var store = new HotStockStore(stockRepo, checkpoints, Mockito.mock(PlatformTransactionManager.class));
+        setField(store, "hotIds", List.of());
+        store.init();
+
+        assertFalse(store.isHot(1L));
+        assertNull(store.available(1L));
+        store.flush();
+        Mockito.verifyNoInteractions(stockRepo);
+    }
+
+    private HotStockStore newStore() {
+        var store = new HotStockStore(stockRepo, checkpoints, Mockito.mock(PlatformTransactionManager.class));
+        setField(store, "hotIds", List.of(1L, 2L));
+        setField(store, "journalDir", dir.toString());
+        setField(store, "nodeId", "test");
+        setField(store, "fsync", true);
+        store.init();
+        return store;
+    }
+
+    private static void setField(Object target, String name, Object val) {
+        try {
+            Field f = target.getClass().getDeclaredField(name);
+            f.setAccessible(true);
+            f.set(target, val);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.domain.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.ErrorResponseException;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class OptimisticRetryTest {
+
+    private PlatformTransactionManager txManager;
+    private SimpleMeterRegistry registry;
+    private OptimisticRetry retry;
+
+    @BeforeEach
+    void setup() throws Exception {
+        txManager = Mockito.mock(PlatformTransactionManager.class);
+        registry = new SimpleMeterRegistry();
+        retry = new OptimisticRetry(txManager, registry);
+        setField(retry, "maxAttempts", 3);
+        setField(retry, "backoffMs", 1L);
+    }
+
+    @Test
+    void conflict_is_retried_in_a_new_transaction() {
+        var attempts = new AtomicInteger();
+
+        String res = retry.run("update", () -> {
+            if (attempts.incrementAndGet() < 3) throw new ObjectOptimisticLockingFailureException(Product.class, 1L);
+            return "ok";
+        });
+
+        assertEquals("ok", res);
+        Mockito.verify(txManager, Mockito.times(3)).getTransaction(any());
+        assertEquals(2.0, count("retried"));
+    }
+
+    @Test
+    void exhausted_attempts_409() {
+        var ex = assertThrows(ErrorResponseException.class, () -> retry.run("update", () -> {
+            throw new ObjectOptimisticLockingFailureException(Product.class, 1L);
+        }));
+
+        assertEquals(409, ex.getStatusCode().value());
+        assertEquals(2.0, count("retried"));
+        assertEquals(1.0, count("exhausted"));
+    }
+
+    @Test
+    void other_errors_are_not_retried() {
+        var attempts = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () -> retry.run("decrement", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(1, attempts.get());
+    }
+
+    private double count(String outcome) {
+        return registry.get("product.optimistic.conflicts").tag("op", "update").tag("outcome", outcome).counter().count();
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}
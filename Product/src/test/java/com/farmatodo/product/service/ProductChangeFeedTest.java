@@ -0,0 +1,88 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.ProductChangesResponse.Change;
+import com.farmatodo.product.repository.ProductChangeJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.List;
+
+import static com.farmatodo.product.repository.ProductChangeJdbcRepository.micros;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class ProductChangeFeedTest {
+
+    private static final Instant DB_NOW = Instant.parse("2026-03-01T12:00:10Z");
+    private static final long NEXT = micros(Instant.parse("2026-03-01T12:00:05Z"));
+
+    private ProductChangeJdbcRepository changes;
+    private ProductChangeFeed feed;
+
+    @BeforeEach
+    void setup() throws Exception {
+        changes = Mockito.mock(ProductChangeJdbcRepository.class);
+        feed = new ProductChangeFeed(changes);
+        Field f = ProductChangeFeed.class.getDeclaredField("overlapMs");
+        f.setAccessible(true);
+        f.set(feed, 5000L);
+        Mockito.when(changes.now()).thenReturn(DB_NOW);
+    }
+
+    @Test
+    void first_poll_gets_fixed_epoch_and_resync() {
+        var res = feed.since(null, 0, 10);
+
+        assertTrue(res.resync());
+        assertEquals(ProductChangeFeed.EPOCH, res.epoch());
+        assertEquals(NEXT, res.cursor());
+        Mockito.verify(changes, Mockito.never()).changedSince(any(), anyInt());
+    }
+
+    @Test
+    void returns_changes_since_cursor_and_moves_it_to_db_time_minus_overlap() {
+        long cursor = micros(Instant.parse("2026-03-01T12:00:00Z"));
+        Mockito.when(changes.changedSince(Instant.parse("2026-03-01T12:00:00Z"), 11)).thenReturn(List.of(
+                new Change(cursor + 1, 1L, "UPDATED"), new Change(cursor + 2, 2L, "DELETED")));
+
+        var res = feed.since(ProductChangeFeed.EPOCH, cursor, 10);
+
+        assertFalse(res.resync());
+        assertEquals(List.of(1L, 2L), res.changes().stream().map(Change::productId).toList());
+        assertEquals(NEXT, res.cursor());
+    }
+
+    @Test
+    void any_instance_answers_the_same_cursor() {
+        // el estado vive en la base: otra instancia del feed acepta el cursor sin resync
+        long cursor = micros(Instant.parse("2026-03-01T12:00:00Z"));
+        Mockito.when(changes.changedSince(any(), anyInt())).thenReturn(List.of());
+        var other = new ProductChangeFeed(changes);
+
+        assertFalse(feed.since(ProductChangeFeed.EPOCH, cursor, 10).resync());
+        assertFalse(other.since(ProductChangeFeed.EPOCH, cursor, 10).resync());
+    }
+
+    @Test
+    void more_pending_changes_than_limit_requires_resync() {
+        Mockito.when(changes.changedSince(any(), eq(3))).thenReturn(List.of(
+                new Change(1, 1L, "UPDATED"), new Change(2, 2L, "UPDATED"), new Change(3, 3L, "UPDATED")));
+
+        var res = feed.since(ProductChangeFeed.EPOCH, 0, 2);
+
+        assertTrue(res.resync());
+        assertTrue(res.changes().isEmpty());
+        assertEquals(NEXT, res.cursor());
+    }
+
+    @Test
+    void cursor_from_other_epoch_requires_resync() {
+        var res = feed.since("3f1c-random-uuid", 1, 10);
+
+        assertTrue(res.resync());
+        assertEquals(ProductChangeFeed.EPOCH, res.epoch());
+    }
+}
@@ -0,0 +1,125 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.ProductDTO;
+import com.farmatodo.product.repository.ProductRepository;
+import com.farmatodo.product.repository.ProductTombstoneJdbcRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.web.ErrorResponseException;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+class ProductExportServiceTest {
+
+    private ProductRepository repo;
+    private ProductTombstoneJdbcRepository tombstones;
+    private HotStockStore hotStock;
+    private ProductExportService service;
+    private final AtomicReference<Instant> cursor = new AtomicReference<>();
+
+    private static final Instant DB_NOW = Instant.parse("2026-03-01T12:00:00Z");
+
+    @BeforeEach
+    void setup() throws Exception {
+        repo = Mockito.mock(ProductRepository.class);
+        tombstones = Mockito.mock(ProductTombstoneJdbcRepository.class);
+        hotStock = Mockito.mock(HotStockStore.class);
+        service = new ProductExportService(repo, tombstones, hotStock, new ObjectMapper());
+        setField(service, "cursorOverlapMs", 60_000L);
+        setField(service, "tombstoneRetentionDays", 30L);
+        Mockito.when(tombstones.now()).thenReturn(DB_NOW);
+    }
+
+    @Test
+    void writes_one_json_line_per_product_and_closes_stream() {
+        var closed = new AtomicBoolean();
+        Mockito.when(repo.streamAll()).thenReturn(Stream.of(
+                new ProductDTO(1L, "A", 100L, 1), new ProductDTO(2L, "B", 200L, 2)).onClose(() -> closed.set(true)));
+        Mockito.when(hotStock.isHot(2L)).thenReturn(true);
+        Mockito.when(hotStock.available(2L)).thenReturn(9);
+        var out = new ByteArrayOutputStream();
+
+        assertEquals(2, service.exportNdjson(null, out, cursor::set));
+
+        assertEquals("""
+                {"id":1,"name":"A","price":100,"stock":1}
+                {"id":2,"name":"B","price":200,"stock":9}
+                """, out.toString(StandardCharsets.UTF_8));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void updatedSince_uses_incremental_query() {
+        var since = Instant.parse("2026-01-01T00:00:00Z");
+        Mockito.when(repo.streamUpdatedSince(since)).thenReturn(Stream.empty());
+
+        assertEquals(0, service.exportNdjson(since, new ByteArrayOutputStream(), cursor::set));
+        Mockito.verify(repo, Mockito.never()).streamAll();
+    }
+
+    @Test
+    void cursor_is_db_time_of_the_snapshot_minus_overlap() {
+        Mockito.when(repo.streamAll()).thenReturn(Stream.empty());
+
+        service.exportNdjson(null, new ByteArrayOutputStream(), cursor::set);
+
+        assertEquals(DB_NOW.minusSeconds(60), cursor.get());
+        // el snapshot se toma antes de leer productos
+        var order = Mockito.inOrder(tombstones, repo);
+        order.verify(tombstones).now();
+        order.verify(repo).streamAll();
+    }
+
+    @Test
+    void incremental_export_ends_with_deleted_products() {
+        var since = Instant.parse("2026-02-28T00:00:00Z");
+        Mockito.when(repo.streamUpdatedSince(since)).thenReturn(Stream.of(new ProductDTO(1L, "A", 100L, 1)));
+        Mockito.when(tombstones.deletedSince(since)).thenReturn(List.of(5L));
+        var out = new ByteArrayOutputStream();
+
+        assertEquals(1, service.exportNdjson(since, out, cursor::set));
+
+        assertEquals("""
+                {"id":1,"name":"A","price":100,"stock":1}
+                {"id":5,"deleted":true}
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void full_export_has_no_tombstones() {
+        Mockito.when(repo.streamAll()).thenReturn(Stream.empty());
+
+        service.exportNdjson(null, new ByteArrayOutputStream(), cursor::set);
+
+        Mockito.verify(tombstones, Mockito.never()).deletedSince(any());
+    }
+
+    @Test
+    void incremental_older_than_retained_deletions_is_gone() {
+        var ex = assertThrows(ErrorResponseException.class,
+                () -> service.requireIncrementalWindow(Instant.now().minus(31, ChronoUnit.DAYS)));
+        assertEquals(410, ex.getStatusCode().value());
+
+        service.requireIncrementalWindow(null);
+        service.requireIncrementalWindow(Instant.now().minus(1, ChronoUnit.DAYS));
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}
@@ -0,0 +1,148 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.repository.ProductImportJdbcRepository;
+import com.farmatodo.product.repository.ProductImportJdbcRepository.Row;
+import com.farmatodo.product.service.ProductImportService.Format;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class ProductImportServiceTest {
+
+    private ProductImportJdbcRepository importRepo;
+    private HotStockStore hotStock;
+    private ApplicationEventPublisher events;
+    private ProductImportService service;
+    private final List<List<Row>> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        importRepo = Mockito.mock(ProductImportJdbcRepository.class);
+        hotStock = Mockito.mock(HotStockStore.class);
+        events = Mockito.mock(ApplicationEventPublisher.class);
+        service = new ProductImportService(importRepo, hotStock, events,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(),
+                Mockito.mock(PlatformTransactionManager.class));
+        setField(service, "batchSize", 2);
+
+        Mockito.when(hotStock.hotIds()).thenReturn(Set.of());
+        Mockito.when(importRepo.allocateIds(anyInt())).thenAnswer(a -> LongStream.range(101, 101 + a.<Integer>getArgument(0)).toArray());
+        Mockito.when(importRepo.upsertBatch(any(), any())).thenAnswer(a -> {
+            List<Row> rows = a.getArgument(0);
+            batches.add(List.copyOf(rows));
+            return rows.stream().map(Row::id).toList();
+        });
+        Mockito.when(importRepo.findIdsByLowerName(any())).thenReturn(Map.of());
+    }
+
+    @Test
+    void csv_is_upserted_in_batches_and_duplicate_names_keep_last_row() {
+        var res = service.importProducts(Format.CSV, body("""
+                name,price,stock
+                Gel,100,5
+                Gel,120,9
+                "Crema, 250ml",300,7
+                Jabón,50,1
+                """));
+
+        assertEquals(4, res.received());
+        assertEquals(3, res.upserted());
+        assertEquals(0, res.rejected());
+        assertEquals(List.of("Gel", "Crema, 250ml"), batches.get(0).stream().map(Row::name).toList());
+        assertEquals(120L, batches.get(0).get(0).price());
+        assertEquals(List.of(new Row(101, "Jabón", 50, 1)), batches.get(1));
+        Mockito.verify(events, Mockito.times(2)).publishEvent(any(ProductsChangedEvent.class));
+    }
+
+    @Test
+    void unchanged_rows_are_not_counted_nor_evicted() {
+        // la DB solo devuelve (RETURNING) la fila que cambió
+        Mockito.doReturn(List.of(102L)).when(importRepo).upsertBatch(any(), any());
+
+        var res = service.importProducts(Format.NDJSON, body("""
+                {"name":"Gel","price":100,"stock":5}
+                {"name":"Crema","price":300,"stock":3}
+                """));
+
+        assertEquals(2, res.received());
+        assertEquals(1, res.upserted());
+        Mockito.verify(events).publishEvent(new ProductsChangedEvent(List.of(102L), ProductsChangedEvent.UPDATED));
+    }
+
+    @Test
+    void invalid_rows_are_rejected_with_line_number() {
+        var res = service.importProducts(Format.CSV, body("""
+                name,price,stock
+                Gel,100,5
+                ,100,5
+                Crema,abc,1
+                Jabón,-1,1
+                """));
+
+        assertEquals(4, res.received());
+        assertEquals(1, res.upserted());
+        assertEquals(3, res.rejected());
+        assertEquals(List.of(3L, 4L, 5L), res.errors().stream().map(e -> e.line()).toList());
+        assertEquals("price: must be greater than or equal to 0", res.errors().get(2).message());
+    }
+
+    @Test
+    void ndjson_skips_bad_lines_and_blank_lines() {
+        var res = service.importProducts(Format.NDJSON, body("""
+                {"name":"Gel","price":100,"stock":5}
+
+                {"name":"Crema","price":
+                {"name":"Jabón","price":50,"stock":1}
+                """));
+
+        assertEquals(3, res.received());
+        assertEquals(2, res.upserted());
+        assertEquals(3L, res.errors().get(0).line());
+        assertTrue(res.errors().get(0).message().startsWith("Invalid JSON"));
+    }
+
+    @Test
+    void hot_sku_stock_goes_to_memory_counter() {
+        Mockito.when(hotStock.hotIds()).thenReturn(Set.of(7L));
+        Mockito.when(importRepo.findIdsByLowerName(any())).thenReturn(Map.of("gel", 7L, "crema", 8L));
+
+        service.importProducts(Format.NDJSON, body("""
+                {"name":"Gel","price":100,"stock":40}
+                {"name":"Crema","price":300,"stock":3}
+                """));
+
+        Mockito.verify(importRepo).upsertBatch(any(), eq(Set.of(7L)));
+        Mockito.verify(hotStock).set(7L, 40);
+        Mockito.verify(hotStock, Mockito.never()).set(eq(8L), anyInt());
+    }
+
+    private static ByteArrayInputStream body(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void setField(Object target, String name, Object val) {
+        try {
+            Field f = target.getClass().getDeclaredField(name);
+            f.setAccessible(true);
+            f.set(target, val);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.ProductDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchCacheTest {
+
+    private SimpleMeterRegistry registry;
+    private ProductSearchCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setup() throws Exception {
+        registry = new SimpleMeterRegistry();
+        cache = new ProductSearchCache(registry);
+        setField(cache, "maxSize", 100L);
+        setField(cache, "ttlSeconds", 60L);
+        setField(cache, "negativeTtlSeconds", 0L);
+        cache.init();
+    }
+
+    @Test
+    void hits_are_counted_and_ratio_exposed() {
+        get("gel", List.of(dto(1L)));
+        get("gel", List.of(dto(1L)));
+
+        assertEquals(1, loads.get());
+        assertEquals(0.5, registry.get("products.search.cache.hit.ratio").gauge().value());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "products.search").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void empty_results_use_negative_ttl() {
+        get("zzz", List.of());
+        get("zzz", List.of());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void stock_change_evicts_only_pages_with_that_product() {
+        get("gel", List.of(dto(1L), dto(2L)));
+        get("jabon", List.of(dto(3L)));
+
+        cache.on(new ProductsChangedEvent(List.of(2L), ProductsChangedEvent.STOCK));
+        get("gel", List.of(dto(1L)));
+        get("jabon", List.of(dto(3L)));
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void stock_change_drops_the_evicted_page_from_the_reverse_index() {
+        get("gel", List.of(dto(1L), dto(2L)));
+        get("jabon", List.of(dto(3L)));
+        assertEquals(3, cache.indexedProducts());
+
+        cache.on(new ProductsChangedEvent(List.of(2L), ProductsChangedEvent.STOCK));
+
+        // el producto 1 solo estaba en la página de "gel": no queda apuntando a una clave que ya no está
+        assertEquals(1, cache.indexedProducts());
+        cache.on(new ProductsChangedEvent(List.of(1L), ProductsChangedEvent.STOCK));
+        get("jabon", List.of(dto(3L)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void rename_or_create_clears_everything() {
+        get("gel", List.of(dto(1L)));
+
+        cache.on(new ProductsChangedEvent(List.of(9L), ProductsChangedEvent.CREATED));
+        get("gel", List.of(dto(1L), dto(9L)));
+
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.indexedProducts());
+    }
+
+    private void get(String term, List<ProductDTO> result) {
+        cache.get(term, 1, 0, 20, () -> { loads.incrementAndGet(); return result; });
+    }
+
+    private static ProductDTO dto(Long id) {
+        return new ProductDTO(id, "P" + id, 100L, 5);
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}
@@ -5,12 +5,23 @@ import com.farmatodo.product.dto.CreateProductRequest;
 import com.farmatodo.product.dto.ProductDTO;
 import com.farmatodo.product.dto.UpdateProductRequest;
 import com.farmatodo.product.repository.ProductRepository;
+import com.farmatodo.product.repository.ProductTombstoneJdbcRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.hibernate.exception.ConstraintViolationException;
 import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.data.domain.Limit;
 import org.springframework.web.ErrorResponseException;
 
 import java.lang.reflect.Field;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,14 +31,32 @@ import static org.mockito.ArgumentMatchers.*;
 class ProductServiceTest {
 
     private ProductRepository repo;
+    private HotStockStore hotStock;
+    private ApplicationEventPublisher events;
+    private ProductSearchCache searchCache;
+    private StockService stock;
+    private ProductTombstoneJdbcRepository tombstones;
     private ProductService service;
 
     @BeforeEach
     void setup() {
         repo = Mockito.mock(ProductRepository.class);
-        service = new ProductService(repo);
+        hotStock = Mockito.mock(HotStockStore.class);
+        events = Mockito.mock(ApplicationEventPublisher.class);
+        searchCache = new ProductSearchCache(new SimpleMeterRegistry());
+        setField(searchCache, "maxSize", 100L);
+        setField(searchCache, "ttlSeconds", 60L);
+        setField(searchCache, "negativeTtlSeconds", 10L);
+        searchCache.init();
+        var retry = new OptimisticRetry(Mockito.mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+        setField(retry, "maxAttempts", 3);
+        setField(retry, "backoffMs", 1L);
+        stock = Mockito.mock(StockService.class);
+        tombstones = Mockito.mock(ProductTombstoneJdbcRepository.class);
+        service = new ProductService(repo, hotStock, events, searchCache, retry, stock, tombstones);
         // inyectar minStockVisible = 2 para validar la búsqueda
         setField(service, "minStockVisible", 2);
+        setField(service, "maxCandidates", 500);
     }
 
     private static void setField(Object target, String name, Object val) {
@@ -43,8 +72,7 @@ class ProductServiceTest {
     @Test
     void create_ok() {
         var req = new CreateProductRequest("Shampoo", 15900L, 10);
-        Mockito.when(repo.existsByNameIgnoreCase("Shampoo")).thenReturn(false);
-        Mockito.when(repo.save(any(Product.class))).thenAnswer(inv -> {
+        Mockito.when(repo.saveAndFlush(any(Product.class))).thenAnswer(inv -> {
             Product p = inv.getArgument(0);
             p.setId(1L);
             return p;
@@ -56,16 +84,42 @@ class ProductServiceTest {
         assertEquals("Shampoo", dto.name());
         assertEquals(15900L, dto.price());
         assertEquals(10, dto.stock());
+        Mockito.verify(events).publishEvent(new ProductsChangedEvent(List.of(1L), ProductsChangedEvent.CREATED));
     }
 
     @Test
     void create_conflict_duplicate_name() {
         var req = new CreateProductRequest("Shampoo", 15900L, 10);
-        Mockito.when(repo.existsByNameIgnoreCase("Shampoo")).thenReturn(true);
+        Mockito.when(repo.saveAndFlush(any(Product.class))).thenThrow(nameTaken());
 
         var ex = assertThrows(ErrorResponseException.class, () -> service.create(req));
         assertEquals(409, ex.getStatusCode().value());
-        Mockito.verify(repo, Mockito.never()).save(any());
+        Mockito.verifyNoInteractions(events);
+    }
+
+    @Test
+    void create_other_integrity_violation_is_not_a_name_conflict() {
+        var other = new DataIntegrityViolationException("boom",
+                new ConstraintViolationException("boom", new SQLException("x", "23502"), "products_price_not_null"));
+        Mockito.when(repo.saveAndFlush(any(Product.class))).thenThrow(other);
+
+        assertSame(other, assertThrows(DataIntegrityViolationException.class,
+                () -> service.create(new CreateProductRequest("Shampoo", 15900L, 10))));
+    }
+
+    @Test
+    void update_rename_to_existing_name_conflict() {
+        Mockito.when(repo.findById(10L)).thenReturn(Optional.of(
+                Product.builder().id(10L).name("Viejo").price(100L).stock(1).version(1L).build()));
+        Mockito.when(repo.saveAndFlush(any(Product.class))).thenThrow(nameTaken());
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.update(10L, new UpdateProductRequest("SHAMPOO", 1L, 1)));
+        assertEquals(409, ex.getStatusCode().value());
+    }
+
+    private static DataIntegrityViolationException nameTaken() {
+        return new DataIntegrityViolationException("duplicate",
+                new ConstraintViolationException("duplicate", new SQLException("dup", "23505"), Product.UK_NAME_LOWER));
     }
 
     @Test
@@ -87,13 +141,45 @@ class ProductServiceTest {
     }
 
     @Test
-    void list_ok() {
+    void getByIds_uses_single_query() {
         var p1 = Product.builder().id(1L).name("A").price(100L).stock(1).build();
         var p2 = Product.builder().id(2L).name("B").price(200L).stock(2).build();
-        Mockito.when(repo.findAll()).thenReturn(List.of(p1, p2));
+        Mockito.when(repo.findAllById(List.of(1L, 2L, 3L))).thenReturn(List.of(p1, p2));
+
+        var list = service.getByIds(List.of(1L, 2L, 3L));
 
-        var list = service.list();
         assertEquals(2, list.size());
+        Mockito.verify(repo, Mockito.times(1)).findAllById(any());
+        Mockito.verify(repo, Mockito.never()).findById(any());
+    }
+
+    @Test
+    void list_returns_cursor_when_more_rows() {
+        Mockito.when(repo.findPageAfter(0L, Limit.of(3))).thenReturn(List.of(
+                new ProductDTO(1L, "A", 100L, 1), new ProductDTO(4L, "B", 200L, 2), new ProductDTO(7L, "C", 300L, 3)));
+
+        var page = service.list(null, 2);
+
+        assertEquals(List.of(1L, 4L), page.items().stream().map(ProductDTO::id).toList());
+        assertEquals(4L, PageCursor.decode(page.nextCursor()));
+    }
+
+    @Test
+    void list_last_page_without_cursor_and_hot_stock_applied() {
+        Mockito.when(repo.findPageAfter(4L, Limit.of(3))).thenReturn(List.of(new ProductDTO(7L, "C", 300L, 3)));
+        Mockito.when(hotStock.isHot(7L)).thenReturn(true);
+        Mockito.when(hotStock.available(7L)).thenReturn(1);
+
+        var page = service.list(PageCursor.encode(4L), 2);
+
+        assertEquals(1, page.items().get(0).stock());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void list_invalid_cursor_400() {
+        var ex = assertThrows(ErrorResponseException.class, () -> service.list("no-es-cursor", 2));
+        assertEquals(400, ex.getStatusCode().value());
     }
 
     @Test
@@ -101,13 +187,62 @@ class ProductServiceTest {
         var req = new UpdateProductRequest("Nuevo", 300L, 7);
         var p = Product.builder().id(10L).name("Viejo").price(100L).stock(1).build();
         Mockito.when(repo.findById(10L)).thenReturn(Optional.of(p));
-        Mockito.when(repo.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
+        Mockito.when(repo.saveAndFlush(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
 
         var dto = service.update(10L, req);
 
         assertEquals("Nuevo", dto.name());
         assertEquals(300L, dto.price());
         assertEquals(7, dto.stock());
+        Mockito.verify(events).publishEvent(new ProductsChangedEvent(List.of(10L), ProductsChangedEvent.UPDATED));
+    }
+
+    @Test
+    void update_hot_sku_sets_counter_only_after_commit() {
+        var p = Product.builder().id(10L).name("Viejo").price(100L).stock(1).build();
+        Mockito.when(repo.findById(10L)).thenReturn(Optional.of(p));
+        Mockito.when(repo.saveAndFlush(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
+        Mockito.when(hotStock.isHot(10L)).thenReturn(true);
+        Mockito.when(hotStock.available(10L)).thenReturn(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            var dto = service.update(10L, new UpdateProductRequest("Nuevo", 300L, 7));
+
+            assertEquals(7, dto.stock());
+            Mockito.verify(hotStock, Mockito.never()).set(any(), anyInt());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            Mockito.verify(hotStock).set(10L, 7);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void update_hot_sku_with_name_conflict_leaves_counter_untouched() {
+        var p = Product.builder().id(10L).name("Viejo").price(100L).stock(1).build();
+        Mockito.when(repo.findById(10L)).thenReturn(Optional.of(p));
+        Mockito.when(hotStock.isHot(10L)).thenReturn(true);
+        Mockito.when(repo.saveAndFlush(any(Product.class))).thenThrow(nameTaken());
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.update(10L, new UpdateProductRequest("Otro", 1L, 99)));
+
+        assertEquals(409, ex.getStatusCode().value());
+        Mockito.verify(hotStock, Mockito.never()).set(any(), anyInt());
+    }
+
+    @Test
+    void update_version_conflict_rereads_and_retries() {
+        Mockito.when(repo.findById(10L)).thenAnswer(inv -> Optional.of(
+                Product.builder().id(10L).name("Viejo").price(100L).stock(1).version(1L).build()));
+        Mockito.when(repo.saveAndFlush(any(Product.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Product.class, 10L))
+                .thenAnswer(inv -> inv.getArgument(0));
+
+        var dto = service.update(10L, new UpdateProductRequest("Nuevo", 300L, 7));
+
+        assertEquals("Nuevo", dto.name());
+        Mockito.verify(repo, Mockito.times(2)).findById(10L);
     }
 
     @Test
@@ -122,6 +257,7 @@ class ProductServiceTest {
         Mockito.when(repo.existsById(3L)).thenReturn(true);
         service.delete(3L);
         Mockito.verify(repo).deleteById(3L);
+        Mockito.verify(tombstones).record(3L);
     }
 
     @Test
@@ -133,43 +269,94 @@ class ProductServiceTest {
 
     @Test
     void decrement_ok() {
-        var p = Product.builder().id(2L).name("Prod").price(100L).stock(5).build();
-        Mockito.when(repo.findById(2L)).thenReturn(Optional.of(p));
-        Mockito.when(repo.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
+        Mockito.when(stock.tryDecrement(java.util.Map.of(2L, 3))).thenReturn(List.of());
 
         service.decrement(2L, 3);
 
-        assertEquals(2, p.getStock());
+        Mockito.verify(stock).tryDecrement(java.util.Map.of(2L, 3));
+        Mockito.verify(repo, Mockito.never()).save(any());
     }
 
     @Test
     void decrement_qty_must_be_positive() {
-        var p = Product.builder().id(2L).name("Prod").price(100L).stock(5).build();
-        Mockito.when(repo.findById(2L)).thenReturn(Optional.of(p));
-
         var ex = assertThrows(ErrorResponseException.class, () -> service.decrement(2L, 0));
         assertEquals(400, ex.getStatusCode().value());
+        Mockito.verifyNoInteractions(stock);
     }
 
     @Test
     void decrement_insufficient_stock() {
-        var p = Product.builder().id(2L).name("Prod").price(100L).stock(2).build();
-        Mockito.when(repo.findById(2L)).thenReturn(Optional.of(p));
+        Mockito.when(stock.tryDecrement(java.util.Map.of(2L, 5))).thenReturn(List.of(2L));
+        Mockito.when(repo.existsById(2L)).thenReturn(true);
 
         var ex = assertThrows(ErrorResponseException.class, () -> service.decrement(2L, 5));
         assertEquals(409, ex.getStatusCode().value());
     }
 
+    @Test
+    void decrement_unknown_product_404() {
+        Mockito.when(stock.tryDecrement(java.util.Map.of(8L, 1))).thenReturn(List.of(8L));
+        Mockito.when(repo.existsById(8L)).thenReturn(false);
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.decrement(8L, 1));
+        assertEquals(404, ex.getStatusCode().value());
+    }
+
+    @Test
+    void getById_hot_sku_shows_live_stock() {
+        var p = Product.builder().id(5L).name("Gel").price(2500L).stock(30).build();
+        Mockito.when(repo.findById(5L)).thenReturn(Optional.of(p));
+        Mockito.when(hotStock.isHot(5L)).thenReturn(true);
+        Mockito.when(hotStock.available(5L)).thenReturn(12);
+
+        assertEquals(12, service.getById(5L).stock());
+    }
+
+    @Test
+    void getVersioned_etag_tracks_row_version_and_hot_stock() {
+        var p = Product.builder().id(5L).name("Gel").price(2500L).stock(30).version(4L).build();
+        Mockito.when(repo.findById(5L)).thenReturn(Optional.of(p));
+        assertEquals("4", service.getVersioned(5L).etag());
+
+        Mockito.when(hotStock.isHot(5L)).thenReturn(true);
+        Mockito.when(hotStock.available(5L)).thenReturn(12);
+        assertEquals("4-12", service.getVersioned(5L).etag());
+    }
+
     @Test
     void search_respects_min_stock_visible() {
-        Mockito.when(repo.findByNameContainingIgnoreCaseAndStockGreaterThanEqual(eq("gel"), eq(2)))
+        Mockito.when(repo.search(eq("gel"), eq("gel%"), eq("%gel%"), eq(true), eq(2), eq(500), eq(20), eq(0L)))
                 .thenReturn(List.of(
                         Product.builder().id(1L).name("GEL FIX").price(1000L).stock(2).build(),
                         Product.builder().id(2L).name("GEL POWER").price(1200L).stock(5).build()
                 ));
 
-        var res = service.search("gel");
+        var res = service.search("GEL ", 0, 20);
         assertEquals(2, res.size());
         assertTrue(res.stream().allMatch(p -> p.stock() >= 2));
     }
+
+    @Test
+    void search_short_term_is_prefix_and_paginates() {
+        service.search("ge", 2, 10);
+        Mockito.verify(repo).search("ge", "ge%", "%ge%", false, 2, 500, 10, 20L);
+    }
+
+    @Test
+    void search_escapes_like_wildcards() {
+        service.search("50%_off", 0, 20);
+        Mockito.verify(repo).search("50%_off", "50\\%\\_off%", "%50\\%\\_off%", true, 2, 500, 20, 0L);
+    }
+
+    @Test
+    void search_repeated_term_served_from_cache() {
+        Mockito.when(repo.search(any(), any(), any(), anyBoolean(), anyInt(), anyInt(), anyInt(), anyLong())).thenReturn(List.of());
+
+        service.search("Acetaminofen", 0, 20);
+        service.search(" acetaminofen ", 0, 20);
+        service.search("acetaminofen", 1, 20);
+
+        Mockito.verify(repo).search("acetaminofen", "acetaminofen%", "%acetaminofen%", true, 2, 500, 20, 0L);
+        Mockito.verify(repo).search("acetaminofen", "acetaminofen%", "%acetaminofen%", true, 2, 500, 20, 20L);
+    }
 }
@@ -0,0 +1,191 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.domain.ReservationLine;
+import com.farmatodo.product.domain.ReservationStatus;
+import com.farmatodo.product.domain.StockReservation;
+import com.farmatodo.product.dto.ReserveStockRequest;
+import com.farmatodo.product.dto.StockItemsRequest;
+import com.farmatodo.product.repository.StockReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.ErrorResponseException;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class ReservationServiceTest {
+
+    private StockReservationRepository reservations;
+    private StockService stock;
+    private ReservationService service;
+
+    @BeforeEach
+    void setup() throws Exception {
+        reservations = Mockito.mock(StockReservationRepository.class);
+        stock = Mockito.mock(StockService.class);
+        service = new ReservationService(reservations, stock, Mockito.mock(PlatformTransactionManager.class));
+        Mockito.when(stock.merge(any())).thenCallRealMethod();
+        setField(service, "defaultTtlSeconds", 300);
+        Mockito.when(reservations.saveAndFlush(any())).thenAnswer(a -> a.getArgument(0));
+    }
+
+    @Test
+    void reserve_decrements_and_holds_with_ttl() {
+        Mockito.when(stock.tryDecrement(any())).thenReturn(List.of());
+
+        var r = service.reserve(new ReserveStockRequest("ORD-1", null, List.of(
+                new StockItemsRequest.Item(5L, 1),
+                new StockItemsRequest.Item(2L, 3),
+                new StockItemsRequest.Item(5L, 1))));
+
+        assertEquals("HELD", r.status());
+        assertEquals("ORD-1", r.reference());
+        assertTrue(r.expiresAt().isAfter(Instant.now().plusSeconds(290)));
+        Mockito.verify(stock).tryDecrement(Map.of(2L, 3, 5L, 2));
+        assertEquals(2, r.items().size());
+    }
+
+    @Test
+    void reserve_conflict_does_not_create_hold() {
+        Mockito.when(stock.tryDecrement(any())).thenReturn(List.of(2L));
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.reserve(
+                new ReserveStockRequest("ORD-1", 60, List.of(new StockItemsRequest.Item(2L, 3)))));
+        assertEquals(409, ex.getStatusCode().value());
+        Mockito.verify(reservations, Mockito.never()).saveAndFlush(any());
+    }
+
+    @Test
+    void reserve_retry_with_same_reference_returns_existing_hold() {
+        var held = reservation(ReservationStatus.HELD, Instant.now().plusSeconds(60));
+        Mockito.when(reservations.findByReferenceAndStatus("ORD-1", ReservationStatus.HELD)).thenReturn(Optional.of(held));
+
+        var r = service.reserve(new ReserveStockRequest("ORD-1", null, List.of(new StockItemsRequest.Item(7L, 2))));
+
+        assertEquals("r1", r.id());
+        Mockito.verify(stock, Mockito.never()).tryDecrement(any());
+        Mockito.verify(reservations, Mockito.never()).saveAndFlush(any());
+    }
+
+    @Test
+    void reserve_same_reference_with_other_items_conflict() {
+        var held = reservation(ReservationStatus.HELD, Instant.now().plusSeconds(60));
+        Mockito.when(reservations.findByReferenceAndStatus("ORD-1", ReservationStatus.HELD)).thenReturn(Optional.of(held));
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.reserve(
+                new ReserveStockRequest("ORD-1", null, List.of(new StockItemsRequest.Item(7L, 5)))));
+        assertEquals(409, ex.getStatusCode().value());
+        Mockito.verify(stock, Mockito.never()).tryDecrement(any());
+    }
+
+    @Test
+    void reserve_with_expired_hold_expires_it_and_holds_again() {
+        var stale = reservation(ReservationStatus.HELD, Instant.now().minusSeconds(1));
+        Mockito.when(reservations.findByReferenceAndStatus("ORD-1", ReservationStatus.HELD)).thenReturn(Optional.of(stale));
+        Mockito.when(reservations.findById("r1")).thenReturn(Optional.of(stale));
+        Mockito.when(reservations.transition("r1", ReservationStatus.HELD, ReservationStatus.EXPIRED)).thenReturn(1);
+        Mockito.when(stock.tryDecrement(any())).thenReturn(List.of());
+
+        var r = service.reserve(new ReserveStockRequest("ORD-1", null, List.of(new StockItemsRequest.Item(7L, 2))));
+
+        assertNotEquals("r1", r.id());
+        Mockito.verify(stock).increment(Map.of(7L, 2));
+        Mockito.verify(stock).tryDecrement(Map.of(7L, 2));
+    }
+
+    @Test
+    void reserve_lost_race_on_reference_returns_winner_hold() {
+        var winner = reservation(ReservationStatus.HELD, Instant.now().plusSeconds(60));
+        Mockito.when(reservations.findByReferenceAndStatus("ORD-1", ReservationStatus.HELD))
+                .thenReturn(Optional.empty(), Optional.of(winner));
+        Mockito.when(stock.tryDecrement(any())).thenReturn(List.of());
+        Mockito.when(reservations.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("uk_reservation_reference_held"));
+
+        var r = service.reserve(new ReserveStockRequest("ORD-1", null, List.of(new StockItemsRequest.Item(7L, 2))));
+
+        assertEquals("r1", r.id());
+    }
+
+    @Test
+    void confirm_held_reservation() {
+        var held = reservation(ReservationStatus.HELD, Instant.now().plusSeconds(60));
+        var confirmed = reservation(ReservationStatus.CONFIRMED, held.getExpiresAt());
+        Mockito.when(reservations.findById("r1")).thenReturn(Optional.of(held), Optional.of(confirmed));
+        Mockito.when(reservations.transition("r1", ReservationStatus.HELD, ReservationStatus.CONFIRMED)).thenReturn(1);
+
+        assertEquals("CONFIRMED", service.confirm("r1").status());
+        Mockito.verify(stock, Mockito.never()).increment(any());
+    }
+
+    @Test
+    void confirm_expired_hold_conflict() {
+        var held = reservation(ReservationStatus.HELD, Instant.now().minusSeconds(1));
+        Mockito.when(reservations.findById("r1")).thenReturn(Optional.of(held));
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.confirm("r1"));
+        assertEquals(409, ex.getStatusCode().value());
+        Mockito.verify(reservations, Mockito.never()).transition(any(), any(), any());
+    }
+
+    @Test
+    void release_restores_stock_once() {
+        var held = reservation(ReservationStatus.HELD, Instant.now().plusSeconds(60));
+        var released = reservation(ReservationStatus.RELEASED, held.getExpiresAt());
+        Mockito.when(reservations.findById("r1")).thenReturn(Optional.of(held), Optional.of(released));
+        Mockito.when(reservations.transition("r1", ReservationStatus.HELD, ReservationStatus.RELEASED)).thenReturn(1, 0);
+
+        assertEquals("RELEASED", service.release("r1").status());
+        assertEquals("RELEASED", service.release("r1").status());
+        Mockito.verify(stock, Mockito.times(1)).increment(Map.of(7L, 2));
+    }
+
+    @Test
+    void release_confirmed_conflict() {
+        var confirmed = reservation(ReservationStatus.CONFIRMED, Instant.now().plusSeconds(60));
+        Mockito.when(reservations.findById("r1")).thenReturn(Optional.of(confirmed));
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.release("r1"));
+        assertEquals(409, ex.getStatusCode().value());
+        Mockito.verify(stock, Mockito.never()).increment(any());
+    }
+
+    @Test
+    void expire_loses_race_against_confirm() {
+        var held = reservation(ReservationStatus.HELD, Instant.now().minusSeconds(1));
+        Mockito.when(reservations.findById("r1")).thenReturn(Optional.of(held));
+        Mockito.when(reservations.transition("r1", ReservationStatus.HELD, ReservationStatus.EXPIRED)).thenReturn(0);
+
+        assertFalse(service.expire("r1"));
+        Mockito.verify(stock, Mockito.never()).increment(any());
+    }
+
+    @Test
+    void get_not_found_404() {
+        Mockito.when(reservations.findById("nope")).thenReturn(Optional.empty());
+        var ex = assertThrows(ErrorResponseException.class, () -> service.get("nope"));
+        assertEquals(404, ex.getStatusCode().value());
+    }
+
+    private static StockReservation reservation(ReservationStatus status, Instant expiresAt) {
+        return StockReservation.builder()
+                .id("r1").reference("ORD-1").status(status).expiresAt(expiresAt).createdAt(Instant.now())
+                .items(new ArrayList<>(List.of(new ReservationLine(7L, 2))))
+                .build();
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}
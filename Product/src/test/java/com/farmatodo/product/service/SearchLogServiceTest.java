@@ -0,0 +1,106 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.repository.SearchLogJdbcRepository;
+import com.farmatodo.product.repository.SearchLogJdbcRepository.Entry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class SearchLogServiceTest {
+
+    private SearchLogJdbcRepository repo;
+    private SimpleMeterRegistry registry;
+    private SearchLogService service;
+    private final List<List<String>> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        repo = Mockito.mock(SearchLogJdbcRepository.class);
+        Mockito.doAnswer(a -> batches.add(a.<List<Entry>>getArgument(0).stream().map(Entry::q).toList()))
+                .when(repo).insertBatch(any());
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        service.shutdown();
+    }
+
+    @Test
+    void flush_writes_in_batches() {
+        start(SearchLogService.Overflow.DROP_OLDEST, 10);
+        for (int i = 0; i < 5; i++) service.logAsync("q" + i);
+
+        assertEquals(5, service.flush());
+
+        assertEquals(List.of(List.of("q0", "q1"), List.of("q2", "q3"), List.of("q4")), batches);
+        assertEquals(5.0, count("flushed"));
+    }
+
+    @Test
+    void drop_oldest_keeps_latest_entries() {
+        start(SearchLogService.Overflow.DROP_OLDEST, 3);
+        for (int i = 0; i < 5; i++) service.logAsync("q" + i);
+
+        service.flush();
+
+        assertEquals(List.of("q2", "q3", "q4"), batches.stream().flatMap(List::stream).toList());
+        assertEquals(2.0, count("dropped"));
+    }
+
+    @Test
+    void sample_admits_one_of_n_past_half_capacity() {
+        start(SearchLogService.Overflow.SAMPLE, 4);
+        setField(service, "sampleEvery", 3);
+        for (int i = 0; i < 8; i++) service.logAsync("q" + i);
+
+        service.flush();
+
+        // q0,q1 entran libres; desde ahí 1 de cada 3 (q2, q5) y la cola nunca se llena
+        assertEquals(List.of("q0", "q1", "q2", "q5"), batches.stream().flatMap(List::stream).toList());
+        assertEquals(4.0, count("sampled"));
+    }
+
+    @Test
+    void failed_batch_is_counted_not_thrown() {
+        start(SearchLogService.Overflow.DROP_OLDEST, 10);
+        Mockito.doThrow(new RuntimeException("db down")).when(repo).insertBatch(any());
+        service.logAsync("gel");
+
+        assertEquals(0, service.flush());
+        assertEquals(1.0, count("failed"));
+    }
+
+    private void start(SearchLogService.Overflow overflow, int capacity) {
+        service = new SearchLogService(repo, Mockito.mock(SearchTrendService.class), registry);
+        setField(service, "capacity", capacity);
+        setField(service, "batchSize", 2);
+        setField(service, "flushIntervalMs", 3_600_000L); // el flusher programado no corre durante el test
+        setField(service, "overflow", overflow);
+        setField(service, "sampleEvery", 10);
+        service.init();
+    }
+
+    private double count(String outcome) {
+        return registry.get("search.log.entries").tag("outcome", outcome).counter().count();
+    }
+
+    private static void setField(Object target, String name, Object val) {
+        try {
+            Field f = target.getClass().getDeclaredField(name);
+            f.setAccessible(true);
+            f.set(target, val);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.domain.SearchQueryRollup.Granularity;
+import com.farmatodo.product.repository.SearchLogJdbcRepository.Entry;
+import com.farmatodo.product.repository.SearchRollupJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class SearchTrendServiceTest {
+
+    private static final Instant T0 = Instant.parse("2026-05-01T10:00:10Z");
+
+    private SearchRollupJdbcRepository rollups;
+    private SearchTrendService service;
+
+    @BeforeEach
+    void setup() throws Exception {
+        rollups = Mockito.mock(SearchRollupJdbcRepository.class);
+        service = new SearchTrendService(rollups, Mockito.mock(PlatformTransactionManager.class));
+        setField(service, "topTerms", 2);
+        setField(service, "minuteRetentionHours", 48);
+    }
+
+    @Test
+    void minute_is_rolled_into_minute_and_hour_buckets_by_normalized_term() {
+        service.record(List.of(at("Gel", 0), at("gel ", 5), at("GÉL", 7), at("jabón", 9)));
+        service.roll(T0.plusSeconds(20));
+        Mockito.verifyNoInteractions(rollups);
+
+        service.roll(T0.plusSeconds(60));
+
+        var minute = Instant.parse("2026-05-01T10:00:00Z");
+        Mockito.verify(rollups).addAll(Granularity.MINUTE, minute, Map.of("gel", 3L, "jabon", 1L));
+        Mockito.verify(rollups).addAll(Granularity.HOUR, minute, Map.of("gel", 3L, "jabon", 1L));
+        Mockito.verify(rollups).deleteOlderThan(Granularity.MINUTE, minute.minusSeconds(48 * 3600));
+    }
+
+    @Test
+    void entry_from_next_minute_closes_previous_window() {
+        service.record(List.of(at("gel", 0), at("gel", 55)));
+
+        Mockito.verify(rollups).addAll(eq(Granularity.MINUTE), eq(Instant.parse("2026-05-01T10:00:00Z")), eq(Map.of("gel", 1L)));
+    }
+
+    @Test
+    void only_top_terms_are_kept_as_candidates() {
+        service.record(List.of(at("a", 0), at("b", 0), at("c", 0), at("c", 0), at("c", 0)));
+        service.roll(T0.plusSeconds(60));
+
+        Mockito.verify(rollups).addAll(eq(Granularity.MINUTE), any(), argThat(m -> m.size() == 2 && m.get("c") == 3L));
+    }
+
+    @Test
+    void short_windows_read_minute_buckets_long_windows_hour_buckets() {
+        service.top(60, 5);
+        service.top(24 * 60, 5);
+
+        Mockito.verify(rollups).top(eq(Granularity.MINUTE), any(), eq(5));
+        Mockito.verify(rollups).top(eq(Granularity.HOUR), any(), eq(5));
+    }
+
+    @Test
+    void sketch_never_underestimates() {
+        var sketch = new CountMinSketch(4, 64);
+        for (int i = 0; i < 1000; i++) sketch.add("t" + (i % 100));
+        for (int i = 0; i < 100; i++) assertTrue(sketch.estimate("t" + i) >= 10);
+    }
+
+    private static Entry at(String q, int seconds) {
+        return new Entry(q, T0.plusSeconds(seconds));
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}
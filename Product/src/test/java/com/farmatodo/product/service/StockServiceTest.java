@@ -0,0 +1,90 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.StockItemsRequest;
+import com.farmatodo.product.repository.StockJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.ErrorResponseException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class StockServiceTest {
+
+    private StockJdbcRepository stockRepo;
+    private HotStockStore hotStock;
+    private ApplicationEventPublisher events;
+    private StockService service;
+
+    @BeforeEach
+    void setup() {
+        stockRepo = Mockito.mock(StockJdbcRepository.class);
+        hotStock = Mockito.mock(HotStockStore.class);
+        events = Mockito.mock(ApplicationEventPublisher.class);
+        service = new StockService(stockRepo, hotStock, events);
+    }
+
+    @Test
+    void decrementAll_merges_duplicates_in_id_order() {
+        Mockito.when(stockRepo.decrementAll(any())).thenReturn(List.of());
+
+        service.decrementAll(List.of(
+                new StockItemsRequest.Item(9L, 1),
+                new StockItemsRequest.Item(3L, 2),
+                new StockItemsRequest.Item(9L, 4)
+        ));
+
+        Mockito.verify(stockRepo).decrementAll(argThat(m ->
+                m.equals(Map.of(3L, 2, 9L, 5)) && m.keySet().iterator().next() == 3L));
+    }
+
+    @Test
+    void decrementAll_conflict_when_any_row_not_updated() {
+        Mockito.when(stockRepo.decrementAll(any())).thenReturn(List.of(9L));
+
+        var ex = assertThrows(ErrorResponseException.class, () -> service.decrementAll(List.of(
+                new StockItemsRequest.Item(3L, 1),
+                new StockItemsRequest.Item(9L, 1)
+        )));
+        assertEquals(409, ex.getStatusCode().value());
+    }
+
+    @Test
+    void decrementAll_qty_must_be_positive() {
+        var ex = assertThrows(ErrorResponseException.class,
+                () -> service.decrementAll(List.of(new StockItemsRequest.Item(3L, 0))));
+        assertEquals(400, ex.getStatusCode().value());
+        Mockito.verifyNoInteractions(stockRepo);
+    }
+
+    @Test
+    void tryDecrement_splits_hot_and_cold_skus() {
+        Mockito.when(hotStock.isHot(9L)).thenReturn(true);
+        Mockito.when(hotStock.tryDecrementAll(any())).thenReturn(List.of());
+        Mockito.when(stockRepo.decrementAll(any())).thenReturn(List.of());
+
+        assertTrue(service.tryDecrement(Map.of(3L, 1, 9L, 2)).isEmpty());
+
+        Mockito.verify(hotStock).tryDecrementAll(Map.of(9L, 2));
+        Mockito.verify(stockRepo).decrementAll(Map.of(3L, 1));
+        Mockito.verify(events).publishEvent(Mockito.<Object>argThat(e -> e instanceof ProductsChangedEvent ev
+                && Set.copyOf(ev.productIds()).equals(Set.of(3L, 9L)) && ev.type().equals(ProductsChangedEvent.STOCK)));
+    }
+
+    @Test
+    void tryDecrement_cold_failure_gives_back_hot_units() {
+        Mockito.when(hotStock.isHot(9L)).thenReturn(true);
+        Mockito.when(hotStock.tryDecrementAll(any())).thenReturn(List.of());
+        Mockito.when(stockRepo.decrementAll(any())).thenReturn(List.of(3L));
+
+        assertEquals(List.of(3L), service.tryDecrement(Map.of(3L, 1, 9L, 2)));
+        Mockito.verify(hotStock).incrementAll(Map.of(9L, 2));
+        Mockito.verifyNoInteractions(events);
+    }
+}
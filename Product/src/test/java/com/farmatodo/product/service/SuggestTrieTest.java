@@ -0,0 +1,75 @@
+package com.farmatodo.product.service;
+
+import com.farmatodo.product.dto.SuggestionDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestTrieTest {
+
+    private static final List<SuggestTrie.Entry> CATALOG = List.of(
+            new SuggestTrie.Entry(1L, "Gel Fijador Ego"),
+            new SuggestTrie.Entry(2L, "Shampoo Gel"),
+            new SuggestTrie.Entry(3L, "Gelatina Frutos Rojos"),
+            new SuggestTrie.Entry(4L, "Jabón Líquido"),
+            new SuggestTrie.Entry(5L, "Gel Antibacterial")
+    );
+
+    @Test
+    void matches_any_word_start_ranked_by_length_without_popularity() {
+        var trie = SuggestTrie.build(CATALOG, Map.of(), 10);
+
+        assertEquals(List.of(2L, 1L, 5L, 3L), ids(trie.suggest("gel", 10)));
+        assertTrue(trie.suggest("elatina", 10).isEmpty());
+    }
+
+    @Test
+    void popularity_from_search_terms_wins() {
+        var trie = SuggestTrie.build(CATALOG, Map.of("gel anti", 40L, "gel", 10L, "gelatina", 25L), 10);
+
+        assertEquals(List.of(5L, 3L, 2L, 1L), ids(trie.suggest("GEL", 10)));
+        assertEquals(List.of(5L), ids(trie.suggest("gel a", 10)));
+    }
+
+    @Test
+    void accents_and_case_are_ignored() {
+        var trie = SuggestTrie.build(CATALOG, Map.of(), 10);
+
+        assertEquals(List.of(4L), ids(trie.suggest("JABON liq", 10)));
+        assertEquals(List.of(4L), ids(trie.suggest("liqu", 10)));
+    }
+
+    @Test
+    void keeps_only_top_k_per_prefix() {
+        var many = IntStream.range(0, 50)
+                .mapToObj(i -> new SuggestTrie.Entry(i, "Crema " + i))
+                .toList();
+        var trie = SuggestTrie.build(many, Map.of(), 5);
+
+        assertEquals(5, trie.suggest("cre", 50).size());
+        assertEquals(2, trie.suggest("cre", 2).size());
+    }
+
+    @Test
+    void prefix_longer_than_indexed_key_is_checked_against_name() {
+        var trie = SuggestTrie.build(List.of(
+                new SuggestTrie.Entry(1L, "Protector Solar Facial Toque Seco FPS 50"),
+                new SuggestTrie.Entry(2L, "Protector Solar Facial Toque Seco FPS 30")), Map.of(), 10);
+
+        assertEquals(List.of(1L), ids(trie.suggest("protector solar facial toque seco fps 5", 10)));
+    }
+
+    @Test
+    void empty_snapshot_and_blank_prefix() {
+        assertTrue(SuggestTrie.EMPTY.suggest("gel", 10).isEmpty());
+        assertTrue(SuggestTrie.build(CATALOG, Map.of(), 10).suggest("  ", 10).isEmpty());
+    }
+
+    private static List<Long> ids(List<SuggestionDTO> s) {
+        return s.stream().map(SuggestionDTO::id).toList();
+    }
+}
@@ -0,0 +1,16 @@
+-- Esquema base de tokenization: lo que antes generaba ddl-auto: update.
+-- Idempotente: en bases ya creadas por Hibernate (baseline-on-migrate, versión 0) no cambia nada.
+
+CREATE TABLE IF NOT EXISTS card_tokens (
+    id                bigint       GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    token             varchar(255) NOT NULL,
+    last4             varchar(255) NOT NULL,
+    brand             varchar(255),
+    created_at        timestamp(6) with time zone NOT NULL,
+    status            varchar(255) NOT NULL CHECK (status IN ('ISSUED', 'REJECTED')),
+    encrypted_payload bytea        NOT NULL,
+    payload_iv_hex    varchar(255)
+);
+
+-- findByToken (cada cobro resuelve su token aquí); único: un token identifica una sola tarjeta
+CREATE UNIQUE INDEX IF NOT EXISTS idx_token ON card_tokens (token);